@@ -7,7 +7,19 @@ CREATE TABLE IF NOT EXISTS user (
     email VARCHAR(255) PRIMARY KEY,
     password VARCHAR(255) NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_user_updated_at (updated_at),
+    INDEX idx_user_created_at (created_at)
+);
+
+-- Create per-minute login statistics rollups (domain '*' holds the totals of a minute)
+CREATE TABLE IF NOT EXISTS login_stats_minute (
+    minute_start TIMESTAMP NOT NULL,
+    domain VARCHAR(255) NOT NULL,
+    successes BIGINT NOT NULL DEFAULT 0,
+    failures BIGINT NOT NULL DEFAULT 0,
+    rejections BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (minute_start, domain)
 );
 
 -- Insert test user
@@ -0,0 +1,61 @@
+package com.logintest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Application configuration.
+ *
+ * Values come from config.properties (see config.properties.template; another file can be
+ * chosen with -Dconfig.file=...), and any JVM system property with the same key overrides the file.
+ */
+public final class AppConfig {
+    
+    private static final Properties FILE_PROPERTIES = load();
+    
+    private AppConfig() {
+    }
+    
+    private static Properties load() {
+        Properties properties = new Properties();
+        Path file = Paths.get(System.getProperty("config.file", "config.properties"));
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            } catch (IOException e) {
+                System.err.println("Error reading " + file + ": " + e.getMessage());
+            }
+        }
+        return properties;
+    }
+    
+    /**
+     * @return the configured value, or the default if the key is not set
+     */
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = FILE_PROPERTIES.getProperty(key);
+        }
+        return value != null ? value.trim() : defaultValue;
+    }
+    
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key, null);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+    
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+    
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+}
@@ -0,0 +1,189 @@
+package com.logintest;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking facade over LoginService. Every call returns at once; its stages run on two
+ * separately sized executors: CPU stages (input validation, existence filter, password
+ * digests) on async.cpuThreads (cores) threads, and store lookups on async.ioThreads
+ * (db.pool.size) threads, as each lookup holds a pooled connection anyway. Each executor
+ * queues at most async.queueSize stages; beyond that calls fail with RejectedExecutionException.
+ * CPU stages never touch the store: the existence filter is caught up by LoginService's
+ * background timer, not by the lookups that consult it.
+ *
+ * Calls with a timeout complete with a TimeoutException once it expires. Once a call is over
+ * (timed out, or cancelled through toCompletableFuture().cancel) its stages that have not
+ * started are skipped, so an expired login never reaches the store; a lookup already running
+ * finishes and is discarded.
+ *
+ * An event-loop server can pass its own executors, e.g. Runnable::run to run the CPU stages
+ * on the loop thread, so only store lookups leave it and no thread waits per request.
+ * The blocking LoginService methods run the same stages inline on the calling thread.
+ */
+public class AsyncLoginService implements AutoCloseable {
+    
+    private static final int CPU_THREADS = AppConfig.getInt("async.cpuThreads", Runtime.getRuntime().availableProcessors());
+    private static final int IO_THREADS = AppConfig.getInt("async.ioThreads", AppConfig.getInt("db.pool.size", 10));
+    private static final int QUEUE_SIZE = AppConfig.getInt("async.queueSize", 10_000);
+    
+    private final LoginService service;
+    private final Executor cpu;
+    private final Executor io;
+    private final boolean ownsExecutors;
+    
+    /**
+     * Creates the facade with its own CPU and I/O executors; release them with {@link #close()}
+     */
+    public AsyncLoginService(LoginService service) {
+        this(service, newExecutor("async-cpu", CPU_THREADS), newExecutor("async-io", IO_THREADS), true);
+        Metrics.gauge("async.cpu.queued", ((ThreadPoolExecutor) cpu).getQueue()::size);
+        Metrics.gauge("async.io.queued", ((ThreadPoolExecutor) io).getQueue()::size);
+    }
+    
+    /**
+     * Creates the facade over executors owned by the caller
+     * @param cpu - Runs validation and digest stages (Runnable::run runs them on the calling thread)
+     * @param io - Runs store lookups
+     */
+    public AsyncLoginService(LoginService service, Executor cpu, Executor io) {
+        this(service, cpu, io, false);
+    }
+    
+    private AsyncLoginService(LoginService service, Executor cpu, Executor io, boolean ownsExecutors) {
+        this.service = service;
+        this.cpu = cpu;
+        this.io = io;
+        this.ownsExecutors = ownsExecutors;
+    }
+    
+    private static ThreadPoolExecutor newExecutor(String name, int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(QUEUE_SIZE), task -> {
+                    Thread thread = new Thread(task, name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    /**
+     * Validates login credentials without a deadline
+     */
+    public CompletionStage<LoginService.LoginResult> validateLogin(String email, String password) {
+        return validateLogin(email, password, null);
+    }
+    
+    /**
+     * Validates login credentials, like LoginService.validateLogin
+     * @param timeout - Time allowed for the whole login, or null for none
+     * @return the result; TimeoutException once the timeout expires
+     */
+    public CompletionStage<LoginService.LoginResult> validateLogin(String email, String password, Duration timeout) {
+        CompletableFuture<LoginService.LoginResult> result = withDeadline(timeout);
+        stage(cpu, result, () -> {
+            LoginService.LoginResult decided = service.precheckLogin(email, password);
+            if (decided != null) {
+                complete(result, email, decided);
+                return;
+            }
+            stage(io, result, () -> {
+                long version = service.cacheVersion();
+                String storedPassword = service.getUserStore().getPassword(email.trim());
+                stage(cpu, result, () -> complete(result, email,
+                        service.completeLogin(email, password, storedPassword, version)));
+            });
+        });
+        return result;
+    }
+    
+    /**
+     * Checks if a user exists, like LoginService.doesUserExist
+     * @param timeout - Time allowed, or null for none
+     */
+    public CompletionStage<Boolean> doesUserExist(String email, Duration timeout) {
+        CompletableFuture<Boolean> result = withDeadline(timeout);
+        stage(cpu, result, () -> {
+            // Filter only; a user added elsewhere is ruled out until the next background catch-up
+            if (!service.mightExist(email)) {
+                result.complete(false);
+                return;
+            }
+            stage(io, result, () -> result.complete(service.getUserStore().userExists(email)));
+        });
+        return result;
+    }
+    
+    /**
+     * Registers a user, like LoginService.registerUser; the whole registration is one store stage
+     * @param timeout - Time allowed before the store stage starts, or null for none
+     */
+    public CompletionStage<Boolean> registerUser(String email, String password, Duration timeout) {
+        CompletableFuture<Boolean> result = withDeadline(timeout);
+        stage(io, result, () -> result.complete(service.registerUser(email, password)));
+        return result;
+    }
+    
+    /**
+     * Stops the executors created by this facade; caller-owned executors are left running
+     */
+    @Override
+    public void close() {
+        if (ownsExecutors) {
+            ((ThreadPoolExecutor) cpu).shutdown();
+            ((ThreadPoolExecutor) io).shutdown();
+        }
+    }
+    
+    private void complete(CompletableFuture<LoginService.LoginResult> result, String email, LoginService.LoginResult login) {
+        if (result.complete(login)) {
+            service.getStats().record(email, login.getOutcome());
+        }
+    }
+    
+    private static <T> CompletableFuture<T> withDeadline(Duration timeout) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (timeout != null) {
+            result.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS).whenComplete((value, error) -> {
+                if (error instanceof TimeoutException) {
+                    Metrics.increment("async.timeouts");
+                }
+            });
+        }
+        return result;
+    }
+    
+    /**
+     * Runs a stage unless the call is already over (timed out, cancelled or failed)
+     */
+    private static void stage(Executor executor, CompletableFuture<?> result, Runnable stage) {
+        if (result.isDone()) {
+            Metrics.increment("async.stages_skipped");
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    Metrics.increment("async.stages_skipped");
+                    return;
+                }
+                try {
+                    stage.run();
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Metrics.increment("async.rejected");
+            result.completeExceptionally(e);
+        }
+    }
+}
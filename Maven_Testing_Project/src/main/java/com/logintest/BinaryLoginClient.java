@@ -0,0 +1,143 @@
+package com.logintest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client for BinaryLoginServer. Requests are pipelined on one connection and matched to
+ * their responses by request id; a background thread reads responses and completes the
+ * returned futures. Thread-safe.
+ */
+public class BinaryLoginClient implements Closeable {
+    
+    private final SocketChannel channel;
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<BinaryProtocol.Response>> pending = new ConcurrentHashMap<>();
+    private final Thread reader;
+    
+    private BinaryLoginClient(SocketChannel channel) {
+        this.channel = channel;
+        this.reader = new Thread(this::readLoop, "binary-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+    
+    /**
+     * Opens a connection to a BinaryLoginServer
+     * @param address - TCP address, or a UnixDomainSocketAddress for a local listener
+     */
+    public static BinaryLoginClient connect(SocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        if (address instanceof InetSocketAddress) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        return new BinaryLoginClient(channel);
+    }
+    
+    /**
+     * Sends one credential check
+     * @return the server's response
+     */
+    public CompletableFuture<BinaryProtocol.Response> login(String email, String password) throws IOException {
+        return send(BinaryProtocol.OP_LOGIN, email, password);
+    }
+    
+    /**
+     * Asks whether an account exists
+     * @return OK if it does, REJECTED otherwise
+     */
+    public CompletableFuture<BinaryProtocol.Response> exists(String email) throws IOException {
+        return send(BinaryProtocol.OP_EXISTS, email);
+    }
+    
+    /**
+     * Checks a session token issued by the HTTP login
+     * @return OK with the session's email as message, REJECTED if unknown or expired
+     */
+    public CompletableFuture<BinaryProtocol.Response> verifySession(String token) throws IOException {
+        return send(BinaryProtocol.OP_SESSION_VERIFY, token);
+    }
+    
+    /**
+     * Sends many credential checks in one write
+     * @param credentials - {email, password} pairs
+     * @return responses in the order of the credentials
+     */
+    public List<CompletableFuture<BinaryProtocol.Response>> loginAll(List<String[]> credentials) throws IOException {
+        List<CompletableFuture<BinaryProtocol.Response>> responses = new ArrayList<>(credentials.size());
+        List<ByteBuffer> frames = new ArrayList<>(credentials.size());
+        int bytes = 0;
+        for (String[] credential : credentials) {
+            int requestId = nextRequestId.incrementAndGet();
+            responses.add(register(requestId));
+            ByteBuffer frame = BinaryProtocol.encodeLogin(requestId, credential[0], credential[1]);
+            frames.add(frame);
+            bytes += frame.remaining();
+        }
+        ByteBuffer batch = ByteBuffer.allocate(bytes);
+        frames.forEach(batch::put);
+        write(batch.flip());
+        return responses;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    private CompletableFuture<BinaryProtocol.Response> send(byte op, String... fields) throws IOException {
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<BinaryProtocol.Response> response = register(requestId);
+        write(BinaryProtocol.encodeRequest(requestId, op, fields));
+        return response;
+    }
+    
+    private CompletableFuture<BinaryProtocol.Response> register(int requestId) {
+        CompletableFuture<BinaryProtocol.Response> response = new CompletableFuture<>();
+        pending.put(requestId, response);
+        return response;
+    }
+    
+    private synchronized void write(ByteBuffer frames) throws IOException {
+        while (frames.hasRemaining()) {
+            channel.write(frames);
+        }
+    }
+    
+    private void readLoop() {
+        ByteBuffer in = ByteBuffer.allocateDirect(64 * 1024);
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                while (in.remaining() >= 4 && in.remaining() >= 4 + in.getInt(in.position())) {
+                    int frameEnd = in.position() + 4 + in.getInt();
+                    int requestId = in.getInt();
+                    byte status = in.get();
+                    String message = BinaryProtocol.getString(in);
+                    in.position(frameEnd);
+                    CompletableFuture<BinaryProtocol.Response> response = pending.remove(requestId);
+                    if (response != null) {
+                        response.complete(new BinaryProtocol.Response(requestId, status, message));
+                    }
+                }
+                in.compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Connection closed or broken; fail whatever is still waiting below
+        }
+        IOException closed = new IOException("Connection closed");
+        pending.values().forEach(response -> response.completeExceptionally(closed));
+        pending.clear();
+    }
+}
@@ -0,0 +1,649 @@
+package com.logintest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jdk.net.ExtendedSocketOptions;
+import jdk.net.UnixDomainPrincipal;
+
+/**
+ * Listener for the binary credential-check protocol (see BinaryProtocol), for internal
+ * callers that only need "is this credential valid" without HTTP, JSON or CORS.
+ *
+ * One selector thread accepts connections, reads frames into pooled direct buffers and
+ * writes responses; decoded requests run on a worker pool through the same
+ * LoginService.validateLogin as the HTTP API. Callers may pipeline many requests on one
+ * connection and match responses by request id, since a slow lookup does not hold up the
+ * requests behind it. A caller that sends without reading its responses is paused: once
+ * binary.maxUnwrittenPerConnection responses wait to be written, the connection is not read
+ * again until half of them are out. Connections beyond binary.maxConnections are closed on
+ * accept. An error on one connection closes only that connection, and a failing accept
+ * (e.g. out of file descriptors) pauses accepting with a growing back-off instead of ending
+ * the selector thread.
+ *
+ * The same protocol can be served on a Unix domain socket for gateways on the same host,
+ * which skips TCP loopback and needs no network port. Access is controlled by the socket
+ * file: it gets the permissions in uds.permissions (rw-rw----) and optionally the group in
+ * uds.group. When uds.allowedUsers or uds.allowedGroups is set, connecting processes whose
+ * peer credentials match neither are also turned away. The TCP listener has no access
+ * control, so EXISTS and SESSION_VERIFY (account enumeration, session lookup) are only
+ * served on the Unix domain socket.
+ *
+ * Settings: binary.enabled (false), binary.port (9090), binary.workers (2 x cores),
+ * binary.maxFrameBytes (1024, at most binary.bufferBytes - 4), binary.maxInFlightPerConnection (1024),
+ * binary.maxUnwrittenPerConnection (1024), binary.maxConnections (binary.buffers / 2), binary.buffers (256) and
+ * binary.bufferBytes (16384); uds.enabled (false),
+ * uds.path (login-api.sock), uds.permissions, uds.group, uds.allowedUsers and uds.allowedGroups.
+ */
+public class BinaryLoginServer implements Closeable {
+    
+    private static final int WORKERS = AppConfig.getInt("binary.workers", 2 * Runtime.getRuntime().availableProcessors());
+    private static final int MAX_FRAME_BYTES = AppConfig.getInt("binary.maxFrameBytes", 1024);
+    private static final int MAX_IN_FLIGHT = AppConfig.getInt("binary.maxInFlightPerConnection", 1024);
+    private static final int MAX_UNWRITTEN = AppConfig.getInt("binary.maxUnwrittenPerConnection", 1024);
+    private static final int BUFFER_BYTES = AppConfig.getInt("binary.bufferBytes", 16384);
+    private static final int BUFFERS = AppConfig.getInt("binary.buffers", 256);
+    // Each connection holds a read and a write buffer
+    private static final int MAX_CONNECTIONS = AppConfig.getInt("binary.maxConnections", BUFFERS / 2);
+    private static final long MIN_ACCEPT_BACKOFF_MILLIS = 10L;
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1000L;
+    private static final String UDS_PERMISSIONS = AppConfig.get("uds.permissions", "rw-rw----");
+    private static final String UDS_GROUP = AppConfig.get("uds.group", null);
+    private static final Set<String> UDS_ALLOWED_USERS = names(AppConfig.get("uds.allowedUsers", ""));
+    private static final Set<String> UDS_ALLOWED_GROUPS = names(AppConfig.get("uds.allowedGroups", ""));
+    
+    private final LoginService service;
+    private final int maxConnections;
+    private final DirectBufferPool buffers = new DirectBufferPool(BUFFERS, BUFFER_BYTES);
+    private final ExecutorService workers;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupRequested = new AtomicBoolean();
+    private final AtomicInteger connections = new AtomicInteger();
+    
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private SelectionKey acceptKey;
+    // Selector thread only: current accept back-off, and when accepting resumes (0 = not paused)
+    private long acceptBackoffMillis;
+    private long acceptResumeAt;
+    // Set for a Unix domain socket listener, which removes its file on close
+    private Path socketFile;
+    private String metricPrefix;
+    private String requestsMetric;
+    private Thread selectorThread;
+    private volatile boolean running;
+    
+    /**
+     * @throws IllegalArgumentException if binary.maxFrameBytes does not fit in a read buffer
+     */
+    public BinaryLoginServer(LoginService service) {
+        this(service, MAX_CONNECTIONS);
+    }
+    
+    /**
+     * @param maxConnections - open connections allowed at once, at most binary.buffers / 2
+     * @throws IllegalArgumentException if binary.maxFrameBytes does not fit in a read buffer
+     */
+    BinaryLoginServer(LoginService service, int maxConnections) {
+        if (MAX_FRAME_BYTES > BUFFER_BYTES - 4) {
+            // A frame that cannot fit would leave the selector spinning on a full buffer
+            throw new IllegalArgumentException("binary.maxFrameBytes (" + MAX_FRAME_BYTES
+                    + ") must be at most binary.bufferBytes - 4 (" + (BUFFER_BYTES - 4) + ")");
+        }
+        this.service = service;
+        this.maxConnections = maxConnections;
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(WORKERS, task -> {
+            Thread thread = new Thread(task, "binary-worker-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Binds the listener and starts the selector thread
+     * @param address - TCP address (port 0 picks a free port), or a UnixDomainSocketAddress
+     * @return the bound address
+     */
+    public SocketAddress start(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            socketFile = ((UnixDomainSocketAddress) address).getPath();
+            removeStaleSocket(socketFile);
+            serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            serverChannel.bind(address);
+            try {
+                restrictAccess(socketFile);
+            } catch (IOException | RuntimeException e) {
+                serverChannel.close();
+                Files.deleteIfExists(socketFile);
+                throw e;
+            }
+            metricPrefix = "uds";
+        } else {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(address);
+            metricPrefix = "binary";
+        }
+        requestsMetric = metricPrefix + ".requests";
+        selector = Selector.open();
+        serverChannel.configureBlocking(false);
+        acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        Metrics.gauge(metricPrefix + ".connections", connections::get);
+        
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "binary-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        Log.info(BinaryLoginServer.class, "Binary protocol listening on " + serverChannel.getLocalAddress());
+        return serverChannel.getLocalAddress();
+    }
+    
+    /**
+     * @return the bound TCP port
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+    
+    /**
+     * Stops accepting, closes every connection and stops the workers
+     */
+    @Override
+    public void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (socketFile != null) {
+            Files.deleteIfExists(socketFile);
+        }
+    }
+    
+    /**
+     * Deletes a socket file left behind by a listener that did not shut down cleanly
+     * @throws IOException if the path is not a socket or another listener still serves it
+     */
+    private static void removeStaleSocket(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) || Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)
+                || Files.isSymbolicLink(path)) {
+            throw new IOException(path + " exists and is not a socket");
+        }
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+        } catch (ConnectException e) {
+            Files.delete(path);
+            return;
+        }
+        throw new IOException(path + " is in use by another listener");
+    }
+    
+    /**
+     * Applies uds.permissions and uds.group to the socket file
+     */
+    private static void restrictAccess(Path path) throws IOException {
+        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(UDS_PERMISSIONS));
+        if (UDS_GROUP != null) {
+            GroupPrincipal group = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByGroupName(UDS_GROUP);
+            Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS).setGroup(group);
+        }
+    }
+    
+    /**
+     * @return true if the connecting process may use a Unix domain socket listener
+     */
+    private static boolean isPeerAllowed(SocketChannel channel) {
+        if (UDS_ALLOWED_USERS.isEmpty() && UDS_ALLOWED_GROUPS.isEmpty()) {
+            return true;
+        }
+        try {
+            UnixDomainPrincipal peer = channel.getOption(ExtendedSocketOptions.SO_PEERCRED);
+            return UDS_ALLOWED_USERS.contains(peer.user().getName()) || UDS_ALLOWED_GROUPS.contains(peer.group().getName());
+        } catch (IOException | UnsupportedOperationException e) {
+            Log.warn(BinaryLoginServer.class, "Cannot read peer credentials, refusing connection", e);
+            return false;
+        }
+    }
+    
+    private static Set<String> names(String list) {
+        Set<String> names = new HashSet<>(Arrays.asList(list.split(",")));
+        names.removeIf(name -> name.trim().isEmpty());
+        return names;
+    }
+    
+    private void selectLoop() {
+        try {
+            while (running) {
+                long pausedMillis = resumeAccepting();
+                if (pausedMillis > 0) {
+                    selector.select(pausedMillis);
+                } else {
+                    selector.select();
+                }
+                wakeupRequested.set(false);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(connection);
+                        }
+                    } catch (RuntimeException e) {
+                        fail(connection, e);
+                    }
+                }
+                Connection connection;
+                while ((connection = pendingWrites.poll()) != null) {
+                    connection.writeScheduled.set(false);
+                    try {
+                        flush(connection);
+                    } catch (RuntimeException e) {
+                        fail(connection, e);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.error(BinaryLoginServer.class, "Binary protocol selector failed", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    close((Connection) key.attachment());
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                Log.warn(BinaryLoginServer.class, "Error closing binary protocol listener", e);
+            }
+        }
+    }
+    
+    /**
+     * Closes a connection whose handling failed; the listener and other connections carry on
+     */
+    private void fail(Connection connection, RuntimeException e) {
+        Log.error(BinaryLoginServer.class, "Closing binary protocol connection after an error", e);
+        close(connection);
+    }
+    
+    /**
+     * Accepts pending connections; on an accept failure, stops accepting for a back-off
+     * that doubles up to a second while failures continue
+     */
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                acceptBackoffMillis = acceptBackoffMillis == 0
+                        ? MIN_ACCEPT_BACKOFF_MILLIS : Math.min(MAX_ACCEPT_BACKOFF_MILLIS, acceptBackoffMillis * 2);
+                if (acceptBackoffMillis == MIN_ACCEPT_BACKOFF_MILLIS) {
+                    Log.warn(BinaryLoginServer.class, "Cannot accept binary protocol connections, backing off", e);
+                }
+                Metrics.increment(metricPrefix + ".acceptFailures");
+                acceptResumeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acceptBackoffMillis);
+                acceptKey.interestOps(0);
+                return;
+            }
+            if (channel == null) {
+                return;
+            }
+            acceptBackoffMillis = 0;
+            try {
+                register(channel);
+            } catch (IOException | RuntimeException e) {
+                Log.warn(BinaryLoginServer.class, "Cannot set up binary protocol connection", e);
+                try {
+                    channel.close();
+                } catch (IOException closeError) {
+                    // Nothing more to release
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return milliseconds until accepting resumes, or 0 if it is not paused (resuming it if due)
+     */
+    private long resumeAccepting() {
+        if (acceptResumeAt == 0) {
+            return 0;
+        }
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(acceptResumeAt - System.nanoTime());
+        if (waitMillis > 0) {
+            return waitMillis;
+        }
+        acceptResumeAt = 0;
+        acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+        return 0;
+    }
+    
+    /**
+     * Sets up an accepted channel, or closes it if the listener is at binary.maxConnections
+     * or the peer is not allowed
+     */
+    private void register(SocketChannel channel) throws IOException {
+        if (connections.get() >= maxConnections) {
+            Metrics.increment(metricPrefix + ".rejected.connections");
+            channel.close();
+            return;
+        }
+        if (socketFile == null) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } else if (!isPeerAllowed(channel)) {
+            Metrics.increment(metricPrefix + ".rejected.peer");
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        ByteBuffer readBuffer = buffers.acquire();
+        ByteBuffer writeBuffer = readBuffer == null ? null : buffers.acquire();
+        if (writeBuffer == null) {
+            if (readBuffer != null) {
+                buffers.release(readBuffer);
+            }
+            Metrics.increment(metricPrefix + ".rejected.connections");
+            channel.close();
+            return;
+        }
+        Connection connection = new Connection(channel, readBuffer, writeBuffer);
+        try {
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        } catch (IOException | RuntimeException e) {
+            buffers.release(readBuffer);
+            buffers.release(writeBuffer);
+            throw e;
+        }
+        connections.incrementAndGet();
+    }
+    
+    /**
+     * Reads what is available and dispatches the complete frames
+     */
+    private void read(Connection connection) {
+        ByteBuffer in = connection.readBuffer;
+        try {
+            if (connection.channel.read(in) < 0) {
+                close(connection);
+                return;
+            }
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+        dispatchFrames(connection);
+    }
+    
+    /**
+     * Dispatches complete frames from the read buffer until it runs out or the connection has
+     * too many unwritten responses, in which case reading pauses and the rest stays buffered
+     */
+    private void dispatchFrames(Connection connection) {
+        ByteBuffer in = connection.readBuffer;
+        in.flip();
+        while (in.remaining() >= 4) {
+            if (connection.unwritten.get() >= MAX_UNWRITTEN) {
+                connection.readPaused = true;
+                Metrics.increment(metricPrefix + ".readPaused");
+                break;
+            }
+            int frameLength = in.getInt(in.position());
+            if (frameLength < BinaryProtocol.HEADER_BYTES || frameLength > MAX_FRAME_BYTES) {
+                // The stream cannot be resynchronized after a bad length
+                Metrics.increment(metricPrefix + ".rejected.frame");
+                close(connection);
+                return;
+            }
+            if (in.remaining() < 4 + frameLength) {
+                break;
+            }
+            int frameEnd = in.position() + 4 + frameLength;
+            ByteBuffer frame = in.duplicate();
+            frame.position(in.position() + 4).limit(frameEnd);
+            in.position(frameEnd);
+            dispatch(connection, frame);
+        }
+        in.compact();
+        updateInterest(connection);
+    }
+    
+    /**
+     * Decodes a frame on the selector thread and hands the lookup to a worker
+     */
+    private void dispatch(Connection connection, ByteBuffer frame) {
+        int requestId = frame.getInt();
+        byte op = frame.get();
+        Metrics.increment(requestsMetric);
+        if (connection.inFlight.get() >= MAX_IN_FLIGHT) {
+            respond(connection, requestId, BinaryProtocol.STATUS_BUSY, "Too many requests in flight");
+            return;
+        }
+        
+        if (socketFile == null && (op == BinaryProtocol.OP_EXISTS || op == BinaryProtocol.OP_SESSION_VERIFY)) {
+            Metrics.increment(metricPrefix + ".rejected.op");
+            respond(connection, requestId, BinaryProtocol.STATUS_BAD_REQUEST, "Only available on the Unix domain socket");
+            return;
+        }
+        
+        Runnable task;
+        try {
+            task = decode(connection, requestId, op, frame);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            Metrics.increment(metricPrefix + ".rejected.request");
+            respond(connection, requestId, BinaryProtocol.STATUS_BAD_REQUEST, "Malformed request");
+            return;
+        }
+        
+        connection.inFlight.incrementAndGet();
+        try {
+            workers.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Log.error(BinaryLoginServer.class, "Binary request failed", e);
+                    respond(connection, requestId, BinaryProtocol.STATUS_BAD_REQUEST, "Request failed");
+                } finally {
+                    connection.inFlight.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            connection.inFlight.decrementAndGet();
+            respond(connection, requestId, BinaryProtocol.STATUS_BUSY, "Server shutting down");
+        }
+    }
+    
+    /**
+     * @return the work for one request
+     * @throws IllegalArgumentException if the op is unknown or its payload is malformed
+     */
+    private Runnable decode(Connection connection, int requestId, byte op, ByteBuffer payload) {
+        if (op == BinaryProtocol.OP_LOGIN) {
+            String email = BinaryProtocol.getString(payload);
+            String password = BinaryProtocol.getString(payload);
+            return () -> {
+                LoginService.LoginResult result = service.validateLogin(email, password);
+                respond(connection, requestId,
+                        result.isSuccess() ? BinaryProtocol.STATUS_OK : BinaryProtocol.STATUS_REJECTED,
+                        result.getMessage());
+                StartupTimeline.loginServed();
+            };
+        }
+        if (op == BinaryProtocol.OP_EXISTS) {
+            String email = BinaryProtocol.getString(payload);
+            return () -> {
+                boolean exists = service.doesUserExist(email);
+                respond(connection, requestId, exists ? BinaryProtocol.STATUS_OK : BinaryProtocol.STATUS_REJECTED,
+                        exists ? "User exists" : "Unknown user");
+            };
+        }
+        if (op == BinaryProtocol.OP_SESSION_VERIFY) {
+            String token = BinaryProtocol.getString(payload);
+            return () -> {
+                String email = service.verifySession(token);
+                respond(connection, requestId, email != null ? BinaryProtocol.STATUS_OK : BinaryProtocol.STATUS_REJECTED,
+                        email != null ? email : "Invalid or expired session");
+            };
+        }
+        throw new IllegalArgumentException("Unknown op " + op);
+    }
+    
+    /**
+     * Queues a response and makes sure the selector thread will write it
+     */
+    private void respond(Connection connection, int requestId, byte status, String message) {
+        connection.unwritten.incrementAndGet();
+        connection.outbound.add(BinaryProtocol.encodeResponse(requestId, status, message));
+        if (connection.writeScheduled.compareAndSet(false, true)) {
+            pendingWrites.add(connection);
+            if (Thread.currentThread() != selectorThread && wakeupRequested.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+    }
+    
+    /**
+     * Writes queued responses, batching as many as fit into one write, then resumes a paused
+     * connection once half of its unwritten responses are out
+     */
+    private void flush(Connection connection) {
+        if (connection.closed) {
+            return;
+        }
+        ByteBuffer out = connection.writeBuffer;
+        try {
+            while (true) {
+                byte[] next;
+                while ((next = connection.outbound.peek()) != null && out.remaining() >= next.length) {
+                    out.put(next);
+                    connection.outbound.poll();
+                    connection.unwritten.decrementAndGet();
+                }
+                out.flip();
+                connection.channel.write(out);
+                out.compact();
+                if (out.position() > 0 || connection.outbound.isEmpty()) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+        if (connection.readPaused && connection.unwritten.get() <= MAX_UNWRITTEN / 2) {
+            connection.readPaused = false;
+            // Frames that arrived before the pause are already buffered and get no OP_READ
+            dispatchFrames(connection);
+        } else {
+            updateInterest(connection);
+        }
+    }
+    
+    /**
+     * Reads unless paused; asks for OP_WRITE while written bytes are left over
+     */
+    private void updateInterest(Connection connection) {
+        if (connection.closed) {
+            return;
+        }
+        int ops = connection.readPaused ? 0 : SelectionKey.OP_READ;
+        if (connection.writeBuffer.position() > 0) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        connection.key.interestOps(ops);
+    }
+    
+    private void close(Connection connection) {
+        if (connection.closed) {
+            return;
+        }
+        connection.closed = true;
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // Already broken; nothing left to release but the buffers
+        }
+        buffers.release(connection.readBuffer);
+        buffers.release(connection.writeBuffer);
+        connections.decrementAndGet();
+    }
+    
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer readBuffer;
+        private final ByteBuffer writeBuffer;
+        private final Queue<byte[]> outbound = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean writeScheduled = new AtomicBoolean();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // Responses queued but not yet copied into the write buffer
+        private final AtomicInteger unwritten = new AtomicInteger();
+        private SelectionKey key;
+        // Only touched by the selector thread
+        private boolean closed;
+        private boolean readPaused;
+        
+        Connection(SocketChannel channel, ByteBuffer readBuffer, ByteBuffer writeBuffer) {
+            this.channel = channel;
+            this.readBuffer = readBuffer;
+            this.writeBuffer = writeBuffer;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.logintest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format of the binary credential-check protocol served by BinaryLoginServer.
+ * All integers are big-endian; strings are UTF-8 with an unsigned short length prefix.
+ *
+ * Request:  int frameLength | int requestId | byte op | payload
+ *   LOGIN:          string email | string password
+ *   EXISTS:         string email
+ *   SESSION_VERIFY: string token (from the HTTP login response); OK carries the session's email
+ * Response: int frameLength | int requestId | byte status | string message
+ *
+ * frameLength counts the bytes after itself. Request ids are chosen by the caller and echoed
+ * back; responses on one connection may arrive in any order, so callers can pipeline.
+ */
+public final class BinaryProtocol {
+    
+    public static final byte OP_LOGIN = 1;
+    public static final byte OP_EXISTS = 2;
+    public static final byte OP_SESSION_VERIFY = 3;
+    
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_REJECTED = 1;
+    public static final byte STATUS_BAD_REQUEST = 2;
+    public static final byte STATUS_BUSY = 3;
+    
+    // requestId + op or status
+    static final int HEADER_BYTES = 5;
+    
+    private BinaryProtocol() {
+    }
+    
+    /**
+     * @return a complete LOGIN request frame
+     */
+    public static ByteBuffer encodeLogin(int requestId, String email, String password) {
+        return encodeRequest(requestId, OP_LOGIN, email, password);
+    }
+    
+    /**
+     * @param fields - The op's string fields, in order
+     * @return a complete request frame
+     */
+    public static ByteBuffer encodeRequest(int requestId, byte op, String... fields) {
+        byte[][] encoded = new byte[fields.length][];
+        int length = 4 + HEADER_BYTES;
+        for (int i = 0; i < fields.length; i++) {
+            encoded[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+            length += 2 + encoded[i].length;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        frame.putInt(length - 4).putInt(requestId).put(op);
+        for (byte[] field : encoded) {
+            putString(frame, field);
+        }
+        return frame.flip();
+    }
+    
+    /**
+     * @return a complete response frame
+     */
+    public static byte[] encodeResponse(int requestId, byte status, String message) {
+        byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(4 + HEADER_BYTES + 2 + messageBytes.length);
+        frame.putInt(frame.capacity() - 4).putInt(requestId).put(status);
+        putString(frame, messageBytes);
+        return frame.array();
+    }
+    
+    /**
+     * Reads a length-prefixed string
+     * @throws IllegalArgumentException if the length runs past the frame
+     */
+    public static String getString(ByteBuffer frame) {
+        if (frame.remaining() < 2) {
+            throw new IllegalArgumentException("Truncated string length");
+        }
+        int length = Short.toUnsignedInt(frame.getShort());
+        if (frame.remaining() < length) {
+            throw new IllegalArgumentException("String runs past the frame");
+        }
+        byte[] bytes = new byte[length];
+        frame.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static void putString(ByteBuffer frame, byte[] bytes) {
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String longer than 65535 bytes");
+        }
+        frame.putShort((short) bytes.length).put(bytes);
+    }
+    
+    /**
+     * A decoded response
+     */
+    public static final class Response {
+        private final int requestId;
+        private final byte status;
+        private final String message;
+        
+        public Response(int requestId, byte status, String message) {
+            this.requestId = requestId;
+            this.status = status;
+            this.message = message;
+        }
+        
+        public int getRequestId() {
+            return requestId;
+        }
+        
+        public byte getStatus() {
+            return status;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+        
+        public boolean isSuccess() {
+            return status == STATUS_OK;
+        }
+    }
+}
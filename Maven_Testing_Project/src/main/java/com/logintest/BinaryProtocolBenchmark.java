@@ -0,0 +1,136 @@
+package com.logintest;
+
+import com.google.gson.Gson;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Compares credential-check throughput of HTTP/JSON (LoginAPI) and the binary protocol
+ * (BinaryLoginServer) over TCP and over a Unix domain socket, all in-process over an
+ * InMemoryUserStore. Reports requests per second
+ * and per CPU-second of the whole process, i.e. throughput per core.
+ *
+ * Usage:
+ *   mvn exec:java -Dexec.mainClass="com.logintest.BinaryProtocolBenchmark" -Dexec.args="200000 64"
+ * Arguments: requests per protocol [100000], requests in flight [64]
+ */
+public class BinaryProtocolBenchmark {
+    
+    private static final String EMAIL = "test@example.com";
+    private static final String PASSWORD = "Password123!";
+    
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int window = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        
+        InMemoryUserStore store = new InMemoryUserStore();
+        store.addUser(EMAIL, PASSWORD);
+        LoginService service = new LoginService(store);
+        service.initialize();
+        Path snapshot = Files.createTempFile("benchmark", ".snapshot");
+        Files.delete(snapshot);
+        LoginAPI.start(service, 0, snapshot);
+        BinaryLoginServer binary = new BinaryLoginServer(service);
+        binary.start(new InetSocketAddress("localhost", 0));
+        Path socketDir = Files.createTempDirectory("benchmark-uds");
+        BinaryLoginServer uds = new BinaryLoginServer(service);
+        UnixDomainSocketAddress udsAddress = UnixDomainSocketAddress.of(socketDir.resolve("login-api.sock"));
+        uds.start(udsAddress);
+        
+        try {
+            HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            URI uri = URI.create("http://localhost:" + LoginAPI.getPort() + "/api/login");
+            BinaryLoginClient client = BinaryLoginClient.connect(new InetSocketAddress("localhost", binary.getPort()));
+            BinaryLoginClient udsClient = BinaryLoginClient.connect(udsAddress);
+            
+            // Short untimed passes first, so every path is JIT-compiled
+            runHttp(http, uri, Math.min(requests, 20_000), window);
+            runBinary(client, Math.min(requests, 20_000), window);
+            runBinary(udsClient, Math.min(requests, 20_000), window);
+            
+            double[] httpResult = measure(() -> runHttp(http, uri, requests, window), requests);
+            double[] binaryResult = measure(() -> runBinary(client, requests, window), requests);
+            double[] udsResult = measure(() -> runBinary(udsClient, requests, window), requests);
+            client.close();
+            udsClient.close();
+            
+            System.out.printf("%n%-12s %14s %18s%n", "protocol", "requests/s", "requests/cpu-s");
+            System.out.printf("%-12s %14.0f %18.0f%n", "http/json", httpResult[0], httpResult[1]);
+            System.out.printf("%-12s %14.0f %18.0f%n", "binary/tcp", binaryResult[0], binaryResult[1]);
+            System.out.printf("%-12s %14.0f %18.0f%n", "binary/uds", udsResult[0], udsResult[1]);
+            System.out.printf("Binary throughput per core: %.1fx HTTP/JSON (tcp), %.1fx (uds)%n",
+                    binaryResult[1] / httpResult[1], udsResult[1] / httpResult[1]);
+        } finally {
+            binary.close();
+            uds.close();
+            Files.deleteIfExists(socketDir);
+            LoginAPI.shutdown();
+            Files.deleteIfExists(snapshot);
+        }
+        System.exit(0);
+    }
+    
+    /**
+     * @return {requests per second, requests per CPU-second}
+     */
+    private static double[] measure(Workload workload, int requests) throws Exception {
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long cpuBefore = os.getProcessCpuTime();
+        long started = System.nanoTime();
+        workload.run();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        double cpuSeconds = (os.getProcessCpuTime() - cpuBefore) / 1e9;
+        return new double[] {requests / seconds, requests / cpuSeconds};
+    }
+    
+    private static void runHttp(HttpClient http, URI uri, int requests, int window) throws Exception {
+        Map<String, String> body = new HashMap<>();
+        body.put("email", EMAIL);
+        body.put("password", PASSWORD);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(new Gson().toJson(body)))
+                .build();
+        Semaphore inFlight = new Semaphore(window);
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> inFlight.release());
+        }
+        inFlight.acquire(window);
+    }
+    
+    private static void runBinary(BinaryLoginClient client, int requests, int window) throws Exception {
+        List<String[]> batch = new ArrayList<>(window);
+        for (int i = 0; i < window; i++) {
+            batch.add(new String[] {EMAIL, PASSWORD});
+        }
+        // Keep up to two windows in flight: send the next batch while the previous one completes
+        CompletableFuture<?> previous = CompletableFuture.completedFuture(null);
+        for (int sent = 0; sent < requests; sent += window) {
+            List<CompletableFuture<BinaryProtocol.Response>> responses =
+                    client.loginAll(sent + window <= requests ? batch : batch.subList(0, requests - sent));
+            previous.join();
+            previous = CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0]));
+        }
+        previous.join();
+    }
+    
+    private interface Workload {
+        void run() throws Exception;
+    }
+}
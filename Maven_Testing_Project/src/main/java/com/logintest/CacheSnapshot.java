@@ -0,0 +1,129 @@
+package com.logintest;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot of the credential cache and existence filter.
+ *
+ * Layout (big-endian):
+ *   int magic, int version, long reconciledAt (DB time, millis),
+ *   int entryCount, entryCount x (byte emailLength, ASCII email, 32-byte digest),
+ *   int hashCount, int wordCount, wordCount x long
+ */
+public class CacheSnapshot {
+    
+    private static final int MAGIC = 0x4C43534E; // "LCSN"
+    private static final int VERSION = 1;
+    private static final long COUNT_OFFSET = 16;
+    
+    private final long reconciledAt;
+    private final ExistenceFilter filter;
+    
+    private CacheSnapshot(long reconciledAt, ExistenceFilter filter) {
+        this.reconciledAt = reconciledAt;
+        this.filter = filter;
+    }
+    
+    /**
+     * @return database time up to which the snapshot contents are current
+     */
+    public long getReconciledAt() {
+        return reconciledAt;
+    }
+    
+    /**
+     * @return the existence filter stored in the snapshot
+     */
+    public ExistenceFilter getFilter() {
+        return filter;
+    }
+    
+    /**
+     * Writes the cache and filter to a temporary file and atomically moves it into place
+     * @param path - Snapshot file
+     * @param reconciledAt - Database time the contents are current up to
+     */
+    public static void write(Path path, long reconciledAt, CredentialCache cache, ExistenceFilter filter) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        int[] count = {0};
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(reconciledAt);
+            out.writeInt(0); // entry count, patched below
+            
+            cache.forEach((email, digest) -> {
+                if (email.length() > 255 || digest.length != PasswordDigest.LENGTH) {
+                    return;
+                }
+                try {
+                    out.writeByte(email.length());
+                    out.writeBytes(email);
+                    out.write(digest);
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            
+            out.writeInt(filter.getHashCount());
+            out.writeInt(filter.getWordCount());
+            for (int i = 0; i < filter.getWordCount(); i++) {
+                out.writeLong(filter.getWord(i));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, count[0]), COUNT_OFFSET);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Memory-maps a snapshot file and loads its entries into the cache
+     * @param path - Snapshot file
+     * @param cache - Cache to populate
+     * @return the snapshot header and filter, or null if the file is missing or not a snapshot
+     */
+    public static CacheSnapshot load(Path path, CredentialCache cache) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 20 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            
+            long reconciledAt = buffer.getLong();
+            int entryCount = buffer.getInt();
+            byte[] emailBytes = new byte[255];
+            for (int i = 0; i < entryCount; i++) {
+                int length = buffer.get() & 0xFF;
+                buffer.get(emailBytes, 0, length);
+                byte[] digest = new byte[PasswordDigest.LENGTH];
+                buffer.get(digest);
+                cache.put(new String(emailBytes, 0, length, StandardCharsets.US_ASCII), digest);
+            }
+            
+            int hashCount = buffer.getInt();
+            long[] words = new long[buffer.getInt()];
+            buffer.asLongBuffer().get(words);
+            return new CacheSnapshot(reconciledAt, new ExistenceFilter(words, hashCount));
+        }
+    }
+}
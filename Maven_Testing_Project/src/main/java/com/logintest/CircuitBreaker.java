@@ -0,0 +1,92 @@
+package com.logintest;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker for database access.
+ *
+ * CLOSED: requests flow; consecutive failures are counted.
+ * OPEN: requests fail fast until the cool-down has passed.
+ * HALF_OPEN: requests flow again; the next health probe closes or re-opens the circuit.
+ * Any success (in practice the background health probe) resets the failure count.
+ * Requests turned away while open are not failures, so they never extend the cool-down.
+ */
+public class CircuitBreaker {
+    
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+    
+    private final int failureThreshold;
+    private final long coolDownMillis;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+    private final AtomicBoolean rejectionReported = new AtomicBoolean();
+    
+    public CircuitBreaker(int failureThreshold, long coolDownMillis) {
+        this.failureThreshold = failureThreshold;
+        this.coolDownMillis = coolDownMillis;
+    }
+    
+    /**
+     * @return true if a request may go to the database
+     */
+    public boolean allowRequest() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < coolDownMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+        }
+        return true;
+    }
+    
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        state = State.CLOSED;
+    }
+    
+    public void recordFailure() {
+        // Requests that started before the circuit opened may still fail; the cool-down runs from the opening
+        if (state == State.OPEN) {
+            return;
+        }
+        if (state == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt = System.currentTimeMillis();
+            rejectionReported.set(false);
+            state = State.OPEN;
+        }
+    }
+    
+    /**
+     * @return true for the first rejected request since the circuit last opened, so a
+     *         rejection is logged once per opening rather than once per request
+     */
+    public boolean firstRejection() {
+        return rejectionReported.compareAndSet(false, true);
+    }
+    
+    public State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= coolDownMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+    
+    /**
+     * Thrown instead of reaching the database while the circuit is open
+     */
+    public static class OpenException extends SQLException {
+        
+        private static final long serialVersionUID = 1L;
+        
+        public OpenException() {
+            super("Database circuit breaker is open");
+        }
+    }
+}
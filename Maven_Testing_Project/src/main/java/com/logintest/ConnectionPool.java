@@ -0,0 +1,195 @@
+package com.logintest;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size JDBC connection pool.
+ * Borrowed connections are proxies whose close() returns the physical connection to the pool,
+ * so callers use the usual try-with-resources idiom.
+ */
+public class ConnectionPool {
+    
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    
+    private final BlockingQueue<Connection> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger borrowed = new AtomicInteger();
+    private volatile boolean closed;
+    
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+    
+    /**
+     * Opens connections until the pool is full
+     * @return number of connections opened
+     */
+    public int prefill() throws SQLException {
+        int opened = 0;
+        while (reserveSlot()) {
+            idle.offer(open());
+            opened++;
+        }
+        return opened;
+    }
+    
+    /**
+     * Borrows a connection, opening a new one if the pool is not yet full
+     * @return pooled connection; close it to return it to the pool
+     * @throws SQLException if no connection becomes available within the borrow timeout
+     */
+    public Connection borrow() throws SQLException {
+        return borrow(borrowTimeoutMillis);
+    }
+    
+    /**
+     * Borrows a connection, waiting at most the given time for one to be returned
+     * @param timeoutMillis - Longest wait (e.g. the rest of a request's deadline)
+     */
+    public Connection borrow(long timeoutMillis) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        
+        Connection physical = idle.poll();
+        if (physical == null && reserveSlot()) {
+            physical = open();
+        }
+        if (physical == null) {
+            try {
+                physical = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+            if (physical == null) {
+                throw new SQLTransientConnectionException("Timed out waiting for a database connection");
+            }
+        }
+        
+        borrowed.incrementAndGet();
+        return wrap(physical);
+    }
+    
+    /**
+     * Closes every idle connection; borrowed connections are closed when returned
+     */
+    public void close() {
+        closed = true;
+        Connection physical;
+        while ((physical = idle.poll()) != null) {
+            closeQuietly(physical);
+        }
+    }
+    
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    public int getOpenCount() {
+        return created.get();
+    }
+    
+    public int getIdleCount() {
+        return idle.size();
+    }
+    
+    public int getActiveCount() {
+        return borrowed.get();
+    }
+    
+    private boolean reserveSlot() {
+        int current;
+        do {
+            current = created.get();
+            if (current >= maxSize) {
+                return false;
+            }
+        } while (!created.compareAndSet(current, current + 1));
+        return true;
+    }
+    
+    private Connection open() throws SQLException {
+        try {
+            return DriverManager.getConnection(url, user, password);
+        } catch (SQLException e) {
+            created.decrementAndGet();
+            throw e;
+        }
+    }
+    
+    private void release(Connection physical, boolean resetNetworkTimeout) {
+        borrowed.decrementAndGet();
+        boolean usable;
+        try {
+            if (resetNetworkTimeout) {
+                physical.setNetworkTimeout(Runnable::run, 0);
+            }
+            usable = !closed && !physical.isClosed();
+        } catch (SQLException e) {
+            usable = false;
+        }
+        if (!usable || !idle.offer(physical)) {
+            created.decrementAndGet();
+            closeQuietly(physical);
+        }
+    }
+    
+    private static void closeQuietly(Connection physical) {
+        try {
+            physical.close();
+        } catch (SQLException ignored) {
+            // Connection is being discarded anyway
+        }
+    }
+    
+    private Connection wrap(Connection physical) {
+        // {returned to the pool, network timeout changed by the borrower}
+        boolean[] state = {false, false};
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!state[0]) {
+                                state[0] = true;
+                                release(physical, state[1]);
+                            }
+                            return null;
+                        case "isClosed":
+                            return state[0] || physical.isClosed();
+                        default:
+                            if (state[0]) {
+                                throw new SQLException("Connection has been returned to the pool");
+                            }
+                            if ("setNetworkTimeout".equals(method.getName())) {
+                                state[1] = true;
+                            }
+                            try {
+                                return method.invoke(physical, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+}
@@ -0,0 +1,48 @@
+package com.logintest;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Cache of email to password digest, consulted by LoginService before the database.
+ * Entries expire after the cache's time-to-live, so changes made outside the service
+ * (deleted users, new passwords) stop matching after at most that long.
+ */
+public interface CredentialCache {
+    
+    /**
+     * Result of probing the cache for a credential pair
+     */
+    enum Lookup {
+        MATCH,
+        MISMATCH,
+        MISS
+    }
+    
+    /**
+     * Checks a credential pair against the cached digest
+     * @param email - Normalized (lower-case) email
+     * @param digest - Password digest to compare
+     * @return MATCH or MISMATCH when the email is cached and not expired, MISS otherwise
+     */
+    Lookup lookup(String email, byte[] digest);
+    
+    /**
+     * Stores the digest for an email, replacing any previous entry and restarting its time-to-live
+     */
+    void put(String email, byte[] digest);
+    
+    /**
+     * Removes an email from the cache
+     */
+    void invalidate(String email);
+    
+    /**
+     * @return number of cached entries
+     */
+    int size();
+    
+    /**
+     * Visits every unexpired entry (used when writing snapshots)
+     */
+    void forEach(BiConsumer<String, byte[]> action);
+}
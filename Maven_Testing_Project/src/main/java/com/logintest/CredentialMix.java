@@ -0,0 +1,141 @@
+package com.logintest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates login credential pairs for load tools, drawn from a weighted mix of
+ * valid, wrong-password, injection and unknown-user requests.
+ * Not thread-safe; each generator thread should own its own instance.
+ */
+public class CredentialMix {
+    
+    public enum Kind {
+        VALID,
+        INVALID,
+        INJECTION,
+        UNKNOWN
+    }
+    
+    private static final String[][] INJECTION_PAYLOADS = {
+        {"' OR '1'='1", "password"},
+        {"admin@example.com'; DROP TABLE user; --", "password"},
+        {"<script>alert(1)</script>@example.com", "Password123!"},
+        {"user@example.com", "' union select password from user --"},
+        {"<b>user</b>@example.com", "Password123!"},
+        {"user@example.com", "javascript:alert(1)"}
+    };
+    
+    private final List<String[]> validCredentials;
+    private final Kind[] kinds;
+    private final int[] cumulativeWeights;
+    private final SplittableRandom random;
+    private final boolean inOrder;
+    private int cursor;
+    private long unknownCounter;
+    
+    /**
+     * @param validCredentials - Known good {email, password} pairs
+     * @param weights - Relative weight of each kind
+     * @param seed - Random seed, so runs are repeatable
+     */
+    public CredentialMix(List<String[]> validCredentials, Map<Kind, Integer> weights, long seed) {
+        this(validCredentials, weights, seed, false);
+    }
+    
+    /**
+     * @param validCredentials - Known good {email, password} pairs
+     * @param weights - Relative weight of each kind
+     * @param seed - Random seed, so runs are repeatable
+     * @param inOrder - Replay valid credentials in list order (an access trace), wrapping at the end
+     */
+    public CredentialMix(List<String[]> validCredentials, Map<Kind, Integer> weights, long seed, boolean inOrder) {
+        if (validCredentials.isEmpty()) {
+            throw new IllegalArgumentException("At least one valid credential is required");
+        }
+        this.validCredentials = validCredentials;
+        this.random = new SplittableRandom(seed);
+        this.inOrder = inOrder;
+        this.kinds = weights.keySet().toArray(new Kind[0]);
+        this.cumulativeWeights = new int[kinds.length];
+        int total = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            total += weights.get(kinds[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Credential mix weights must add up to more than 0");
+        }
+    }
+    
+    /**
+     * Parses a mix such as "valid=70,invalid=15,injection=10,unknown=5"
+     */
+    public static Map<Kind, Integer> parseWeights(String spec) {
+        Map<Kind, Integer> weights = new EnumMap<>(Kind.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry: " + part);
+            }
+            weights.put(Kind.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+    
+    /**
+     * Reads "email,password" lines (a header line starting with "email" is skipped)
+     */
+    public static List<String[]> readCredentials(Path file) throws IOException {
+        List<String[]> credentials = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank() || line.startsWith("email")) {
+                continue;
+            }
+            int comma = line.indexOf(',');
+            credentials.add(new String[] {line.substring(0, comma), line.substring(comma + 1)});
+        }
+        return credentials;
+    }
+    
+    /**
+     * @return the kind of the next request, drawn by weight
+     */
+    public Kind nextKind() {
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < kinds.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return kinds[i];
+            }
+        }
+        return kinds[kinds.length - 1];
+    }
+    
+    /**
+     * @return {email, password} for the given kind
+     */
+    public String[] next(Kind kind) {
+        switch (kind) {
+            case VALID:
+                if (inOrder) {
+                    String[] credential = validCredentials.get(cursor);
+                    cursor = (cursor + 1) % validCredentials.size();
+                    return credential;
+                }
+                return validCredentials.get(random.nextInt(validCredentials.size()));
+            case INVALID:
+                String[] valid = validCredentials.get(random.nextInt(validCredentials.size()));
+                return new String[] {valid[0], "Wrong" + random.nextInt(1_000_000) + "!"};
+            case INJECTION:
+                return INJECTION_PAYLOADS[random.nextInt(INJECTION_PAYLOADS.length)];
+            default:
+                return new String[] {"load" + (unknownCounter++) + "@unknown.invalid", "Password123!"};
+        }
+    }
+}
@@ -1,45 +1,107 @@
 package com.logintest;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
-public class DatabaseHelper {
+public class DatabaseHelper implements UserStore {
     
-    // Database connection parameters
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/"; // Add your schema name
-    private static final String DB_SCHEMA = "LoginData"; // Replace with your schema name
-    private static final String DB_USER = "root"; // Replace with your MySQL username
-    private static final String DB_PASSWORD = "21030-Cm-108"; // Replace with your MySQL password
+    // Connection pool parameters
+    private static final int POOL_SIZE = AppConfig.getInt("db.pool.size", 10);
+    private static final long POOL_BORROW_TIMEOUT_MS = AppConfig.getLong("db.pool.borrowTimeoutMs", 5000L);
     
-    private Connection connection;
+    // Circuit breaker parameters
+    private static final int BREAKER_FAILURE_THRESHOLD = 5;
+    private static final long BREAKER_COOL_DOWN_MS = 5000L;
+    
+    // Database connection parameters (config.properties, see config.properties.template)
+    private final String dbUrl;
+    private final String dbUser;
+    private final String dbPassword;
+    private final boolean embedded;
+    
+    private ConnectionPool pool;
+    // Connection bound to the current thread by a test fixture; all queries then run on it
+    private final ThreadLocal<Connection> boundConnection = new ThreadLocal<>();
+    private final CircuitBreaker breaker = new CircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_COOL_DOWN_MS);
+    
+    /**
+     * Uses the configured database: MySQL at db.url + db.schema, or with db.profile=embedded
+     * an in-memory H2 database named db.schema
+     */
+    public DatabaseHelper() {
+        String schema = AppConfig.get("db.schema", "LoginData");
+        this.embedded = EmbeddedDatabase.PROFILE.equals(AppConfig.get("db.profile", "mysql"));
+        if (embedded) {
+            this.dbUrl = EmbeddedDatabase.url(schema);
+            this.dbUser = "sa";
+            this.dbPassword = "";
+        } else {
+            this.dbUrl = AppConfig.get("db.url", "jdbc:mysql://localhost:3306/") + schema;
+            this.dbUser = AppConfig.get("db.username", "root");
+            this.dbPassword = AppConfig.get("db.password", "");
+        }
+    }
+    
+    /**
+     * Uses an explicit JDBC URL and credentials
+     */
+    public DatabaseHelper(String url, String user, String password) {
+        this.dbUrl = url;
+        this.dbUser = user;
+        this.dbPassword = password;
+        this.embedded = url.startsWith("jdbc:h2:");
+    }
     
     /**
-     * Establishes a connection to the MySQL database
+     * Establishes a connection to the database. The JDBC driver is found by DriverManager's
+     * service lookup when the first connection opens; a missing driver fails with "No suitable driver".
      */
+    @Override
     public void connect() throws SQLException {
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            connection = DriverManager.getConnection(DB_URL + DB_SCHEMA, DB_USER, DB_PASSWORD);
-            System.out.println("Database connected successfully!");
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("MySQL JDBC Driver not found", e);
+        if (embedded) {
+            EmbeddedDatabase.initialize(dbUrl, dbUser, dbPassword);
         }
+        pool = new ConnectionPool(dbUrl, dbUser, dbPassword, POOL_SIZE, POOL_BORROW_TIMEOUT_MS);
+        // Open the first connection eagerly so configuration errors surface at startup
+        pool.borrow().close();
+        Log.info(DatabaseHelper.class, "Database connected successfully!");
+        Metrics.gauge("db.pool.open", pool::getOpenCount);
+        Metrics.gauge("db.pool.active", pool::getActiveCount);
+    }
+    
+    /**
+     * Opens every pooled connection ahead of traffic
+     * @return number of connections opened
+     */
+    @Override
+    public int prefillPool() throws SQLException {
+        return pool.prefill();
     }
     
     /**
      * Closes the database connection
      */
+    @Override
     public void disconnect() {
-        if (connection != null) {
-            try {
-                connection.close();
-                System.out.println("Database connection closed.");
-            } catch (SQLException e) {
-                System.err.println("Error closing database connection: " + e.getMessage());
-            }
+        if (pool != null) {
+            pool.close();
+            Log.info(DatabaseHelper.class, "Database connection closed.");
         }
     }
     
@@ -49,10 +111,14 @@ public class DatabaseHelper {
      * @param password - User's password
      * @return true if credentials are valid, false otherwise
      */
+    @Override
     public boolean validateCredentials(String email, String password) {
         String query = "SELECT password FROM user WHERE email = ?";
         
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            Deadline.applyTo(stmt);
+            HedgedUserStore.track(stmt);
             stmt.setString(1, email);
             
             try (ResultSet rs = stmt.executeQuery()) {
@@ -63,28 +129,223 @@ public class DatabaseHelper {
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Error validating credentials: " + e.getMessage());
+            handleError("Error validating credentials", e);
         }
         
         return false;
     }
     
+    /**
+     * Looks up the stored password for an email
+     * @param email - User's email (primary key)
+     * @return the stored password, or null if the user does not exist
+     */
+    @Override
+    public String getPassword(String email) {
+        String query = "SELECT password FROM user WHERE email = ?";
+        
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            Deadline.applyTo(stmt);
+            HedgedUserStore.track(stmt);
+            stmt.setString(1, email);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString("password");
+                }
+            }
+        } catch (SQLException e) {
+            handleError("Error loading password", e);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Looks up the stored passwords of many emails with one IN query
+     * @param emails - Users' emails
+     * @return stored passwords keyed by lower-cased email; unknown users are absent
+     */
+    @Override
+    public Map<String, String> getPasswords(Collection<String> emails) {
+        Map<String, String> passwords = new HashMap<>();
+        if (emails.isEmpty()) {
+            return passwords;
+        }
+        StringBuilder query = new StringBuilder("SELECT email, password FROM user WHERE email IN (");
+        for (int i = 0; i < emails.size(); i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(')');
+        
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement(query.toString())) {
+            Deadline.applyTo(stmt);
+            int index = 1;
+            for (String email : emails) {
+                stmt.setString(index++, email);
+            }
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    passwords.put(rs.getString("email").toLowerCase(Locale.ROOT), rs.getString("password"));
+                }
+            }
+        } catch (SQLException e) {
+            handleError("Error loading passwords", e);
+        }
+        
+        return passwords;
+    }
+    
+    /**
+     * Streams every user changed since the given time (used to reconcile warm caches); both
+     * columns are indexed, so the periodic catch-up reads only the recent rows
+     * @param since - Database time in milliseconds
+     * @param action - Receives each email and password
+     */
+    @Override
+    public void forEachUserUpdatedSince(long since, BiConsumer<String, String> action) throws SQLException {
+        String query = "SELECT email, password FROM user WHERE updated_at >= ? OR created_at >= ?";
+        
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setTimestamp(1, new Timestamp(since));
+            stmt.setTimestamp(2, new Timestamp(since));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Streams every registered email (used to build the existence filter on a cold start)
+     * @param action - Receives each email
+     */
+    @Override
+    public void forEachEmail(Consumer<String> action) throws SQLException {
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement("SELECT email FROM user")) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(rs.getString(1));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Streams one keyset page of users (WHERE email > ? ORDER BY email LIMIT ?). Each page is a
+     * short statement of its own, so an export never holds one long-running read open.
+     * On MySQL the driver streams rows instead of buffering the whole page.
+     * @param afterEmail - Last email of the previous page, or null for the first page
+     * @param limit - Page size
+     * @param action - Receives each email and its timestamps
+     * @return number of users passed to the action
+     */
+    @Override
+    public int forEachUserPage(String afterEmail, int limit, UserRowAction action) throws SQLException {
+        String query = afterEmail == null
+                ? "SELECT email, created_at, updated_at FROM user ORDER BY email LIMIT ?"
+                : "SELECT email, created_at, updated_at FROM user WHERE email > ? ORDER BY email LIMIT ?";
+        
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Integer.MIN_VALUE is Connector/J's row-by-row streaming mode; H2 only takes a positive hint
+            stmt.setFetchSize(embedded ? 1000 : Integer.MIN_VALUE);
+            int index = 1;
+            if (afterEmail != null) {
+                stmt.setString(index++, afterEmail);
+            }
+            stmt.setInt(index, limit);
+            
+            int rows = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(rs.getString(1), instant(rs.getTimestamp(2)), instant(rs.getTimestamp(3)));
+                    rows++;
+                }
+            }
+            return rows;
+        }
+    }
+    
+    private static Instant instant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+    
+    /**
+     * Writes login statistics rollups with one multi-row INSERT. A minute that is already
+     * stored (e.g. partly written at shutdown) is added to rather than duplicated.
+     * @param rows - Rows of login_stats_minute
+     * @return number of rows written
+     */
+    @Override
+    public int insertLoginStats(List<LoginStats.Row> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        StringBuilder query = new StringBuilder(
+                "INSERT INTO login_stats_minute (minute_start, domain, successes, failures, rejections) VALUES ");
+        for (int i = 0; i < rows.size(); i++) {
+            query.append(i == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+        }
+        query.append(" ON DUPLICATE KEY UPDATE successes = successes + VALUES(successes),"
+                + " failures = failures + VALUES(failures), rejections = rejections + VALUES(rejections)");
+        
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement(query.toString())) {
+            int index = 1;
+            for (LoginStats.Row row : rows) {
+                stmt.setTimestamp(index++, new Timestamp(row.minuteStart));
+                stmt.setString(index++, row.domain);
+                stmt.setLong(index++, row.success);
+                stmt.setLong(index++, row.failure);
+                stmt.setLong(index++, row.rejected);
+            }
+            stmt.executeUpdate();
+            return rows.size();
+        }
+    }
+    
+    /**
+     * Reads the database clock, so cache reconciliation never depends on JVM clock skew
+     * @return current database time in milliseconds
+     */
+    @Override
+    public long currentTimestamp() throws SQLException {
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement("SELECT CURRENT_TIMESTAMP");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getTimestamp(1).getTime();
+        }
+    }
+    
     /**
      * Checks if a user exists in the database
      * @param email - User's email
      * @return true if user exists, false otherwise
      */
+    @Override
     public boolean userExists(String email) {
         String query = "SELECT email FROM user WHERE email = ?";
         
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            Deadline.applyTo(stmt);
+            HedgedUserStore.track(stmt);
             stmt.setString(1, email);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 return rs.next();
             }
         } catch (SQLException e) {
-            System.err.println("Error checking user existence: " + e.getMessage());
+            handleError("Error checking user existence", e);
         }
         
         return false;
@@ -96,47 +357,250 @@ public class DatabaseHelper {
      * @param password - User's password
      * @return true if user was added successfully, false otherwise
      */
+    @Override
     public boolean addUser(String email, String password) {
         String query = "INSERT INTO user (email, password) VALUES (?, ?)";
         
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            Deadline.applyTo(stmt);
             stmt.setString(1, email);
             stmt.setString(2, password);
             
             int rowsAffected = stmt.executeUpdate();
             return rowsAffected > 0;
         } catch (SQLException e) {
-            System.err.println("Error adding user: " + e.getMessage());
+            handleError("Error adding user", e);
         }
         
         return false;
     }
     
+    /**
+     * Inserts users with batched statements. Each batch is committed on its own,
+     * unless the connection is bound to a fixture transaction, which then owns the commit.
+     * (For MySQL, add rewriteBatchedStatements=true to db.url to send each batch as one statement.)
+     * @param users - {email, password} pairs
+     * @param batchSize - Rows per batch
+     * @return number of rows inserted
+     */
+    public int addUsers(Iterator<String[]> users, int batchSize) throws SQLException {
+        String query = "INSERT INTO user (email, password) VALUES (?, ?)";
+        boolean ownsTransaction = boundConnection.get() == null;
+        int inserted = 0;
+        
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            boolean autoCommit = connection.getAutoCommit();
+            if (ownsTransaction) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                int pending = 0;
+                while (users.hasNext()) {
+                    String[] user = users.next();
+                    stmt.setString(1, user[0]);
+                    stmt.setString(2, user[1]);
+                    stmt.addBatch();
+                    if (++pending == batchSize || !users.hasNext()) {
+                        for (int count : stmt.executeBatch()) {
+                            inserted += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+                        }
+                        if (ownsTransaction) {
+                            connection.commit();
+                        }
+                        pending = 0;
+                    }
+                }
+            } catch (SQLException e) {
+                if (ownsTransaction) {
+                    connection.rollback();
+                }
+                throw e;
+            } finally {
+                if (ownsTransaction) {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+        }
+        return inserted;
+    }
+    
     /**
      * Removes a user from the database (for cleanup after testing)
      * @param email - User's email
      * @return true if user was removed successfully, false otherwise
      */
+    @Override
     public boolean removeUser(String email) {
         String query = "DELETE FROM user WHERE email = ?";
         
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = borrow();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            Deadline.applyTo(stmt);
             stmt.setString(1, email);
             
             int rowsAffected = stmt.executeUpdate();
             return rowsAffected > 0;
         } catch (SQLException e) {
-            System.err.println("Error removing user: " + e.getMessage());
+            handleError("Error removing user", e);
         }
         
         return false;
     }
     
     /**
-     * Gets the connection object (for advanced operations)
-     * @return Connection object
+     * Runs a trivial query to check the database is reachable; drives the circuit breaker
+     * @throws SQLException if the database cannot be reached
      */
-    public Connection getConnection() {
+    @Override
+    public void ping() throws SQLException {
+        try (Connection connection = pool.borrow();
+             PreparedStatement stmt = connection.prepareStatement("SELECT 1")) {
+            stmt.setQueryTimeout(2);
+            stmt.executeQuery().close();
+            breaker.recordSuccess();
+        } catch (SQLException e) {
+            breaker.recordFailure();
+            throw e;
+        }
+    }
+    
+    /**
+     * Borrows a connection unless the circuit breaker is open. Under a request deadline
+     * the wait and the connection's network timeout are capped by the remaining budget.
+     */
+    private Connection borrow() throws SQLException {
+        Connection bound = boundConnection.get();
+        if (bound != null) {
+            return nonClosing(bound);
+        }
+        if (!breaker.allowRequest()) {
+            throw new CircuitBreaker.OpenException();
+        }
+        Connection connection;
+        try {
+            connection = pool.borrow(Deadline.borrowTimeout(POOL_BORROW_TIMEOUT_MS));
+        } catch (SQLException e) {
+            recordFailure();
+            throw e;
+        }
+        try {
+            Deadline.applyTo(connection);
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
         return connection;
     }
+    
+    /**
+     * Routes every query made by the current thread through the given connection,
+     * so a test fixture can wrap them in one transaction
+     */
+    void bindConnection(Connection connection) {
+        boundConnection.set(connection);
+    }
+    
+    /**
+     * Ends {@link #bindConnection(Connection)} for the current thread
+     */
+    void unbindConnection() {
+        boundConnection.remove();
+    }
+    
+    /**
+     * @return true if {@link #bindConnection(Connection)} is in effect for the current thread
+     */
+    boolean isConnectionBound() {
+        return boundConnection.get() != null;
+    }
+    
+    /**
+     * @return a view of the bound connection whose close() does nothing
+     */
+    private static Connection nonClosing(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+    
+    /**
+     * Logs a failed query and counts it against the circuit breaker
+     */
+    private void handleError(String context, SQLException e) {
+        // The request ran out of time; LoginService reports that once the call returns
+        if (Deadline.expired()) {
+            Log.warn(DatabaseHelper.class, context + ": request deadline exceeded");
+            return;
+        }
+        // A hedged read cancelled because the other store answered first
+        if (HedgedUserStore.cancelled()) {
+            return;
+        }
+        // Turned away by the open breaker: the database was not even asked
+        if (e instanceof CircuitBreaker.OpenException) {
+            Metrics.increment("db.breaker.rejected");
+            if (breaker.firstRejection()) {
+                Log.warn(DatabaseHelper.class, context + ": circuit breaker is open, failing fast until the cool-down has passed");
+            }
+            return;
+        }
+        // Constraint violations (e.g. duplicate email) say nothing about database health
+        if (!(e instanceof SQLIntegrityConstraintViolationException)) {
+            recordFailure();
+        }
+        Log.error(DatabaseHelper.class, context, e);
+    }
+    
+    /**
+     * Counts a failure against the circuit breaker, unless it is the expiry of the request's
+     * own deadline: a client asking for a short budget must not open the breaker for everyone
+     */
+    private void recordFailure() {
+        if (!Deadline.expired()) {
+            breaker.recordFailure();
+        }
+    }
+    
+    /**
+     * Borrows a pooled connection (for advanced operations); close it to return it to the pool
+     * @return Connection object
+     */
+    public Connection getConnection() throws SQLException {
+        return borrow();
+    }
+    
+    /**
+     * Gets the connection pool (for status reporting)
+     * @return ConnectionPool object
+     */
+    public ConnectionPool getPool() {
+        return pool;
+    }
+    
+    /**
+     * @return the JDBC URL this helper connects to
+     */
+    public String getUrl() {
+        return dbUrl;
+    }
+    
+    /**
+     * Gets the circuit breaker guarding database access
+     * @return CircuitBreaker object
+     */
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
 }
@@ -9,10 +9,10 @@ import java.sql.*;
 public class DatabaseInitializer {
     
     private static final String MYSQL_DRIVER = "com.mysql.cj.jdbc.Driver";
-    private static final String MYSQL_URL = "jdbc:mysql://localhost:3306/";
-    private static final String DB_USER = "root";
-    private static final String DB_PASSWORD = "21030-Cm-108";
-    private static final String DB_NAME = "LoginData";
+    private static final String MYSQL_URL = AppConfig.get("db.url", "jdbc:mysql://localhost:3306/");
+    private static final String DB_USER = AppConfig.get("db.username", "root");
+    private static final String DB_PASSWORD = AppConfig.get("db.password", "");
+    private static final String DB_NAME = AppConfig.get("db.schema", "LoginData");
     
     public static void main(String[] args) {
         System.out.println("=== Database Initialization ===\n");
@@ -43,11 +43,25 @@ public class DatabaseInitializer {
                     "email VARCHAR(255) PRIMARY KEY," +
                     "password VARCHAR(255) NOT NULL," +
                     "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
+                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP," +
+                    "INDEX idx_user_updated_at (updated_at)," +
+                    "INDEX idx_user_created_at (created_at)" +
                     ")";
             stmt.executeUpdate(createTableSQL);
             System.out.println("✓ User table created/verified\n");
             
+            // Create login statistics rollup table
+            System.out.println("Creating login_stats_minute table...");
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS login_stats_minute (" +
+                    "minute_start TIMESTAMP NOT NULL," +
+                    "domain VARCHAR(255) NOT NULL," +
+                    "successes BIGINT NOT NULL DEFAULT 0," +
+                    "failures BIGINT NOT NULL DEFAULT 0," +
+                    "rejections BIGINT NOT NULL DEFAULT 0," +
+                    "PRIMARY KEY (minute_start, domain)" +
+                    ")");
+            System.out.println("✓ Login statistics table created/verified\n");
+            
             // Check if test user exists
             System.out.println("Checking for test user...");
             ResultSet rs = stmt.executeQuery("SELECT * FROM user WHERE email = 'test@example.com'");
@@ -82,7 +96,7 @@ public class DatabaseInitializer {
             System.err.println("  Error: " + e.getMessage());
             System.err.println("\nTroubleshooting:");
             System.err.println("  1. Ensure MySQL is running: brew services start mysql");
-            System.err.println("  2. Verify credentials in DatabaseInitializer.java");
+            System.err.println("  2. Verify db.url, db.username and db.password in config.properties");
             System.err.println("  3. Check MySQL logs for detailed errors");
             System.exit(1);
         } catch (Exception e) {
@@ -0,0 +1,132 @@
+package com.logintest;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time budget of the request running on the current thread. LoginAPI starts one per request
+ * (api.deadlineMs, or less through the X-Request-Timeout-Ms header); the remaining budget caps
+ * the wait for a pooled connection, the statement's query timeout and the connection's network
+ * timeout, and {@link #check(String)} between stages fails the request once it is spent.
+ * Threads without a deadline (background jobs, tests) are not limited.
+ */
+public final class Deadline {
+    
+    // Runs the driver's network timeout change on the calling thread
+    private static final Executor DIRECT = Runnable::run;
+    
+    private static final ThreadLocal<Long> EXPIRES_AT = new ThreadLocal<>();
+    
+    private Deadline() {
+    }
+    
+    /**
+     * Starts a deadline for the current thread, replacing any previous one
+     * @param budgetMillis - Time allowed from now
+     */
+    public static void start(long budgetMillis) {
+        EXPIRES_AT.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+    }
+    
+    /**
+     * Removes the current thread's deadline
+     */
+    public static void clear() {
+        EXPIRES_AT.remove();
+    }
+    
+    public static boolean isSet() {
+        return EXPIRES_AT.get() != null;
+    }
+    
+    /**
+     * @return milliseconds left (0 once expired), or Long.MAX_VALUE without a deadline
+     */
+    public static long remainingMillis() {
+        Long expiresAt = EXPIRES_AT.get();
+        if (expiresAt == null) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+    
+    /**
+     * @return true if the current thread has a deadline and it has passed
+     */
+    public static boolean expired() {
+        Long expiresAt = EXPIRES_AT.get();
+        return expiresAt != null && expiresAt - System.nanoTime() <= 0;
+    }
+    
+    /**
+     * Fails the request if its deadline has passed; called between stages
+     * @param stage - Stage about to start or just finished, reported in metrics
+     * @throws ExceededException once the deadline has passed
+     */
+    public static void check(String stage) {
+        if (expired()) {
+            throw new ExceededException(stage);
+        }
+    }
+    
+    /**
+     * @param configuredMillis - Wait allowed without a deadline
+     * @return how long a pool borrow may wait
+     */
+    public static long borrowTimeout(long configuredMillis) {
+        return Math.min(configuredMillis, remainingMillis());
+    }
+    
+    /**
+     * Sets the statement's query timeout to the remaining budget, rounded up to the
+     * whole seconds JDBC accepts; no-op without a deadline
+     * @throws ExceededException with less than a millisecond left, which JDBC would read as
+     *         no timeout at all
+     */
+    public static void applyTo(Statement stmt) throws SQLException {
+        long remaining = remainingMillis();
+        if (remaining != Long.MAX_VALUE) {
+            if (remaining == 0) {
+                throw new ExceededException("query");
+            }
+            stmt.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (remaining + 999) / 1000));
+        }
+    }
+    
+    /**
+     * Sets the connection's socket read timeout to the remaining budget; no-op without a
+     * deadline. The pool resets it when the connection is returned.
+     * @throws ExceededException with less than a millisecond left, as 0 means no timeout
+     */
+    public static void applyTo(Connection connection) throws SQLException {
+        long remaining = remainingMillis();
+        if (remaining != Long.MAX_VALUE) {
+            if (remaining == 0) {
+                throw new ExceededException("borrow");
+            }
+            connection.setNetworkTimeout(DIRECT, (int) Math.min(Integer.MAX_VALUE, remaining));
+        }
+    }
+    
+    /**
+     * Thrown when a request's deadline passes; LoginAPI answers it with 504
+     */
+    public static class ExceededException extends RuntimeException {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final String stage;
+        
+        public ExceededException(String stage) {
+            super("Request deadline exceeded (" + stage + ")");
+            this.stage = stage;
+        }
+        
+        public String getStage() {
+            return stage;
+        }
+    }
+}
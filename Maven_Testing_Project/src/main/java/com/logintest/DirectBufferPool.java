@@ -0,0 +1,56 @@
+package com.logintest;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of equally sized direct buffers, so socket I/O skips the JDK's temporary
+ * direct-buffer copy and connections do not allocate off-heap memory as they come and go.
+ * The pool never grows: when it is empty, acquire() returns null and the caller turns the
+ * work away.
+ */
+public class DirectBufferPool {
+    
+    private final int bufferBytes;
+    private final BlockingQueue<ByteBuffer> idle;
+    
+    /**
+     * @param buffers - Buffers kept for reuse (all allocated up front)
+     * @param bufferBytes - Size of each buffer
+     */
+    public DirectBufferPool(int buffers, int bufferBytes) {
+        this.bufferBytes = bufferBytes;
+        this.idle = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            idle.add(ByteBuffer.allocateDirect(bufferBytes));
+        }
+    }
+    
+    /**
+     * @return a cleared buffer, or null if every buffer is in use
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = idle.poll();
+        if (buffer == null) {
+            Metrics.increment("binary.buffers.exhausted");
+        }
+        return buffer;
+    }
+    
+    /**
+     * Returns a buffer for reuse
+     */
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        idle.offer(buffer);
+    }
+    
+    public int getIdleCount() {
+        return idle.size();
+    }
+    
+    public int getBufferBytes() {
+        return bufferBytes;
+    }
+}
@@ -0,0 +1,87 @@
+package com.logintest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * In-memory H2 database in MySQL compatibility mode, used by the "embedded" db.profile
+ * so integration tests and JDBC benchmarks run without a MySQL server.
+ * The schema comes from database_setup.sql, the same script used for MySQL.
+ */
+public final class EmbeddedDatabase {
+    
+    public static final String PROFILE = "embedded";
+    
+    private static final String SETUP_SCRIPT = "database_setup.sql";
+    private static final Set<String> initialized = new HashSet<>();
+    
+    private EmbeddedDatabase() {
+    }
+    
+    /**
+     * @param name - Database name (each name is a separate in-memory database)
+     * @return JDBC URL of the in-memory database
+     */
+    public static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;IGNORECASE=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1";
+    }
+    
+    /**
+     * Applies database_setup.sql the first time a database is used
+     */
+    public static synchronized void initialize(String url, String user, String password) throws SQLException {
+        if (!initialized.add(url)) {
+            return;
+        }
+        
+        String script;
+        try (InputStream in = EmbeddedDatabase.class.getClassLoader().getResourceAsStream(SETUP_SCRIPT)) {
+            if (in == null) {
+                throw new SQLException(SETUP_SCRIPT + " not found on the classpath");
+            }
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Cannot read " + SETUP_SCRIPT, e);
+        }
+        
+        try (Connection connection = DriverManager.getConnection(url, user, password);
+             Statement stmt = connection.createStatement()) {
+            for (String sql : statements(script)) {
+                String upper = sql.toUpperCase(Locale.ROOT);
+                // The in-memory database already is the schema
+                if (upper.startsWith("CREATE DATABASE") || upper.startsWith("USE ")) {
+                    continue;
+                }
+                stmt.execute(sql);
+            }
+        } catch (SQLException e) {
+            initialized.remove(url);
+            throw e;
+        }
+    }
+    
+    /**
+     * Splits a script on semicolons, dropping "--" comment lines
+     */
+    private static String[] statements(String script) {
+        StringBuilder cleaned = new StringBuilder();
+        for (String line : script.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                cleaned.append(line).append('\n');
+            }
+        }
+        return Arrays.stream(cleaned.toString().split(";"))
+                .map(String::trim)
+                .filter(sql -> !sql.isEmpty())
+                .toArray(String[]::new);
+    }
+}
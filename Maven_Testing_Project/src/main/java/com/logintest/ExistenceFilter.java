@@ -0,0 +1,105 @@
+package com.logintest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over registered emails.
+ * A negative answer is only trusted once the filter has been fully populated
+ * (from a snapshot or a full scan), see {@link #isComplete()}.
+ */
+public class ExistenceFilter {
+    
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private volatile boolean complete;
+    
+    /**
+     * Sizes a filter for the expected number of emails and false-positive rate
+     */
+    public static ExistenceFilter forExpected(long expectedEntries, double falsePositiveRate) {
+        long bits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (bits + 63) / 64);
+        int hashes = (int) Math.max(1, Math.round((double) words * 64 / expectedEntries * Math.log(2)));
+        return new ExistenceFilter(new long[words], hashes);
+    }
+    
+    /**
+     * Creates a filter over existing bit words (used when loading snapshots)
+     */
+    public ExistenceFilter(long[] bits, int hashCount) {
+        this.words = new AtomicLongArray(bits);
+        this.bitCount = (long) bits.length * 64;
+        this.hashCount = hashCount;
+    }
+    
+    /**
+     * Adds a normalized email to the filter
+     */
+    public void add(String email) {
+        long h1 = hash(email);
+        long h2 = (h1 >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+                word = words.get(index);
+            }
+        }
+    }
+    
+    /**
+     * @return false only if the email was definitely never added
+     */
+    public boolean mightContain(String email) {
+        long h1 = hash(email);
+        long h2 = (h1 >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return true once every registered email has been added
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    public void markComplete() {
+        complete = true;
+    }
+    
+    public int getHashCount() {
+        return hashCount;
+    }
+    
+    public int getWordCount() {
+        return words.length();
+    }
+    
+    public long getWord(int index) {
+        return words.get(index);
+    }
+    
+    private static long hash(String email) {
+        // 64-bit FNV-1a over the characters, finished with a murmur3 mix
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            h ^= email.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
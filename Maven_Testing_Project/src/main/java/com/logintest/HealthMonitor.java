@@ -0,0 +1,112 @@
+package com.logintest;
+
+import com.google.gson.Gson;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes the database on a background schedule and keeps a pre-rendered health report,
+ * so /api/health answers from memory and never adds load to MySQL.
+ */
+public class HealthMonitor {
+    
+    private static final long PROBE_INTERVAL_MS = AppConfig.getLong("health.probeIntervalMs", 1000L);
+    
+    private final LoginService loginService;
+    private final Gson gson;
+    private final ScheduledExecutorService scheduler;
+    
+    private volatile String report;
+    private volatile boolean healthy;
+    
+    public HealthMonitor(LoginService loginService, Gson gson) {
+        this.loginService = loginService;
+        this.gson = gson;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "health-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Runs the first probe synchronously, then schedules the rest
+     */
+    public void start() {
+        probe();
+        scheduler.scheduleWithFixedDelay(this::probe, PROBE_INTERVAL_MS, PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+    
+    /**
+     * @return the most recent health report as JSON
+     */
+    public String getReport() {
+        return report;
+    }
+    
+    /**
+     * @return true if the last database probe succeeded
+     */
+    public boolean isHealthy() {
+        return healthy;
+    }
+    
+    private void probe() {
+        UserStore store = loginService.getUserStore();
+        String error = null;
+        long started = System.nanoTime();
+        try {
+            store.ping();
+        } catch (Exception e) {
+            error = e.getMessage();
+        }
+        long latencyMicros = (System.nanoTime() - started) / 1000;
+        healthy = error == null;
+        
+        Map<String, Object> database = new LinkedHashMap<>();
+        database.put("up", healthy);
+        database.put("probeLatencyMicros", latencyMicros);
+        database.put("probedAt", System.currentTimeMillis());
+        if (error != null) {
+            database.put("error", error);
+        }
+        
+        Map<String, Object> poolStatus = new LinkedHashMap<>();
+        String breakerState = "NONE";
+        if (store instanceof HedgedUserStore) {
+            store = ((HedgedUserStore) store).getPrimary();
+        }
+        if (store instanceof DatabaseHelper) {
+            DatabaseHelper dbHelper = (DatabaseHelper) store;
+            ConnectionPool pool = dbHelper.getPool();
+            poolStatus.put("maxSize", pool.getMaxSize());
+            poolStatus.put("open", pool.getOpenCount());
+            poolStatus.put("active", pool.getActiveCount());
+            poolStatus.put("idle", pool.getIdleCount());
+            breakerState = dbHelper.getBreaker().getState().name();
+        }
+        
+        long hits = Metrics.count("cache.hits");
+        long lookups = hits + Metrics.count("cache.misses");
+        Map<String, Object> cache = new LinkedHashMap<>();
+        cache.put("entries", loginService.getCachedCredentialCount());
+        cache.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", healthy ? "ok" : "degraded");
+        response.put("message", healthy ? "API is running" : "API is running, database unavailable");
+        response.put("database", database);
+        response.put("breaker", breakerState);
+        response.put("pool", poolStatus);
+        response.put("cache", cache);
+        report = gson.toJson(response);
+    }
+}
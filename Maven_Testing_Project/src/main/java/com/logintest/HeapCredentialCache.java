@@ -0,0 +1,108 @@
+package com.logintest;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * On-heap credential cache backed by a ConcurrentHashMap.
+ * Once the configured capacity is reached, a new email first sweeps out expired entries
+ * (at most once a second) and otherwise evicts the entry under a clock hand that walks
+ * the map, so the cache keeps admitting new users.
+ */
+public class HeapCredentialCache implements CredentialCache {
+    
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long ttlNanos;
+    // Guarded by this; the hand resumes where the previous eviction stopped
+    private Iterator<String> hand = Collections.emptyIterator();
+    private long lastSweep = System.nanoTime() - SWEEP_INTERVAL_NANOS;
+    
+    /**
+     * @param maxEntries - Maximum number of entries
+     * @param ttlMillis - Time after which an entry no longer answers lookups
+     */
+    public HeapCredentialCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+    
+    @Override
+    public Lookup lookup(String email, byte[] digest) {
+        Entry cached = entries.get(email);
+        if (cached == null || System.nanoTime() - cached.storedAt >= ttlNanos) {
+            return Lookup.MISS;
+        }
+        return PasswordDigest.matches(cached.digest, digest) ? Lookup.MATCH : Lookup.MISMATCH;
+    }
+    
+    @Override
+    public void put(String email, byte[] digest) {
+        if (entries.size() >= maxEntries && !entries.containsKey(email)) {
+            if (maxEntries <= 0) {
+                return;
+            }
+            makeRoom();
+        }
+        entries.put(email, new Entry(digest, System.nanoTime()));
+    }
+    
+    /**
+     * Frees room for a new email: drops expired entries, then evicts under the clock hand
+     * until the cache is below capacity
+     */
+    private synchronized void makeRoom() {
+        long now = System.nanoTime();
+        if (now - lastSweep >= SWEEP_INTERVAL_NANOS) {
+            lastSweep = now;
+            entries.values().removeIf(entry -> now - entry.storedAt >= ttlNanos);
+        }
+        while (entries.size() >= maxEntries) {
+            if (!hand.hasNext()) {
+                hand = entries.keySet().iterator();
+                if (!hand.hasNext()) {
+                    return;
+                }
+            }
+            hand.next();
+            hand.remove();
+            Metrics.increment("cache.evictions");
+        }
+    }
+    
+    @Override
+    public void invalidate(String email) {
+        entries.remove(email);
+    }
+    
+    @Override
+    public int size() {
+        return entries.size();
+    }
+    
+    @Override
+    public void forEach(BiConsumer<String, byte[]> action) {
+        long now = System.nanoTime();
+        entries.forEach((email, entry) -> {
+            if (now - entry.storedAt < ttlNanos) {
+                action.accept(email, entry.digest);
+            }
+        });
+    }
+    
+    private static class Entry {
+        final byte[] digest;
+        final long storedAt;
+        
+        Entry(byte[] digest, long storedAt) {
+            this.digest = digest;
+            this.storedAt = storedAt;
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.logintest;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * User store that hedges single-user reads (getPassword, userExists, validateCredentials)
+ * across two stores, e.g. a MySQL replica or a second pool. A read goes to the primary; if it
+ * has not answered within hedge.percentile (p95) of recent primary read latencies, the same
+ * read is also sent to the secondary. The first answer wins and the other query is cancelled,
+ * except that the secondary can only win with a found user or valid credentials: the stores
+ * answer their own errors (open breaker, failed query) with null or false, and a lagging
+ * replica may not have the user yet, so an empty secondary answer waits for the primary.
+ * Hedges are paid from a budget that grows by hedge.budgetPercent (5%) of reads, so they add
+ * at most that much load. Writes, batch reads and streams go to the primary only.
+ *
+ * Counters hedge.reads, hedge.sent, hedge.won (the hedge's answer was used), hedge.budget_exhausted
+ * and hedge.rejected (no free worker, read ran unhedged); gauges hedge.rate, hedge.win_rate and
+ * hedge.delay_micros (current hedging delay).
+ */
+public class HedgedUserStore implements UserStore {
+    
+    private static final int THREADS = AppConfig.getInt("hedge.threads", 2 * AppConfig.getInt("db.pool.size", 10));
+    private static final int QUEUE_SIZE = AppConfig.getInt("hedge.queueSize", 1000);
+    // Reads faster than this are never hedged, whatever the percentile says
+    private static final long MIN_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(AppConfig.getLong("hedge.minDelayMicros", 1000L));
+    // Recent primary latencies the percentile is taken from, and how many are needed first
+    private static final int WINDOW = 1024;
+    private static final int MIN_SAMPLES = 100;
+    // Hedges that may be sent back to back, in thousandths of a hedge
+    private static final long MAX_BUDGET = 10_000L;
+    
+    // Read running on a hedge worker, so DatabaseHelper can register its statement for cancelling
+    private static final ThreadLocal<Attempt<?>> CURRENT = new ThreadLocal<>();
+    
+    private final UserStore primary;
+    private final UserStore secondary;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final double percentile;
+    private final long budgetPerRead;
+    
+    private final long[] latencies = new long[WINDOW];
+    private final AtomicLong samples = new AtomicLong();
+    private volatile long delayNanos = Long.MAX_VALUE;
+    private final AtomicLong budget = new AtomicLong();
+    
+    /**
+     * Uses the hedge.* settings and its own worker threads
+     * @param primary - Store every read goes to first
+     * @param secondary - Store hedged reads also go to
+     */
+    public HedgedUserStore(UserStore primary, UserStore secondary) {
+        this(primary, secondary, newExecutor(), true, AppConfig.getInt("hedge.percentile", 95),
+                Double.parseDouble(AppConfig.get("hedge.budgetPercent", "5")));
+    }
+    
+    /**
+     * @param executor - Runs the reads of both stores; the caller waits for the first answer
+     * @param percentile - Percentile of recent primary latencies after which a read is hedged
+     * @param budgetPercent - Hedges allowed per 100 reads
+     */
+    HedgedUserStore(UserStore primary, UserStore secondary, Executor executor, double percentile, double budgetPercent) {
+        this(primary, secondary, executor, false, percentile, budgetPercent);
+    }
+    
+    private HedgedUserStore(UserStore primary, UserStore secondary, Executor executor, boolean ownsExecutor,
+            double percentile, double budgetPercent) {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.percentile = percentile;
+        this.budgetPerRead = Math.round(budgetPercent * 10);
+        Metrics.gauge("hedge.rate", () -> ratio(Metrics.count("hedge.sent"), Metrics.count("hedge.reads")));
+        Metrics.gauge("hedge.win_rate", () -> ratio(Metrics.count("hedge.won"), Metrics.count("hedge.sent")));
+        Metrics.gauge("hedge.delay_micros", () -> delayNanos == Long.MAX_VALUE ? -1 : delayNanos / 1000);
+    }
+    
+    private static ThreadPoolExecutor newExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(QUEUE_SIZE), task -> {
+                    Thread thread = new Thread(task, "hedge-reads-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    private static double ratio(long part, long whole) {
+        return whole == 0 ? 0.0 : (double) part / whole;
+    }
+    
+    /**
+     * Registers the statement of the read running on this thread, so a hedged read that
+     * loses can be cancelled; no-op outside hedge workers
+     */
+    static void track(Statement stmt) {
+        Attempt<?> attempt = CURRENT.get();
+        if (attempt != null) {
+            attempt.running(stmt);
+        }
+    }
+    
+    /**
+     * @return true if the read running on this thread was cancelled because the other store answered first
+     */
+    static boolean cancelled() {
+        Attempt<?> attempt = CURRENT.get();
+        return attempt != null && attempt.cancelled;
+    }
+    
+    public UserStore getPrimary() {
+        return primary;
+    }
+    
+    public UserStore getSecondary() {
+        return secondary;
+    }
+    
+    @Override
+    public void connect() throws SQLException {
+        // Primary last, so the db.pool.* gauges describe its pool
+        secondary.connect();
+        primary.connect();
+    }
+    
+    @Override
+    public void disconnect() {
+        if (ownsExecutor) {
+            ((ThreadPoolExecutor) executor).shutdown();
+        }
+        primary.disconnect();
+        secondary.disconnect();
+    }
+    
+    @Override
+    public int prefillPool() throws SQLException {
+        return primary.prefillPool() + secondary.prefillPool();
+    }
+    
+    @Override
+    public void ping() throws SQLException {
+        primary.ping();
+    }
+    
+    @Override
+    public String getPassword(String email) {
+        return read(store -> store.getPassword(email));
+    }
+    
+    @Override
+    public Map<String, String> getPasswords(Collection<String> emails) {
+        return primary.getPasswords(emails);
+    }
+    
+    @Override
+    public boolean validateCredentials(String email, String password) {
+        return read(store -> store.validateCredentials(email, password));
+    }
+    
+    @Override
+    public boolean userExists(String email) {
+        return read(store -> store.userExists(email));
+    }
+    
+    @Override
+    public boolean addUser(String email, String password) {
+        return primary.addUser(email, password);
+    }
+    
+    @Override
+    public boolean removeUser(String email) {
+        return primary.removeUser(email);
+    }
+    
+    @Override
+    public void forEachUserUpdatedSince(long since, BiConsumer<String, String> action) throws SQLException {
+        primary.forEachUserUpdatedSince(since, action);
+    }
+    
+    @Override
+    public void forEachEmail(Consumer<String> action) throws SQLException {
+        primary.forEachEmail(action);
+    }
+    
+    @Override
+    public int forEachUserPage(String afterEmail, int limit, UserRowAction action) throws SQLException {
+        return primary.forEachUserPage(afterEmail, limit, action);
+    }
+    
+    @Override
+    public int insertLoginStats(List<LoginStats.Row> rows) throws SQLException {
+        return primary.insertLoginStats(rows);
+    }
+    
+    @Override
+    public long currentTimestamp() throws SQLException {
+        return primary.currentTimestamp();
+    }
+    
+    /**
+     * Runs a read on the primary, hedged to the secondary once it is slower than usual
+     */
+    private <T> T read(Function<UserStore, T> read) {
+        Metrics.increment("hedge.reads");
+        budget.accumulateAndGet(budgetPerRead, (current, earned) -> Math.min(MAX_BUDGET, current + earned));
+        
+        Attempt<T> first = new Attempt<>(primary, read, true);
+        if (!submit(first)) {
+            Metrics.increment("hedge.rejected");
+            return read.apply(primary);
+        }
+        long delay = Math.max(MIN_DELAY_NANOS, delayNanos);
+        try {
+            try {
+                return first.result.get(Math.min(delay, remainingNanos()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Slow primary: hedge it if the budget and the deadline allow
+            }
+            CompletableFuture<T> answer = first.result;
+            if (remainingNanos() > 0) {
+                if (!spendBudget()) {
+                    Metrics.increment("hedge.budget_exhausted");
+                } else {
+                    Attempt<T> second = new Attempt<>(secondary, read, false);
+                    if (submit(second)) {
+                        Metrics.increment("hedge.sent");
+                        answer = firstAnswer(first, second);
+                    } else {
+                        Metrics.increment("hedge.rejected");
+                    }
+                }
+            }
+            try {
+                return answer.get(remainingNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                first.cancel();
+                answer.cancel(false);
+                throw new Deadline.ExceededException("lookup");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            first.cancel();
+            throw new IllegalStateException("Interrupted while waiting for a read", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    /**
+     * @return the primary's result, or the secondary's if it finds the user first (cancelling
+     *         the other read); the secondary's result if the primary fails, or the primary's
+     *         error if both fail
+     */
+    private static <T> CompletableFuture<T> firstAnswer(Attempt<T> first, Attempt<T> second) {
+        CompletableFuture<T> answer = new CompletableFuture<>();
+        first.result.whenComplete((value, error) -> {
+            if (error == null) {
+                if (answer.complete(value)) {
+                    second.cancel();
+                }
+                return;
+            }
+            second.result.whenComplete((secondValue, secondError) -> {
+                if (secondError != null) {
+                    answer.completeExceptionally(error);
+                } else if (answer.complete(secondValue)) {
+                    Metrics.increment("hedge.won");
+                }
+            });
+        });
+        second.result.thenAccept(value -> {
+            // null or false may be the secondary's own error, so only a hit can win early
+            if (isHit(value) && answer.complete(value)) {
+                Metrics.increment("hedge.won");
+                first.cancel();
+            }
+        });
+        // The caller gave up (deadline): stop both reads
+        answer.whenComplete((value, error) -> {
+            if (answer.isCancelled()) {
+                first.cancel();
+                second.cancel();
+            }
+        });
+        return answer;
+    }
+    
+    private static boolean isHit(Object value) {
+        return value != null && !Boolean.FALSE.equals(value);
+    }
+    
+    /**
+     * @return nanoseconds left of the request's deadline, or Long.MAX_VALUE without one
+     */
+    private static long remainingNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(Deadline.remainingMillis());
+    }
+    
+    private boolean submit(Attempt<?> attempt) {
+        try {
+            executor.execute(attempt);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+    
+    private boolean spendBudget() {
+        long current;
+        do {
+            current = budget.get();
+            if (current < 1000) {
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - 1000));
+        return true;
+    }
+    
+    /**
+     * Records the latency of a primary read; every 64 samples the hedging delay is recomputed
+     * from the last WINDOW of them
+     */
+    private void recordLatency(long nanos) {
+        long count = samples.incrementAndGet();
+        latencies[(int) (count % WINDOW)] = nanos;
+        if (count >= MIN_SAMPLES && count % 64 == 0) {
+            long[] sorted = Arrays.copyOf(latencies, (int) Math.min(count, WINDOW));
+            Arrays.sort(sorted);
+            delayNanos = sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1)];
+        }
+    }
+    
+    /**
+     * One read of one store, run by a worker thread
+     */
+    private final class Attempt<T> implements Runnable {
+        
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        
+        private final UserStore store;
+        private final Function<UserStore, T> read;
+        private final boolean isPrimary;
+        private final long deadlineMillis = Deadline.remainingMillis();
+        private final long createdAt = System.nanoTime();
+        private final AtomicReference<Statement> statement = new AtomicReference<>();
+        private volatile boolean cancelled;
+        
+        Attempt(UserStore store, Function<UserStore, T> read, boolean isPrimary) {
+            this.store = store;
+            this.read = read;
+            this.isPrimary = isPrimary;
+        }
+        
+        @Override
+        public void run() {
+            if (cancelled) {
+                result.cancel(false);
+                return;
+            }
+            if (deadlineMillis != Long.MAX_VALUE) {
+                Deadline.start(deadlineMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdAt));
+            }
+            CURRENT.set(this);
+            try {
+                T value = read.apply(store);
+                if (isPrimary && !cancelled) {
+                    recordLatency(System.nanoTime() - createdAt);
+                }
+                result.complete(value);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                CURRENT.remove();
+                statement.set(null);
+                Deadline.clear();
+            }
+        }
+        
+        void running(Statement stmt) {
+            statement.set(stmt);
+            if (cancelled) {
+                cancelStatement();
+            }
+        }
+        
+        /**
+         * Stops the read: skipped if it has not started, its statement cancelled if it has
+         */
+        void cancel() {
+            if (cancelled || result.isDone()) {
+                return;
+            }
+            cancelled = true;
+            if (isPrimary) {
+                // Censored sample: the primary took at least this long
+                recordLatency(System.nanoTime() - createdAt);
+            }
+            cancelStatement();
+        }
+        
+        private void cancelStatement() {
+            Statement stmt = statement.getAndSet(null);
+            if (stmt != null) {
+                try {
+                    stmt.cancel();
+                } catch (SQLException e) {
+                    // Already finished or closed
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.logintest;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * UserStore kept in a ConcurrentHashMap, for tests and benchmarks that run without MySQL
+ */
+public class InMemoryUserStore implements UserStore {
+    
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    
+    @Override
+    public void connect() {
+    }
+    
+    @Override
+    public void disconnect() {
+    }
+    
+    @Override
+    public int prefillPool() {
+        return 0;
+    }
+    
+    @Override
+    public void ping() {
+    }
+    
+    @Override
+    public String getPassword(String email) {
+        User user = users.get(key(email));
+        return user == null ? null : user.password;
+    }
+    
+    @Override
+    public Map<String, String> getPasswords(Collection<String> emails) {
+        Map<String, String> passwords = new HashMap<>();
+        for (String email : emails) {
+            User user = users.get(key(email));
+            if (user != null) {
+                passwords.put(key(email), user.password);
+            }
+        }
+        return passwords;
+    }
+    
+    @Override
+    public boolean validateCredentials(String email, String password) {
+        return password.equals(getPassword(email));
+    }
+    
+    @Override
+    public boolean userExists(String email) {
+        return users.containsKey(key(email));
+    }
+    
+    @Override
+    public boolean addUser(String email, String password) {
+        return users.putIfAbsent(key(email), new User(email, password, System.currentTimeMillis())) == null;
+    }
+    
+    @Override
+    public boolean removeUser(String email) {
+        return users.remove(key(email)) != null;
+    }
+    
+    @Override
+    public void forEachUserUpdatedSince(long since, BiConsumer<String, String> action) {
+        for (User user : users.values()) {
+            if (user.updatedAt >= since) {
+                action.accept(user.email, user.password);
+            }
+        }
+    }
+    
+    @Override
+    public void forEachEmail(Consumer<String> action) {
+        for (User user : users.values()) {
+            action.accept(user.email);
+        }
+    }
+    
+    /**
+     * Sorts the matching keys on every call; fine for tests, not for large exports
+     */
+    @Override
+    public int forEachUserPage(String afterEmail, int limit, UserRowAction action) {
+        String after = afterEmail == null ? null : key(afterEmail);
+        int[] rows = {0};
+        users.keySet().stream()
+                .filter(key -> after == null || key.compareTo(after) > 0)
+                .sorted()
+                .limit(limit)
+                .forEach(key -> {
+                    User user = users.get(key);
+                    if (user != null) {
+                        Instant changed = Instant.ofEpochMilli(user.updatedAt);
+                        action.accept(user.email, changed, changed);
+                        rows[0]++;
+                    }
+                });
+        return rows[0];
+    }
+    
+    /**
+     * Rollups are not kept; /api/stats reads the in-memory minutes only
+     */
+    @Override
+    public int insertLoginStats(List<LoginStats.Row> rows) {
+        return 0;
+    }
+    
+    @Override
+    public long currentTimestamp() {
+        return System.currentTimeMillis();
+    }
+    
+    /**
+     * @return number of stored users
+     */
+    public int size() {
+        return users.size();
+    }
+    
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+    
+    private static class User {
+        final String email;
+        final String password;
+        final long updatedAt;
+        
+        User(String email, String password, long updatedAt) {
+            this.email = email;
+            this.password = password;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
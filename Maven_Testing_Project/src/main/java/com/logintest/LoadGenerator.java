@@ -0,0 +1,247 @@
+package com.logintest;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model HTTP load generator for /api/login and /api/register.
+ *
+ * Requests are issued on a fixed schedule (constant rate or a linear ramp) regardless of how
+ * fast the server answers. Latency is measured from each request's intended start time, not
+ * from when it was actually sent, which corrects for coordinated omission.
+ *
+ * Usage:
+ *   mvn exec:java -Dexec.mainClass="com.logintest.LoadGenerator" -Dexec.args="--rate 500 --duration 30"
+ *
+ * Options (defaults in brackets):
+ *   --url [http://localhost:8080]  --endpoint login|register [login]
+ *   --rate requests/s [100]        --ramp-to requests/s [none]
+ *   --duration s [30]              --warmup s [5]
+ *   --mix [valid=70,invalid=15,injection=10,unknown=5]
+ *   --user email:password [test@example.com:Password123!]  --credentials file.csv
+ *   --trace file.csv (valid logins replay its lines in order, e.g. from UserDatasetGenerator)
+ *   --max-in-flight [10000]        --seed [42]        --out [load-report.json]
+ */
+public class LoadGenerator {
+    
+    private final Map<String, String> options;
+    private final Gson gson = new Gson();
+    
+    private final LatencyHistogram overall = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final Map<CredentialMix.Kind, LatencyHistogram> byKind = new EnumMap<>(CredentialMix.Kind.class);
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    public LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        for (CredentialMix.Kind kind : CredentialMix.Kind.values()) {
+            byKind.put(kind, new LatencyHistogram());
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        Map<String, Object> report = new LoadGenerator(options).run();
+        
+        Path out = Paths.get(options.getOrDefault("out", "load-report.json"));
+        Files.writeString(out, new GsonBuilder().setPrettyPrinting().create().toJson(report));
+        System.out.println("Report written to " + out.toAbsolutePath());
+        System.exit(0);
+    }
+    
+    /**
+     * Parses "--name value" pairs
+     */
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+    
+    /**
+     * Runs the configured schedule and waits for outstanding requests
+     * @return report with throughput, status counts and latency percentiles
+     */
+    public Map<String, Object> run() throws Exception {
+        String baseUrl = options.getOrDefault("url", "http://localhost:8080");
+        boolean register = "register".equals(options.getOrDefault("endpoint", "login"));
+        URI uri = URI.create(baseUrl + (register ? "/api/register" : "/api/login"));
+        double startRate = Double.parseDouble(options.getOrDefault("rate", "100"));
+        double endRate = Double.parseDouble(options.getOrDefault("ramp-to", String.valueOf(startRate)));
+        long durationNanos = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30"))).toNanos();
+        long warmupNanos = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5"))).toNanos();
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "10000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        
+        List<String[]> credentials = new ArrayList<>();
+        boolean replayTrace = options.containsKey("trace");
+        if (replayTrace) {
+            credentials.addAll(CredentialMix.readCredentials(Paths.get(options.get("trace"))));
+        } else if (options.containsKey("credentials")) {
+            credentials.addAll(CredentialMix.readCredentials(Paths.get(options.get("credentials"))));
+        } else {
+            String user = options.getOrDefault("user", "test@example.com:Password123!");
+            int colon = user.indexOf(':');
+            credentials.add(new String[] {user.substring(0, colon), user.substring(colon + 1)});
+        }
+        CredentialMix mix = new CredentialMix(credentials,
+                CredentialMix.parseWeights(options.getOrDefault("mix", "valid=70,invalid=15,injection=10,unknown=5")), seed, replayTrace);
+        
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()))
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        
+        System.out.printf("Driving %s at %.0f%s req/s for %d s (+%d s warm-up)%n", uri, startRate,
+                endRate != startRate ? "->" + (long) endRate : "", durationNanos / 1_000_000_000L, warmupNanos / 1_000_000_000L);
+        
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        long intended = start;
+        long sent = 0;
+        long registerRun = System.currentTimeMillis();
+        while (intended < end) {
+            long now = System.nanoTime();
+            if (intended > now) {
+                LockSupport.parkNanos(intended - now);
+            }
+            
+            CredentialMix.Kind kind;
+            String[] credential;
+            if (register) {
+                kind = CredentialMix.Kind.UNKNOWN;
+                credential = new String[] {"load" + registerRun + "-" + sent + "@example.com", "LoadTest123!"};
+            } else {
+                kind = mix.nextKind();
+                credential = mix.next(kind);
+            }
+            send(client, uri, kind, credential, intended, intended >= measureFrom, maxInFlight);
+            sent++;
+            
+            // Advance the schedule by the current rate (linear ramp between start and end rate)
+            double progress = Math.max(0, (double) (intended - measureFrom) / durationNanos);
+            double rate = startRate + (endRate - startRate) * Math.min(1, progress);
+            intended += (long) (1_000_000_000L / Math.max(rate, 0.001));
+        }
+        
+        long drainDeadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        
+        Map<String, Object> report = buildReport(uri, sent, durationNanos);
+        printReport(report);
+        return report;
+    }
+    
+    private void send(HttpClient client, URI uri, CredentialMix.Kind kind, String[] credential,
+                      long intendedNanos, boolean measured, int maxInFlight) {
+        if (inFlight.get() >= maxInFlight) {
+            if (measured) {
+                dropped.increment();
+            }
+            return;
+        }
+        
+        Map<String, String> body = new HashMap<>();
+        body.put("email", credential[0]);
+        body.put("password", credential[1]);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body)))
+                .build();
+        
+        inFlight.incrementAndGet();
+        long sentAt = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            long finished = System.nanoTime();
+            inFlight.decrementAndGet();
+            if (!measured) {
+                return;
+            }
+            if (failure != null) {
+                errors.increment();
+                return;
+            }
+            long latency = (finished - intendedNanos) / 1000;
+            overall.record(latency);
+            byKind.get(kind).record(latency);
+            serviceTime.record((finished - sentAt) / 1000);
+            statusCounts.computeIfAbsent(response.statusCode(), code -> new LongAdder()).increment();
+        });
+    }
+    
+    private Map<String, Object> buildReport(URI uri, long sent, long durationNanos) {
+        double seconds = durationNanos / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("target", uri.toString());
+        report.put("requestsScheduled", sent);
+        report.put("completed", overall.getCount());
+        report.put("errors", errors.sum());
+        report.put("dropped", dropped.sum());
+        report.put("throughputPerSecond", Math.round(overall.getCount() / seconds));
+        Map<String, Long> statuses = new TreeMap<>();
+        statusCounts.forEach((status, count) -> statuses.put(String.valueOf(status), count.sum()));
+        report.put("statusCounts", statuses);
+        report.put("latency", overall.summary());
+        report.put("serviceTime", serviceTime.summary());
+        Map<String, Object> kinds = new LinkedHashMap<>();
+        byKind.forEach((kind, histogram) -> {
+            if (histogram.getCount() > 0) {
+                kinds.put(kind.name().toLowerCase(), histogram.summary());
+            }
+        });
+        report.put("latencyByKind", kinds);
+        return report;
+    }
+    
+    private static void printReport(Map<String, Object> report) {
+        System.out.println();
+        System.out.println("=== Load Report ===");
+        System.out.printf("Completed: %s  Errors: %s  Dropped: %s  Throughput: %s req/s%n",
+                report.get("completed"), report.get("errors"), report.get("dropped"), report.get("throughputPerSecond"));
+        System.out.println("Status codes: " + report.get("statusCounts"));
+        System.out.printf("%-12s %10s %10s %10s %10s %10s%n", "latency(us)", "p50", "p90", "p99", "p99.9", "max");
+        printRow("all", report.get("latency"));
+        printRow("service", report.get("serviceTime"));
+        ((Map<?, ?>) report.get("latencyByKind")).forEach((kind, summary) -> printRow(String.valueOf(kind), summary));
+    }
+    
+    private static void printRow(String label, Object summary) {
+        Map<?, ?> values = (Map<?, ?>) summary;
+        System.out.printf("%-12s %10s %10s %10s %10s %10s%n", label, values.get("p50Micros"), values.get("p90Micros"),
+                values.get("p99Micros"), values.get("p999Micros"), values.get("maxMicros"));
+    }
+}
@@ -0,0 +1,304 @@
+package com.logintest;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous structured logging for the backend.
+ *
+ * Callers only capture an event and offer it to a bounded lock-free queue; a background
+ * thread formats each event as one JSON line and writes it to log.file (default stdout).
+ * When the queue is full the event is dropped and counted instead of blocking, and repeated
+ * identical warnings and errors are rate-limited, so logging never stalls a request thread.
+ *
+ * Settings: log.level (INFO), log.file, log.queueSize (8192),
+ * log.rateLimit.perWindow (5) and log.rateLimit.windowMs (10000).
+ */
+public final class Log {
+    
+    public enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR
+    }
+    
+    private static final Level MIN_LEVEL = Level.valueOf(AppConfig.get("log.level", "INFO").toUpperCase());
+    private static final int RATE_LIMIT_PER_WINDOW = AppConfig.getInt("log.rateLimit.perWindow", 5);
+    private static final long RATE_LIMIT_WINDOW_MS = AppConfig.getLong("log.rateLimit.windowMs", 10_000);
+    // Distinct messages tracked for rate limiting before the table is reset
+    private static final int MAX_TRACKED_MESSAGES = 1024;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    
+    private static final EventQueue QUEUE = new EventQueue(AppConfig.getInt("log.queueSize", 8192));
+    private static final Map<String, Window> WINDOWS = new ConcurrentHashMap<>();
+    private static final AtomicLong WRITTEN = new AtomicLong();
+    // Events written and flushed to the output, published by the writer thread
+    private static volatile long flushed;
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+    private static final Writer OUT = openOutput();
+    
+    static {
+        Metrics.gauge("log.queue.depth", QUEUE::size);
+        Thread writer = new Thread(Log::drain, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    private Log() {
+    }
+    
+    public static void debug(Class<?> source, String message) {
+        log(Level.DEBUG, source, message, null);
+    }
+    
+    public static void info(Class<?> source, String message) {
+        log(Level.INFO, source, message, null);
+    }
+    
+    public static void warn(Class<?> source, String message) {
+        log(Level.WARN, source, message, null);
+    }
+    
+    public static void warn(Class<?> source, String message, Throwable error) {
+        log(Level.WARN, source, message, error);
+    }
+    
+    public static void error(Class<?> source, String message, Throwable error) {
+        log(Level.ERROR, source, message, error);
+    }
+    
+    /**
+     * Waits until every event queued so far has been written
+     * @param timeoutMillis - Maximum time to wait
+     */
+    public static void flush(long timeoutMillis) {
+        long target = QUEUE.accepted();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        while (flushed < target && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+    
+    /**
+     * Captures an event on the caller's thread; formatting and I/O happen on the writer thread
+     */
+    private static void log(Level level, Class<?> source, String message, Throwable error) {
+        if (level.compareTo(MIN_LEVEL) < 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int suppressed = 0;
+        if (level.compareTo(Level.WARN) >= 0) {
+            suppressed = admit(source.getName() + '|' + message, now);
+            if (suppressed < 0) {
+                Metrics.increment("log.suppressed");
+                return;
+            }
+        }
+        Event event = new Event(now, level, source, Thread.currentThread().getName(), message, error, suppressed);
+        if (!QUEUE.offer(event)) {
+            Metrics.increment("log.dropped");
+        }
+    }
+    
+    /**
+     * Rate-limits repeated identical warnings and errors
+     * @return -1 to suppress the event, otherwise how many identical events the previous window suppressed
+     */
+    private static int admit(String key, long now) {
+        Window window = WINDOWS.get(key);
+        if (window == null) {
+            if (WINDOWS.size() >= MAX_TRACKED_MESSAGES) {
+                WINDOWS.clear();
+            }
+            Window created = new Window(now);
+            window = WINDOWS.putIfAbsent(key, created);
+            if (window == null) {
+                window = created;
+            }
+        }
+        
+        int carried = 0;
+        long started = window.start.get();
+        if (now - started >= RATE_LIMIT_WINDOW_MS && window.start.compareAndSet(started, now)) {
+            window.count.set(0);
+            carried = window.suppressed.getAndSet(0);
+        }
+        if (window.count.incrementAndGet() > RATE_LIMIT_PER_WINDOW) {
+            window.suppressed.incrementAndGet();
+            return -1;
+        }
+        return carried;
+    }
+    
+    /**
+     * Writer thread: formats queued events as JSON lines and flushes when the queue runs dry
+     */
+    private static void drain() {
+        while (true) {
+            Event event = QUEUE.poll();
+            try {
+                if (event == null) {
+                    OUT.flush();
+                    flushed = WRITTEN.get();
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                OUT.write(GSON.toJson(event.toMap()));
+                OUT.write('\n');
+            } catch (IOException | RuntimeException e) {
+                Metrics.increment("log.writeErrors");
+            }
+            if (event != null) {
+                WRITTEN.incrementAndGet();
+                Metrics.increment("log.written");
+            }
+        }
+    }
+    
+    private static Writer openOutput() {
+        String file = AppConfig.get("log.file", "");
+        try {
+            if (!file.isEmpty()) {
+                return Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        } catch (IOException e) {
+            // Logging is not up yet, so this one goes straight to the console
+            System.err.println("Cannot open log.file " + file + ", logging to stdout: " + e.getMessage());
+        }
+        return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+    }
+    
+    private static final class Event {
+        private final long time;
+        private final Level level;
+        private final Class<?> source;
+        private final String thread;
+        private final String message;
+        private final Throwable error;
+        private final int suppressed;
+        
+        Event(long time, Level level, Class<?> source, String thread, String message, Throwable error, int suppressed) {
+            this.time = time;
+            this.level = level;
+            this.source = source;
+            this.thread = thread;
+            this.message = message;
+            this.error = error;
+            this.suppressed = suppressed;
+        }
+        
+        Map<String, Object> toMap() {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("ts", Instant.ofEpochMilli(time).toString());
+            fields.put("level", level.name());
+            fields.put("logger", source.getSimpleName());
+            fields.put("thread", thread);
+            fields.put("message", message);
+            if (error != null) {
+                fields.put("error", error.getClass().getName());
+                fields.put("errorMessage", error.getMessage());
+            }
+            if (suppressed > 0) {
+                fields.put("suppressedRepeats", suppressed);
+            }
+            return fields;
+        }
+    }
+    
+    private static final class Window {
+        private final AtomicLong start;
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger suppressed = new AtomicInteger();
+        
+        Window(long start) {
+            this.start = new AtomicLong(start);
+        }
+    }
+    
+    /**
+     * Bounded multi-producer, single-consumer ring (Vyukov's sequence-numbered array queue).
+     * Producers claim a slot with one CAS; offer fails instead of waiting when the ring is full.
+     */
+    private static final class EventQueue {
+        private final int mask;
+        private final AtomicReferenceArray<Event> slots;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+        
+        EventQueue(int requestedCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+            this.mask = capacity - 1;
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+        
+        boolean offer(Event event) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) position & mask;
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots.lazySet(index, event);
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+        
+        Event poll() {
+            long position = head;
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                return null;
+            }
+            Event event = slots.get(index);
+            slots.lazySet(index, null);
+            sequences.set(index, position + mask + 1);
+            head = position + 1;
+            return event;
+        }
+        
+        /**
+         * @return number of events ever accepted by offer
+         */
+        long accepted() {
+            return tail.get();
+        }
+        
+        int size() {
+            return (int) Math.max(0, tail.get() - head);
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package com.logintest;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 import spark.Request;
 import spark.Response;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static spark.Spark.*;
@@ -17,46 +31,230 @@ public class LoginAPI {
     private static LoginService loginService;
     private static Gson gson = new Gson();
     private static final Type MAP_TYPE = new TypeToken<Map<String, String>>(){}.getType();
+    private static final Path CACHE_SNAPSHOT = Paths.get(AppConfig.get("cache.snapshot", "login-cache.snapshot"));
+    
+    private static final String VERIFY_STREAM_PATH = "/api/login/verify-stream";
+    private static final String EXPORT_PATH = "/api/admin/users/export";
+    
+    // Time budget per request; clients may ask for less with the header, never for more
+    private static final long DEADLINE_MS = AppConfig.getLong("api.deadlineMs", 3000L);
+    private static final String DEADLINE_HEADER = "X-Request-Timeout-Ms";
+    private static final String PERMIT_ATTRIBUTE = "com.logintest.permit";
+    
+    private static HealthMonitor healthMonitor;
+    private static RequestScheduler scheduler;
+    // Created by the first bulk verification; see streamingVerifier()
+    private static StreamingVerifier streamingVerifier;
+    private static final List<BinaryLoginServer> binaryServers = new ArrayList<>();
+    private static Path snapshotPath;
+    private static volatile boolean ready = false;
     
     public static void main(String[] args) {
+        StartupTimeline.mark("main");
+        
         // Initialize login service
-        loginService = new LoginService();
+        LoginService service = new LoginService();
         try {
-            loginService.initialize();
-            System.out.println("Login API started successfully!");
+            service.initialize();
+            StartupTimeline.mark("database_connected");
+            int opened = service.prefillConnections();
+            StartupTimeline.mark("pool_filled");
+            Log.info(LoginAPI.class, "Connection pool filled (" + opened + " new connections)");
         } catch (SQLException e) {
-            System.err.println("Failed to connect to database: " + e.getMessage());
+            Log.error(LoginAPI.class, "Failed to connect to database", e);
+            Log.flush(1000);
             System.exit(1);
         }
         
+        // Graceful shutdown
+        Runtime.getRuntime().addShutdownHook(new Thread(LoginAPI::shutdown));
+        
+        start(service, AppConfig.getInt("api.port", 8080), CACHE_SNAPSHOT);
+        
+        // Binary credential-check protocol for internal callers, over TCP and/or a local socket
+        if (AppConfig.getBoolean("binary.enabled", false)) {
+            startBinaryListener(service, new InetSocketAddress(AppConfig.getInt("binary.port", 9090)));
+        }
+        if (AppConfig.getBoolean("uds.enabled", false)) {
+            startBinaryListener(service, UnixDomainSocketAddress.of(AppConfig.get("uds.path", "login-api.sock")));
+        }
+    }
+    
+    private static void startBinaryListener(LoginService service, SocketAddress address) {
+        BinaryLoginServer server = new BinaryLoginServer(service);
+        try {
+            server.start(address);
+            binaryServers.add(server);
+        } catch (IOException e) {
+            Log.error(LoginAPI.class, "Failed to start binary protocol listener on " + address, e);
+        }
+    }
+    
+    /**
+     * Starts the HTTP server over an initialized service and returns once it is ready
+     * @param service - Initialized login service
+     * @param serverPort - Port to listen on (0 picks a free port, see {@link #getPort()})
+     * @param snapshot - Warm-cache snapshot file
+     */
+    public static void start(LoginService service, int serverPort, Path snapshot) {
+        loginService = service;
+        snapshotPath = snapshot;
+        ready = false;
+        
         // Configure port
-        port(8080);
+        port(serverPort);
         
         // Enable CORS for React frontend
-        enableCORS();
+        if (AppConfig.getBoolean("api.cors.enabled", true)) {
+            enableCORS();
+        }
+        
+        // Start the request's deadline first, so reading the body counts against it
+        before("/api/*", LoginAPI::startDeadline);
+        afterAfter("/api/*", (req, res) -> Deadline.clear());
+        
+        // Reject oversized or malformed bodies before any handler runs
+        before("/api/*", new RequestLimitFilter(gson, VERIFY_STREAM_PATH));
+        
+        // Admit requests by route class, login ahead of registration and admin work
+        if (AppConfig.getBoolean("scheduler.enabled", true)) {
+            scheduler = new RequestScheduler();
+            before("/api/*", LoginAPI::admit);
+            afterAfter("/api/*", LoginAPI::releasePermit);
+        }
         
         // API Routes
         
-        // Health check
+        // Health check (liveness), answered from the cached background probe
+        healthMonitor = new HealthMonitor(loginService, gson);
+        healthMonitor.start();
         get("/api/health", (req, res) -> {
+            res.type("application/json");
+            return healthMonitor.getReport();
+        });
+        
+        // Readiness check, only "ready" once warm-up has finished
+        get("/api/ready", (req, res) -> {
             res.type("application/json");
             Map<String, Object> response = new HashMap<>();
-            response.put("status", "ok");
-            response.put("message", "API is running");
+            if (ready) {
+                response.put("status", "ready");
+            } else {
+                res.status(503);
+                response.put("status", "starting");
+            }
             return gson.toJson(response);
         });
         
+        // Metrics
+        get("/api/metrics", (req, res) -> {
+            res.type("application/json");
+            return gson.toJson(Metrics.snapshot());
+        });
+        
+        // Startup timeline, up to the first served login
+        get("/api/startup", (req, res) -> {
+            res.type("application/json");
+            return gson.toJson(StartupTimeline.report());
+        });
+        
+        // Per-minute login statistics, from in-memory rollups (admin only)
+        loginService.getStats().start(loginService.getUserStore());
+        get("/api/stats", LoginAPI::handleStats);
+        
         // Login endpoint
         post("/api/login", LoginAPI::handleLogin);
         
+        // Bulk credential verification, NDJSON in and out (admin only)
+        post(VERIFY_STREAM_PATH, LoginAPI::handleVerifyStream);
+        
+        // User export, NDJSON or CSV (admin only)
+        get(EXPORT_PATH, LoginAPI::handleExport);
+        
         // Register endpoint (for testing)
         post("/api/register", LoginAPI::handleRegister);
         
-        // Graceful shutdown
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            loginService.cleanup();
-            stop();
-        }));
+        awaitInitialization();
+        StartupTimeline.mark("http_listening");
+        
+        // Warm up JIT-compiled paths, then caches, before accepting traffic; with
+        // warmup.background the JIT warm-up runs alongside the first requests instead
+        if (AppConfig.getBoolean("warmup.background", false)) {
+            Thread warmup = new Thread(LoginAPI::warmUp, "jit-warmup");
+            warmup.setDaemon(true);
+            warmup.setPriority(Thread.MIN_PRIORITY);
+            warmup.start();
+        } else {
+            warmUp();
+        }
+        
+        loginService.loadSnapshot(snapshotPath);
+        
+        long timeToReady = StartupTimeline.mark("ready");
+        Metrics.gauge("startup.time_to_ready_ms", () -> timeToReady);
+        ready = true;
+        Log.info(LoginAPI.class, "Login API started successfully! (ready in " + timeToReady + " ms: "
+                + StartupTimeline.summary() + ")");
+    }
+    
+    private static void warmUp() {
+        long warmupStarted = System.nanoTime();
+        int warmupRequests = StartupWarmup.run(loginService, gson, MAP_TYPE);
+        Log.info(LoginAPI.class, "JIT warm-up finished (" + warmupRequests + " synthetic requests in "
+                + (System.nanoTime() - warmupStarted) / 1_000_000 + " ms)");
+        Metrics.gauge("startup.warmup_requests", () -> warmupRequests);
+        StartupTimeline.mark("jit_warmup");
+    }
+    
+    /**
+     * @return the bulk verifier, created on first use since most instances never serve one
+     */
+    private static synchronized StreamingVerifier streamingVerifier() {
+        if (streamingVerifier == null) {
+            streamingVerifier = new StreamingVerifier(loginService, gson);
+        }
+        return streamingVerifier;
+    }
+    
+    /**
+     * @return the port the server is listening on
+     */
+    public static int getPort() {
+        return port();
+    }
+    
+    /**
+     * Stops taking requests (HTTP first, then the binary listeners), then flushes the login
+     * statistics, writes the warm-cache snapshot and closes the service, so the last
+     * requests finish against an open pool and their writes reach the snapshot
+     */
+    public static void shutdown() {
+        if (loginService == null) {
+            return;
+        }
+        ready = false;
+        stop();
+        awaitStop();
+        for (BinaryLoginServer server : binaryServers) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                Log.warn(LoginAPI.class, "Error closing binary protocol listener", e);
+            }
+        }
+        binaryServers.clear();
+        healthMonitor.stop();
+        synchronized (LoginAPI.class) {
+            if (streamingVerifier != null) {
+                streamingVerifier.close();
+                streamingVerifier = null;
+            }
+        }
+        loginService.getStats().stop();
+        loginService.saveSnapshot(snapshotPath);
+        loginService.cleanup();
+        loginService = null;
+        Log.flush(1000);
     }
     
     /**
@@ -67,7 +265,7 @@ public class LoginAPI {
         
         try {
             // Parse request body
-            Map<String, String> requestData = gson.fromJson(req.body(), MAP_TYPE);
+            Map<String, String> requestData = gson.fromJson(RequestLimitFilter.body(req), MAP_TYPE);
             String email = requestData.get("email");
             String password = requestData.get("password");
             
@@ -81,12 +279,22 @@ public class LoginAPI {
             
             if (result.isSuccess()) {
                 res.status(200);
+                response.put("sessionToken", loginService.createSession(email));
             } else {
                 res.status(401);
             }
             
+            StartupTimeline.loginServed();
             return gson.toJson(response);
             
+        } catch (Deadline.ExceededException e) {
+            return deadlineExceeded(res, e);
+        } catch (JsonSyntaxException e) {
+            res.status(400);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Malformed request body");
+            return gson.toJson(errorResponse);
         } catch (Exception e) {
             res.status(500);
             Map<String, Object> errorResponse = new HashMap<>();
@@ -96,6 +304,176 @@ public class LoginAPI {
         }
     }
     
+    /**
+     * Serves the precomputed login statistics, see LoginStats.
+     * Query parameters: minutes=n (60), domain=name for the minute series of one domain.
+     */
+    private static String handleStats(Request req, Response res) {
+        if (!isAdmin(req)) {
+            return error(res, 403, "Admin token required");
+        }
+        int minutes;
+        try {
+            minutes = Integer.parseInt(req.queryParamOrDefault("minutes", "60"));
+        } catch (NumberFormatException e) {
+            return error(res, 400, "minutes must be a number");
+        }
+        res.type("application/json");
+        return gson.toJson(loginService.getStats().snapshot(minutes, req.queryParams("domain")));
+    }
+    
+    /**
+     * Streams bulk verification results; the body is read incrementally, see StreamingVerifier
+     */
+    private static String handleVerifyStream(Request req, Response res) throws IOException {
+        if (!isAdmin(req)) {
+            return error(res, 403, "Admin token required");
+        }
+        
+        res.status(200);
+        res.type("application/x-ndjson");
+        try {
+            streamingVerifier().verify(RequestLimitFilter.rawBody(req), res.raw().getOutputStream());
+        } catch (IOException e) {
+            // The client went away or the stream broke; results so far were already sent
+            Log.warn(LoginAPI.class, "Bulk verification stream ended early: " + e.getMessage());
+        }
+        return "";
+    }
+    
+    /**
+     * Streams every user (without passwords) in email order, see UserExporter.
+     * Query parameters: format=ndjson|csv (ndjson), after=email to resume an interrupted export.
+     */
+    private static String handleExport(Request req, Response res) throws IOException {
+        if (!isAdmin(req)) {
+            return error(res, 403, "Admin token required");
+        }
+        String format = req.queryParamOrDefault("format", "ndjson");
+        try {
+            UserExporter.checkFormat(format);
+        } catch (IllegalArgumentException e) {
+            return error(res, 400, e.getMessage());
+        }
+        
+        res.status(200);
+        res.type("csv".equals(format) ? "text/csv" : "application/x-ndjson");
+        res.header("Content-Disposition", "attachment; filename=users-export." + format);
+        Writer out = new BufferedWriter(new OutputStreamWriter(res.raw().getOutputStream(), StandardCharsets.UTF_8), 64 * 1024);
+        try {
+            long exported = new UserExporter(loginService.getUserStore())
+                    .export(out, format, req.queryParams("after"), UserExporter.DEFAULT_PAGE_SIZE);
+            Log.info(LoginAPI.class, "Exported " + exported + " users");
+        } catch (SQLException | RuntimeException e) {
+            Log.error(LoginAPI.class, "User export failed", e);
+            if (!res.raw().isCommitted()) {
+                res.raw().reset();
+                return error(res, 500, "Export failed");
+            }
+            // Already streaming: drop the connection without ending the response, so the client
+            // sees a broken transfer rather than a complete-looking one and can resume with after=
+            org.eclipse.jetty.server.Request.getBaseRequest(req.raw()).getHttpChannel().abort(e);
+        } catch (IOException e) {
+            Log.warn(LoginAPI.class, "User export stream ended early: " + e.getMessage());
+        }
+        return "";
+    }
+    
+    /**
+     * Starts the deadline of an API request: api.deadlineMs, or less if the X-Request-Timeout-Ms
+     * header asks for it. Streaming endpoints run as long as their client keeps reading.
+     */
+    private static void startDeadline(Request req, Response res) {
+        String path = req.pathInfo();
+        if (VERIFY_STREAM_PATH.equals(path) || EXPORT_PATH.equals(path)) {
+            Deadline.clear();
+            return;
+        }
+        long budget = DEADLINE_MS;
+        String requested = req.headers(DEADLINE_HEADER);
+        if (requested != null) {
+            try {
+                budget = Math.min(Long.parseLong(requested.trim()), DEADLINE_MS);
+            } catch (NumberFormatException e) {
+                budget = -1;
+            }
+            if (budget <= 0) {
+                halt(400, error(res, 400, DEADLINE_HEADER + " must be a positive number of milliseconds"));
+            }
+        }
+        Deadline.start(budget);
+    }
+    
+    /**
+     * Waits for the request's turn in the scheduler; shed requests get 503, and requests whose
+     * deadline passes in the queue get 504
+     */
+    private static void admit(Request req, Response res) {
+        if ("OPTIONS".equals(req.requestMethod())) {
+            return;
+        }
+        try {
+            req.attribute(PERMIT_ATTRIBUTE, scheduler.acquire(routeClass(req.pathInfo())));
+        } catch (RequestScheduler.ShedException e) {
+            res.header("Retry-After", "1");
+            halt(503, error(res, 503, "Server busy, retry later"));
+        } catch (Deadline.ExceededException e) {
+            halt(504, deadlineExceeded(res, e));
+        }
+    }
+    
+    private static void releasePermit(Request req, Response res) {
+        RequestScheduler.Permit permit = req.attribute(PERMIT_ATTRIBUTE);
+        if (permit != null) {
+            permit.close();
+        }
+    }
+    
+    private static RequestScheduler.RouteClass routeClass(String path) {
+        switch (path) {
+            case "/api/login":
+                return RequestScheduler.RouteClass.LOGIN;
+            case "/api/register":
+                return RequestScheduler.RouteClass.REGISTER;
+            case "/api/health":
+            case "/api/ready":
+            case "/api/metrics":
+            case "/api/startup":
+                return RequestScheduler.RouteClass.HEALTH;
+            default:
+                return RequestScheduler.RouteClass.ADMIN;
+        }
+    }
+    
+    /**
+     * Answers a request whose deadline passed with 504, counted in deadline.exceeded
+     * and per stage in deadline.exceeded.(stage)
+     */
+    private static String deadlineExceeded(Response res, Deadline.ExceededException e) {
+        Metrics.increment("deadline.exceeded");
+        Metrics.increment("deadline.exceeded." + e.getStage());
+        return error(res, 504, "Request deadline exceeded");
+    }
+    
+    private static String error(Response res, int status, String message) {
+        res.status(status);
+        res.type("application/json");
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", message);
+        return gson.toJson(errorResponse);
+    }
+    
+    /**
+     * @return true if the request carries the configured admin.token in X-Admin-Token
+     */
+    private static boolean isAdmin(Request req) {
+        String expected = AppConfig.get("admin.token", null);
+        String actual = req.headers("X-Admin-Token");
+        return expected != null && !expected.isEmpty() && actual != null
+                && MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
+    }
+    
     /**
      * Handles registration requests (for testing purposes)
      */
@@ -104,7 +482,7 @@ public class LoginAPI {
         
         try {
             // Parse request body
-            Map<String, String> requestData = gson.fromJson(req.body(), MAP_TYPE);
+            Map<String, String> requestData = gson.fromJson(RequestLimitFilter.body(req), MAP_TYPE);
             String email = requestData.get("email");
             String password = requestData.get("password");
             
@@ -125,6 +503,14 @@ public class LoginAPI {
                 return gson.toJson(errorResponse);
             }
             
+            if (email.length() > LoginService.MAX_EMAIL_LENGTH || password.length() > LoginService.MAX_PASSWORD_LENGTH) {
+                res.status(400);
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "Email or password exceeds maximum length");
+                return gson.toJson(errorResponse);
+            }
+            
             // Check if user already exists
             if (loginService.doesUserExist(email)) {
                 res.status(409);
@@ -150,6 +536,14 @@ public class LoginAPI {
             
             return gson.toJson(response);
             
+        } catch (Deadline.ExceededException e) {
+            return deadlineExceeded(res, e);
+        } catch (JsonSyntaxException e) {
+            res.status(400);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Malformed request body");
+            return gson.toJson(errorResponse);
         } catch (Exception e) {
             res.status(500);
             Map<String, Object> errorResponse = new HashMap<>();
@@ -1,13 +1,105 @@
 package com.logintest;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class LoginService {
     
-    private DatabaseHelper dbHelper;
+    // Same limits as the frontend form
+    public static final int MAX_EMAIL_LENGTH = 50;
+    public static final int MAX_PASSWORD_LENGTH = 30;
+    
+    private static final int CACHE_MAX_ENTRIES = AppConfig.getInt("cache.maxEntries", 100_000);
+    private static final long CACHE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(AppConfig.getLong("cache.ttlSeconds", 300L));
+    // Rows committed late can carry a timestamp older than the previous catch-up
+    private static final long CATCH_UP_OVERLAP_MILLIS = 5_000L;
+    private static final long FILTER_EXPECTED_USERS = AppConfig.getLong("filter.expectedUsers", 1_000_000L);
+    private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+    
+    private final UserStore store;
+    private final CredentialCache credentialCache;
+    private final SessionRegistry sessions = new SessionRegistry();
+    private final LoginStats stats = new LoginStats();
+    private volatile ExistenceFilter existenceFilter;
+    private volatile long reconciledAt;
+    // Bumped after every removal or registration; a cache put made from an older read is undone
+    private final AtomicLong cacheVersion = new AtomicLong();
+    private final long catchUpIntervalMillis;
+    private ScheduledExecutorService catchUpTimer;
+    private boolean catchUpFailing;
     
     public LoginService() {
-        this.dbHelper = new DatabaseHelper();
+        this(createUserStore());
+    }
+    
+    /**
+     * Creates a service over a specific store (e.g. InMemoryUserStore in tests)
+     * @param store - User store
+     */
+    public LoginService(UserStore store) {
+        this(store, AppConfig.getLong("filter.maxStaleMillis", 1000L));
+    }
+    
+    /**
+     * @param store - User store
+     * @param catchUpIntervalMillis - How often the existence filter catches up in the background
+     *        once loaded, or 0 to leave it to {@link #catchUp()} calls
+     */
+    LoginService(UserStore store, long catchUpIntervalMillis) {
+        this.store = store;
+        this.credentialCache = createCredentialCache();
+        this.existenceFilter = ExistenceFilter.forExpected(FILTER_EXPECTED_USERS, FILTER_FALSE_POSITIVE_RATE);
+        this.catchUpIntervalMillis = catchUpIntervalMillis;
+    }
+    
+    /**
+     * Builds the configured database store; with hedge.enabled, single-user reads are hedged
+     * to the replica at db.replica.url, or to a second pool on the same database
+     */
+    private static UserStore createUserStore() {
+        DatabaseHelper database = new DatabaseHelper();
+        if (!AppConfig.getBoolean("hedge.enabled", false)) {
+            return database;
+        }
+        String replicaUrl = AppConfig.get("db.replica.url", null);
+        DatabaseHelper secondary = replicaUrl == null
+                ? new DatabaseHelper()
+                : new DatabaseHelper(replicaUrl,
+                        AppConfig.get("db.replica.username", AppConfig.get("db.username", "root")),
+                        AppConfig.get("db.replica.password", AppConfig.get("db.password", "")));
+        return new HedgedUserStore(database, secondary);
+    }
+    
+    /**
+     * Builds the credential cache selected by the cache.type setting:
+     * "heap" (default) or "offheap", optionally backed by the file in cache.offheap.file
+     */
+    private static CredentialCache createCredentialCache() {
+        if (!"offheap".equalsIgnoreCase(AppConfig.get("cache.type", "heap"))) {
+            return new HeapCredentialCache(CACHE_MAX_ENTRIES, CACHE_TTL_MILLIS);
+        }
+        
+        String file = AppConfig.get("cache.offheap.file", null);
+        if (file != null) {
+            try {
+                return new OffHeapCredentialCache(CACHE_MAX_ENTRIES, CACHE_TTL_MILLIS, Paths.get(file));
+            } catch (IOException e) {
+                Log.warn(LoginService.class, "Cannot map off-heap cache file " + file + ", using direct memory", e);
+            }
+        }
+        return new OffHeapCredentialCache(CACHE_MAX_ENTRIES, CACHE_TTL_MILLIS);
     }
     
     /**
@@ -15,14 +107,51 @@ public class LoginService {
      * @throws SQLException if connection fails
      */
     public void initialize() throws SQLException {
-        dbHelper.connect();
+        store.connect();
+        Metrics.gauge("sessions.active", sessions::size);
+    }
+    
+    /**
+     * Opens every pooled database connection ahead of traffic
+     * @return number of connections opened
+     */
+    public int prefillConnections() throws SQLException {
+        return store.prefillPool();
+    }
+    
+    /**
+     * Gets the user store (for health reporting)
+     * @return UserStore object
+     */
+    public UserStore getUserStore() {
+        return store;
+    }
+    
+    /**
+     * @return per-minute login statistics, fed by every validateLogin call
+     */
+    public LoginStats getStats() {
+        return stats;
+    }
+    
+    /**
+     * @return number of credentials currently held in the cache
+     */
+    public int getCachedCredentialCount() {
+        return credentialCache.size();
     }
     
     /**
-     * Closes the database connection
+     * Stops the background catch-up and closes the database connection
      */
     public void cleanup() {
-        dbHelper.disconnect();
+        synchronized (this) {
+            if (catchUpTimer != null) {
+                catchUpTimer.shutdownNow();
+                catchUpTimer = null;
+            }
+        }
+        store.disconnect();
     }
     
     /**
@@ -32,33 +161,243 @@ public class LoginService {
      * @return LoginResult object containing success status and message
      */
     public LoginResult validateLogin(String email, String password) {
-        // Input validation
+        LoginResult result = checkLogin(email, password);
+        stats.record(email, result.getOutcome());
+        return result;
+    }
+    
+    /**
+     * Validates credentials without counting the outcome in the login statistics
+     * (for synthetic requests such as the startup warm-up)
+     */
+    LoginResult checkLogin(String email, String password) {
+        LoginResult decided = precheckLogin(email, password);
+        if (decided != null) {
+            return decided;
+        }
+        Deadline.check("precheck");
+        long version = cacheVersion();
+        String storedPassword = store.getPassword(email.trim());
+        Deadline.check("lookup");
+        return completeLogin(email, password, storedPassword, version);
+    }
+    
+    /**
+     * CPU stage of a login: input validation, existence filter and credential cache
+     * @return the result if it is decided without the store, or null if the stored password
+     *         has to be looked up (after reading {@link #cacheVersion()}) and passed to {@link #completeLogin}
+     */
+    LoginResult precheckLogin(String email, String password) {
+        String rejection = checkInput(email, password);
+        if (rejection != null) {
+            return new LoginResult(LoginResult.Outcome.REJECTED, rejection);
+        }
+        
+        // Check credentials against the warm cache before the database (use trimmed values for lookup)
+        Boolean cached = checkCached(normalizeEmail(email), password.trim());
+        return cached == null ? null : result(cached);
+    }
+    
+    /**
+     * CPU stage after the store lookup: caches the stored password and compares it
+     * @param storedPassword - Stored password of the (trimmed) email, or null if unknown
+     * @param version - {@link #cacheVersion()} read before the lookup
+     */
+    LoginResult completeLogin(String email, String password, String storedPassword, long version) {
+        if (storedPassword == null) {
+            return result(false);
+        }
+        cacheStored(normalizeEmail(email), storedPassword, version);
+        return result(password.trim().equals(storedPassword));
+    }
+    
+    /**
+     * @return version to pass to {@link #completeLogin}; read it before the store lookup
+     */
+    long cacheVersion() {
+        return cacheVersion.get();
+    }
+    
+    /**
+     * Caches a password read from the store, unless a removal or registration may have
+     * invalidated the entry since the read
+     * @param version - {@link #cacheVersion()} read before the store was asked
+     */
+    private void cacheStored(String key, String storedPassword, long version) {
+        credentialCache.put(key, PasswordDigest.of(storedPassword));
+        if (cacheVersion.get() != version) {
+            credentialCache.invalidate(key);
+        }
+    }
+    
+    /**
+     * Drops a cached credential after the store changed it; called after the store write
+     */
+    private void invalidateCached(String key) {
+        cacheVersion.incrementAndGet();
+        credentialCache.invalidate(key);
+    }
+    
+    /**
+     * Validates many credential pairs, answering what it can from the existence filter and
+     * credential cache and looking up all remaining users in one store round trip. Bulk
+     * sweeps are not counted in the login statistics.
+     * @param credentials - {email, password} pairs
+     * @return one result per pair, in the same order
+     */
+    public LoginResult[] validateLogins(List<String[]> credentials) {
+        LoginResult[] results = new LoginResult[credentials.size()];
+        List<Integer> pending = new ArrayList<>();
+        Set<String> lookups = new HashSet<>();
+        for (int i = 0; i < results.length; i++) {
+            String email = credentials.get(i)[0];
+            String password = credentials.get(i)[1];
+            String rejection = checkInput(email, password);
+            if (rejection != null) {
+                results[i] = new LoginResult(LoginResult.Outcome.REJECTED, rejection);
+                continue;
+            }
+            Boolean cached = checkCached(normalizeEmail(email), password.trim());
+            if (cached != null) {
+                results[i] = result(cached);
+            } else {
+                pending.add(i);
+                lookups.add(email.trim());
+            }
+        }
+        if (!pending.isEmpty()) {
+            Deadline.check("precheck");
+            long version = cacheVersion();
+            Map<String, String> storedPasswords = store.getPasswords(lookups);
+            Deadline.check("lookup");
+            for (int i : pending) {
+                String key = normalizeEmail(credentials.get(i)[0]);
+                String storedPassword = storedPasswords.get(key);
+                if (storedPassword != null) {
+                    cacheStored(key, storedPassword, version);
+                }
+                results[i] = result(storedPassword != null && credentials.get(i)[1].trim().equals(storedPassword));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Input validation shared by single and batch logins
+     * @return the rejection message, or null if the input may be checked against the store
+     */
+    private String checkInput(String email, String password) {
         if (email == null || email.trim().isEmpty()) {
-            return new LoginResult(false, "Email is required");
+            return "Email is required";
         }
         
         if (password == null || password.trim().isEmpty()) {
-            return new LoginResult(false, "Password is required");
+            return "Password is required";
+        }
+        
+        // Enforce length limits before any pattern matching
+        if (email.length() > MAX_EMAIL_LENGTH || password.length() > MAX_PASSWORD_LENGTH) {
+            return "Invalid credentials";
         }
         
         // Validate input format and security (pass original values to detect leading/trailing spaces)
         String emailValidation = validateEmailFormat(email);
         if (emailValidation != null) {
-            return new LoginResult(false, emailValidation);
+            return emailValidation;
         }
         
-        String passwordValidation = validatePasswordFormat(password);
-        if (passwordValidation != null) {
-            return new LoginResult(false, passwordValidation);
+        return validatePasswordFormat(password);
+    }
+    
+    private static LoginResult result(boolean valid) {
+        return valid
+                ? new LoginResult(LoginResult.Outcome.SUCCESS, "Login Successful")
+                : new LoginResult(LoginResult.Outcome.FAILURE, "Invalid credentials");
+    }
+    
+    /**
+     * @return false if the existence filter rules the user out, true on a cache match,
+     *         or null if the store has to be asked
+     */
+    private Boolean checkCached(String key, String password) {
+        if (!mightContain(key)) {
+            return Boolean.FALSE;
         }
         
-        // Check credentials against database (use trimmed values for lookup)
-        boolean isValid = dbHelper.validateCredentials(email.trim(), password.trim());
-        
-        if (isValid) {
-            return new LoginResult(true, "Login Successful");
-        } else {
-            return new LoginResult(false, "Invalid credentials");
+        byte[] digest = PasswordDigest.of(password);
+        if (credentialCache.lookup(key, digest) == CredentialCache.Lookup.MATCH) {
+            Metrics.increment("cache.hits");
+            return Boolean.TRUE;
+        }
+        Metrics.increment("cache.misses");
+        return null;
+    }
+    
+    /**
+     * Cache key for an email; MySQL compares emails case-insensitively, so the caches do too
+     */
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Warms the credential cache and existence filter from a snapshot file, then
+     * reconciles them with every row whose updated_at/created_at is newer than the snapshot.
+     * Without a snapshot the existence filter is rebuilt from a full email scan.
+     * Rows deleted outside this service are not detected; their cached credentials stop
+     * matching once they are older than cache.ttlSeconds.
+     * @param path - Snapshot file written by {@link #saveSnapshot(Path)}
+     */
+    public void loadSnapshot(Path path) {
+        long started = System.nanoTime();
+        try {
+            long now = store.currentTimestamp();
+            CacheSnapshot snapshot = null;
+            try {
+                snapshot = CacheSnapshot.load(path, credentialCache);
+            } catch (IOException | RuntimeException e) {
+                Log.warn(LoginService.class, "Ignoring unreadable cache snapshot " + path, e);
+            }
+            
+            ExistenceFilter filter;
+            if (snapshot != null) {
+                filter = snapshot.getFilter();
+                store.forEachUserUpdatedSince(snapshot.getReconciledAt(), (email, password) -> {
+                    String key = normalizeEmail(email);
+                    filter.add(key);
+                    credentialCache.put(key, PasswordDigest.of(password));
+                });
+            } else {
+                filter = ExistenceFilter.forExpected(FILTER_EXPECTED_USERS, FILTER_FALSE_POSITIVE_RATE);
+                store.forEachEmail(email -> filter.add(normalizeEmail(email)));
+            }
+            filter.markComplete();
+            existenceFilter = filter;
+            reconciledAt = now;
+            startCatchUp();
+            
+            Log.info(LoginService.class, "Warm cache ready (" + credentialCache.size() + " credentials, "
+                    + (snapshot != null ? "from snapshot" : "cold start") + ") in "
+                    + (System.nanoTime() - started) / 1_000_000 + " ms");
+        } catch (SQLException e) {
+            Log.error(LoginService.class, "Error warming caches", e);
+        }
+    }
+    
+    /**
+     * Writes the credential cache and existence filter to a snapshot file
+     * @param path - Snapshot file
+     */
+    public void saveSnapshot(Path path) {
+        ExistenceFilter filter = existenceFilter;
+        if (!filter.isComplete()) {
+            return;
+        }
+        try {
+            CacheSnapshot.write(path, reconciledAt, credentialCache, filter);
+            Log.info(LoginService.class, "Cache snapshot written (" + credentialCache.size() + " credentials)");
+        } catch (IOException e) {
+            Log.error(LoginService.class, "Error writing cache snapshot", e);
         }
     }
     
@@ -80,18 +419,8 @@ public class LoginService {
             return "Invalid credentials";
         }
         
-        // SQL Injection patterns
-        if (containsSQLInjectionPatterns(trimmedEmail)) {
-            return "Invalid credentials";
-        }
-        
-        // XSS Injection patterns
-        if (containsXSSPatterns(trimmedEmail)) {
-            return "Invalid credentials";
-        }
-        
-        // HTML Injection patterns
-        if (containsHTMLPatterns(trimmedEmail)) {
+        // SQL, XSS and HTML injection patterns (validation-rules.txt)
+        if (ValidationRules.matches(trimmedEmail)) {
             return "Invalid credentials";
         }
         
@@ -126,18 +455,8 @@ public class LoginService {
             return "Invalid credentials";
         }
         
-        // SQL Injection patterns
-        if (containsSQLInjectionPatterns(trimmedPassword)) {
-            return "Invalid credentials";
-        }
-        
-        // XSS Injection patterns
-        if (containsXSSPatterns(trimmedPassword)) {
-            return "Invalid credentials";
-        }
-        
-        // HTML Injection patterns
-        if (containsHTMLPatterns(trimmedPassword)) {
+        // SQL, XSS and HTML injection patterns (validation-rules.txt)
+        if (ValidationRules.matches(trimmedPassword)) {
             return "Invalid credentials";
         }
         
@@ -145,100 +464,96 @@ public class LoginService {
     }
     
     /**
-     * Detects SQL injection patterns
-     */
-    private boolean containsSQLInjectionPatterns(String input) {
-        String lowerInput = input.toLowerCase();
-        String[] sqlPatterns = {
-            "' or '1'='1",
-            "\" or \"1\"=\"1",
-            "'; drop",
-            "' union",
-            "\" union",
-            "'; delete",
-            "' insert",
-            "' update",
-            "' select",
-            "-- ", 
-            "/*", 
-            "*/"
-        };
-        
-        for (String pattern : sqlPatterns) {
-            if (lowerInput.contains(pattern)) {
-                return true;
-            }
+     * Checks if a user exists in the system
+     * @param email - User's email
+     * @return true if user exists, false otherwise
+     */
+    public boolean doesUserExist(String email) {
+        if (!mightExist(email)) {
+            return false;
         }
-        
-        return false;
-    }
-    
-    /**
-     * Detects XSS patterns
-     */
-    private boolean containsXSSPatterns(String input) {
-        String lowerInput = input.toLowerCase();
-        String[] xssPatterns = {
-            "<script",
-            "</script>",
-            "javascript:",
-            "onerror=",
-            "onload=",
-            "onclick=",
-            "onmouseover=",
-            "eval(",
-            "alert(",
-            "prompt(",
-            "confirm("
-        };
-        
-        for (String pattern : xssPatterns) {
-            if (lowerInput.contains(pattern)) {
-                return true;
-            }
+        boolean exists = store.userExists(email);
+        Deadline.check("lookup");
+        return exists;
+    }
+    
+    /**
+     * CPU stage of an existence check
+     * @return false if the existence filter rules the user out, true if the store has to be asked
+     */
+    boolean mightExist(String email) {
+        return mightContain(normalizeEmail(email));
+    }
+    
+    /**
+     * Never touches the store: users added by other instances or tools are ruled out until
+     * the next background catch-up, at most filter.maxStaleMillis later
+     * @param key - Normalized email
+     * @return false if the user does not exist
+     */
+    private boolean mightContain(String key) {
+        ExistenceFilter filter = existenceFilter;
+        return !filter.isComplete() || filter.mightContain(key);
+    }
+    
+    /**
+     * Catches up every filter.maxStaleMillis on a background thread, once the filter is loaded
+     */
+    private synchronized void startCatchUp() {
+        if (catchUpTimer != null || catchUpIntervalMillis <= 0) {
+            return;
         }
-        
-        return false;
-    }
-    
-    /**
-     * Detects HTML injection patterns
-     */
-    private boolean containsHTMLPatterns(String input) {
-        String lowerInput = input.toLowerCase();
-        String[] htmlPatterns = {
-            "<b>",
-            "</b>",
-            "<i>",
-            "</i>",
-            "<p>",
-            "</p>",
-            "<div>",
-            "</div>",
-            "<span>",
-            "</span>",
-            "<font>",
-            "</font>",
-            "<strong>",
-            "</strong>"
-        };
-        
-        for (String pattern : htmlPatterns) {
-            if (lowerInput.contains(pattern)) {
-                return true;
+        catchUpTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "filter-catch-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        catchUpTimer.scheduleWithFixedDelay(this::catchUp, catchUpIntervalMillis, catchUpIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Adds rows updated since the last reconcile (an indexed range scan on updated_at and
+     * created_at) to the existence filter and credential cache; errors are logged once per
+     * failing streak and retried on the next run
+     */
+    synchronized void catchUp() {
+        try {
+            long now = store.currentTimestamp();
+            long version = cacheVersion();
+            ExistenceFilter filter = existenceFilter;
+            store.forEachUserUpdatedSince(reconciledAt - CATCH_UP_OVERLAP_MILLIS, (email, password) -> {
+                String key = normalizeEmail(email);
+                filter.add(key);
+                cacheStored(key, password, version);
+            });
+            reconciledAt = now;
+            catchUpFailing = false;
+            Metrics.increment("filter.catchUps");
+        } catch (SQLException | RuntimeException e) {
+            if (!catchUpFailing) {
+                catchUpFailing = true;
+                Log.error(LoginService.class, "Error catching up the existence filter", e);
             }
         }
-        
-        return false;
     }
     
     /**
-     * Checks if a user exists in the system
+     * Starts a session after a successful login
      * @param email - User's email
-     * @return true if user exists, false otherwise
+     * @return the session token
      */
-    public boolean doesUserExist(String email) {
-        return dbHelper.userExists(email);
+    public String createSession(String email) {
+        return sessions.issue(normalizeEmail(email));
+    }
+    
+    /**
+     * Checks a session token
+     * @param token - Token from createSession
+     * @return the session's normalized email, or null if unknown or expired
+     */
+    public String verifySession(String token) {
+        return sessions.verify(token);
     }
     
     /**
@@ -248,37 +563,73 @@ public class LoginService {
      * @return true if registration successful, false otherwise
      */
     public boolean registerUser(String email, String password) {
+        if (email.length() > MAX_EMAIL_LENGTH || password.length() > MAX_PASSWORD_LENGTH) {
+            return false;
+        }
+        
         // Check if user already exists
-        if (dbHelper.userExists(email)) {
+        boolean exists = store.userExists(email);
+        Deadline.check("lookup");
+        if (exists) {
             return false;
         }
         
-        return dbHelper.addUser(email, password);
+        boolean added = store.addUser(email, password);
+        if (added) {
+            String key = normalizeEmail(email);
+            existenceFilter.add(key);
+            // A user deleted elsewhere may still have a cached credential under this email
+            invalidateCached(key);
+        } else {
+            // A failed insert may be the deadline's query timeout rather than a duplicate
+            Deadline.check("insert");
+        }
+        return added;
     }
     
     /**
-     * Removes a user from the system (for test cleanup)
+     * Removes a user from the system (for test cleanup) and ends the user's sessions
      * @param email - User's email
      * @return true if removal successful, false otherwise
      */
     public boolean removeUser(String email) {
-        return dbHelper.removeUser(email);
+        boolean removed = store.removeUser(email);
+        String key = normalizeEmail(email);
+        invalidateCached(key);
+        sessions.revokeAll(key);
+        return removed;
     }
     
     /**
      * Inner class to represent login result
      */
     public static class LoginResult {
-        private final boolean success;
+        
+        /**
+         * SUCCESS, FAILURE (wrong or unknown credentials) or REJECTED (input refused before any lookup)
+         */
+        public enum Outcome {
+            SUCCESS, FAILURE, REJECTED
+        }
+        
+        private final Outcome outcome;
         private final String message;
         
         public LoginResult(boolean success, String message) {
-            this.success = success;
+            this(success ? Outcome.SUCCESS : Outcome.FAILURE, message);
+        }
+        
+        public LoginResult(Outcome outcome, String message) {
+            this.outcome = outcome;
             this.message = message;
         }
         
         public boolean isSuccess() {
-            return success;
+            return outcome == Outcome.SUCCESS;
+        }
+        
+        public Outcome getOutcome() {
+            return outcome;
         }
         
         public String getMessage() {
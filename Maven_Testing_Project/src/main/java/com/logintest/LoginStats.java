@@ -0,0 +1,503 @@
+package com.logintest;
+
+import com.logintest.LoginService.LoginResult.Outcome;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Login outcomes (success, failure, rejected input) aggregated per minute as LoginService
+ * answers, so /api/stats and the rollup table are read from precomputed counters and never
+ * from raw attempts.
+ *
+ * The last stats.minutes (60) minutes are kept in a ring of buckets of LongAdder counters,
+ * in total and per email domain (the first stats.maxDomains (256) domains of a minute; the
+ * rest count as "(other)"). Rejected input only counts in the totals, so junk domains cannot
+ * take up the domain slots. Failures also feed approximate Space-Saving summaries of the
+ * most failing emails and domains, of which stats.topK (10) are reported. Recording takes
+ * no lock except on failures, and allocates nothing once a minute has seen the domain.
+ *
+ * Every stats.flushIntervalMs (60000) completed minutes are written to login_stats_minute
+ * with one multi-row insert; the "*" domain holds a minute's totals.
+ */
+public class LoginStats {
+    
+    public static final String ALL_DOMAINS = "*";
+    public static final String OTHER_DOMAINS = "(other)";
+    
+    private static final long MINUTE_MS = 60_000L;
+    private static final long FLUSH_INTERVAL_MS = AppConfig.getLong("stats.flushIntervalMs", 60_000L);
+    // Lets logins that started just before the end of a minute land before it is written
+    private static final long FLUSH_GRACE_MS = 5_000L;
+    // Keeps an insert far below MySQL's 65535 placeholders when catching up after an outage
+    private static final int MAX_ROWS_PER_INSERT = 1000;
+    
+    private final int maxDomains;
+    private final int topK;
+    private final LongSupplier clock;
+    private final AtomicReferenceArray<Bucket> ring;
+    private ScheduledExecutorService flusher;
+    private volatile UserStore store;
+    
+    public LoginStats() {
+        this(AppConfig.getInt("stats.minutes", 60), AppConfig.getInt("stats.maxDomains", 256),
+                AppConfig.getInt("stats.topK", 10), System::currentTimeMillis);
+    }
+    
+    /**
+     * @param minutes - Minutes kept in memory
+     * @param maxDomains - Domains counted separately per minute
+     * @param topK - Failing emails and domains reported
+     * @param clock - Milliseconds since the epoch
+     */
+    public LoginStats(int minutes, int maxDomains, int topK, LongSupplier clock) {
+        this.maxDomains = maxDomains;
+        this.topK = topK;
+        this.clock = clock;
+        this.ring = new AtomicReferenceArray<>(minutes);
+    }
+    
+    /**
+     * Counts one login outcome
+     * @param email - Email as submitted (may be null or malformed for rejected input)
+     * @param outcome - Outcome of the login
+     */
+    public void record(String email, Outcome outcome) {
+        Bucket bucket = bucket(clock.getAsLong() / MINUTE_MS);
+        bucket.total.add(outcome);
+        
+        // Only validated input has a real domain
+        int at = outcome == Outcome.REJECTED || email == null || email.length() > LoginService.MAX_EMAIL_LENGTH
+                ? -1 : email.lastIndexOf('@');
+        String domain = at < 0 || at == email.length() - 1 ? null : bucket.countDomain(email, at + 1, outcome);
+        if (outcome == Outcome.FAILURE && email != null) {
+            bucket.failingEmails.offer(email.toLowerCase(Locale.ROOT));
+            if (domain != null) {
+                bucket.failingDomains.offer(domain);
+            }
+        }
+    }
+    
+    /**
+     * Starts writing completed minutes to the store in the background
+     * @param store - Store holding the login_stats_minute table
+     */
+    public synchronized void start(UserStore store) {
+        this.store = store;
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Stops the background writer and writes every unwritten minute, the current one included;
+     * counts added to a minute after that are merged with it if it is written again
+     */
+    public void stop() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = flusher;
+            flusher = null;
+        }
+        if (running == null) {
+            return;
+        }
+        running.shutdown();
+        try {
+            running.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        write(Long.MAX_VALUE);
+    }
+    
+    /**
+     * Writes every completed minute that has not been written yet
+     * @return number of rows written
+     */
+    public int flush() {
+        return write((clock.getAsLong() - FLUSH_GRACE_MS) / MINUTE_MS);
+    }
+    
+    /**
+     * Writes unwritten minutes before the given one, one insert per group of whole minutes;
+     * a failed group is retried on the next flush
+     */
+    private synchronized int write(long beforeMinute) {
+        if (store == null) {
+            return 0;
+        }
+        List<Bucket> pending = new ArrayList<>();
+        for (int i = 0; i < ring.length(); i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && !bucket.flushed && bucket.minute < beforeMinute) {
+                pending.add(bucket);
+            }
+        }
+        pending.sort(Comparator.comparingLong(bucket -> bucket.minute));
+        
+        int written = 0;
+        List<Row> rows = new ArrayList<>();
+        List<Bucket> group = new ArrayList<>();
+        try {
+            for (Bucket bucket : pending) {
+                bucket.addRows(rows);
+                group.add(bucket);
+                if (rows.size() >= MAX_ROWS_PER_INSERT) {
+                    written += insert(rows, group);
+                }
+            }
+            written += insert(rows, group);
+        } catch (SQLException e) {
+            Metrics.increment("stats.flush_failures");
+            Log.warn(LoginStats.class, "Cannot write login statistics, retrying on the next flush", e);
+        }
+        return written;
+    }
+    
+    private int insert(List<Row> rows, List<Bucket> group) throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        store.insertLoginStats(rows);
+        group.forEach(bucket -> bucket.flushed = true);
+        int written = rows.size();
+        Metrics.add("stats.rows_flushed", written);
+        rows.clear();
+        group.clear();
+        return written;
+    }
+    
+    /**
+     * @return the bucket of the given minute, replacing the one it reuses in the ring
+     */
+    private Bucket bucket(long minute) {
+        int index = (int) (minute % ring.length());
+        Bucket bucket = ring.get(index);
+        if (bucket != null && bucket.minute >= minute) {
+            return bucket;
+        }
+        synchronized (ring) {
+            bucket = ring.get(index);
+            if (bucket == null || bucket.minute < minute) {
+                if (bucket != null && !bucket.flushed && store != null) {
+                    Metrics.increment("stats.minutes_dropped");
+                }
+                bucket = new Bucket(minute, maxDomains, topK * 4);
+                ring.set(index, bucket);
+            }
+            return bucket;
+        }
+    }
+    
+    /**
+     * Reads the precomputed statistics of the last minutes, the current (partial) one included
+     * @param minutes - Minutes to report, at most the number kept
+     * @param domain - Reports the minute series of this domain only, or null for all logins
+     * @return report for /api/stats
+     */
+    public Map<String, Object> snapshot(int minutes, String domain) {
+        long current = clock.getAsLong() / MINUTE_MS;
+        int count = Math.max(1, Math.min(minutes, ring.length()));
+        
+        List<Map<String, Object>> series = new ArrayList<>(count);
+        long[] totals = new long[3];
+        Map<String, long[]> domains = new HashMap<>();
+        Map<String, long[]> failingEmails = new HashMap<>();
+        Map<String, long[]> failingDomains = new HashMap<>();
+        for (long minute = current - count + 1; minute <= current; minute++) {
+            Bucket bucket = ring.get((int) (minute % ring.length()));
+            long[] counts = new long[3];
+            if (bucket != null && bucket.minute == minute) {
+                Counters counters = domain == null ? bucket.total : bucket.find(domain);
+                if (counters != null) {
+                    counters.addTo(counts);
+                }
+                bucket.addDomainsTo(domains);
+                bucket.failingEmails.addTo(failingEmails);
+                bucket.failingDomains.addTo(failingDomains);
+            }
+            for (int i = 0; i < counts.length; i++) {
+                totals[i] += counts[i];
+            }
+            series.add(counts("minute", Instant.ofEpochMilli(minute * MINUTE_MS).toString(), counts));
+        }
+        
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("domain", domain == null ? ALL_DOMAINS : domain);
+        report.put("totals", counts("minutes", count, totals));
+        report.put("minutes", series);
+        
+        List<Map<String, Object>> byDomain = new ArrayList<>();
+        domains.entrySet().stream()
+                .sorted((a, b) -> Long.compare(sum(b.getValue()), sum(a.getValue())))
+                .limit(maxDomains)
+                .forEach(entry -> byDomain.add(counts("domain", entry.getKey(), entry.getValue())));
+        report.put("domains", byDomain);
+        report.put("topFailingEmails", top("email", failingEmails));
+        report.put("topFailingDomains", top("domain", failingDomains));
+        return report;
+    }
+    
+    private static Map<String, Object> counts(String name, Object value, long[] counts) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put(name, value);
+        entry.put("success", counts[Outcome.SUCCESS.ordinal()]);
+        entry.put("failure", counts[Outcome.FAILURE.ordinal()]);
+        entry.put("rejected", counts[Outcome.REJECTED.ordinal()]);
+        return entry;
+    }
+    
+    private static long sum(long[] counts) {
+        return counts[0] + counts[1] + counts[2];
+    }
+    
+    /**
+     * @return the most frequent keys; "failures" may overcount by at most "maxOvercount"
+     */
+    private List<Map<String, Object>> top(String name, Map<String, long[]> summary) {
+        List<Map<String, Object>> top = new ArrayList<>();
+        summary.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                .limit(topK)
+                .forEach(entry -> {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put(name, entry.getKey());
+                    item.put("failures", entry.getValue()[0]);
+                    item.put("maxOvercount", entry.getValue()[1]);
+                    top.add(item);
+                });
+        return top;
+    }
+    
+    /**
+     * One row of login_stats_minute
+     */
+    public static final class Row {
+        final long minuteStart;
+        final String domain;
+        final long success;
+        final long failure;
+        final long rejected;
+        
+        Row(long minuteStart, String domain, long[] counts) {
+            this.minuteStart = minuteStart;
+            this.domain = domain;
+            this.success = counts[Outcome.SUCCESS.ordinal()];
+            this.failure = counts[Outcome.FAILURE.ordinal()];
+            this.rejected = counts[Outcome.REJECTED.ordinal()];
+        }
+    }
+    
+    /**
+     * Success, failure and rejected counts, indexed by Outcome ordinal
+     */
+    private static final class Counters {
+        private final LongAdder[] counts = {new LongAdder(), new LongAdder(), new LongAdder()};
+        
+        void add(Outcome outcome) {
+            counts[outcome.ordinal()].increment();
+        }
+        
+        void addTo(long[] totals) {
+            for (int i = 0; i < counts.length; i++) {
+                totals[i] += counts[i].sum();
+            }
+        }
+        
+        long[] get() {
+            long[] values = new long[counts.length];
+            addTo(values);
+            return values;
+        }
+    }
+    
+    private static final class DomainSlot {
+        private final String name;
+        private final int hash;
+        private final Counters counters = new Counters();
+        
+        DomainSlot(String name, int hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+        
+        boolean matches(String email, int start, int hash) {
+            return this.hash == hash && name.length() == email.length() - start
+                    && email.regionMatches(true, start, name, 0, name.length());
+        }
+    }
+    
+    /**
+     * One minute of counters. Domains live in an insert-only open-addressing table, hashed
+     * on the lower-cased characters of the email so that known domains need no substring.
+     */
+    private static final class Bucket {
+        private final long minute;
+        private final int maxDomains;
+        private final Counters total = new Counters();
+        private final Counters other = new Counters();
+        private final AtomicReferenceArray<DomainSlot> domains;
+        private final AtomicInteger domainCount = new AtomicInteger();
+        private final SpaceSaving failingEmails;
+        private final SpaceSaving failingDomains;
+        private volatile boolean flushed;
+        
+        Bucket(long minute, int maxDomains, int summarySize) {
+            this.minute = minute;
+            this.maxDomains = maxDomains;
+            this.domains = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(1, maxDomains)) * 4);
+            this.failingEmails = new SpaceSaving(summarySize);
+            this.failingDomains = new SpaceSaving(summarySize);
+        }
+        
+        /**
+         * @return the lower-cased domain the outcome was counted under
+         */
+        String countDomain(String email, int start, Outcome outcome) {
+            int hash = hash(email, start);
+            int mask = domains.length() - 1;
+            int index = hash & mask;
+            while (true) {
+                DomainSlot slot = domains.get(index);
+                if (slot == null) {
+                    if (domainCount.get() >= maxDomains) {
+                        other.add(outcome);
+                        return OTHER_DOMAINS;
+                    }
+                    DomainSlot created = new DomainSlot(email.substring(start).toLowerCase(Locale.ROOT), hash);
+                    if (domains.compareAndSet(index, null, created)) {
+                        domainCount.incrementAndGet();
+                    }
+                    slot = domains.get(index);
+                }
+                if (slot.matches(email, start, hash)) {
+                    slot.counters.add(outcome);
+                    return slot.name;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+        
+        /**
+         * @return the counters of a domain, or null if it had no logins this minute
+         */
+        Counters find(String domain) {
+            if (OTHER_DOMAINS.equals(domain)) {
+                return other;
+            }
+            int hash = hash(domain, 0);
+            int mask = domains.length() - 1;
+            for (int index = hash & mask; ; index = (index + 1) & mask) {
+                DomainSlot slot = domains.get(index);
+                if (slot == null || slot.matches(domain, 0, hash)) {
+                    return slot == null ? null : slot.counters;
+                }
+            }
+        }
+        
+        void addDomainsTo(Map<String, long[]> totals) {
+            for (int i = 0; i < domains.length(); i++) {
+                DomainSlot slot = domains.get(i);
+                if (slot != null) {
+                    slot.counters.addTo(totals.computeIfAbsent(slot.name, name -> new long[3]));
+                }
+            }
+            long[] others = other.get();
+            if (sum(others) > 0) {
+                long[] counts = totals.computeIfAbsent(OTHER_DOMAINS, name -> new long[3]);
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += others[i];
+                }
+            }
+        }
+        
+        void addRows(List<Row> rows) {
+            long minuteStart = minute * MINUTE_MS;
+            rows.add(new Row(minuteStart, ALL_DOMAINS, total.get()));
+            Map<String, long[]> byDomain = new HashMap<>();
+            addDomainsTo(byDomain);
+            byDomain.forEach((domain, counts) -> rows.add(new Row(minuteStart, domain, counts)));
+        }
+        
+        private static int hash(String email, int start) {
+            int hash = 0;
+            for (int i = start; i < email.length(); i++) {
+                hash = 31 * hash + Character.toLowerCase(email.charAt(i));
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+    
+    /**
+     * Space-Saving top-K summary: a fixed number of counters; an unseen key takes over the
+     * smallest counter and inherits its count, recorded as the key's possible overcount
+     */
+    private static final class SpaceSaving {
+        private final String[] keys;
+        private final int[] hashes;
+        private final long[] counts;
+        private final long[] errors;
+        private int size;
+        
+        SpaceSaving(int capacity) {
+            keys = new String[capacity];
+            hashes = new int[capacity];
+            counts = new long[capacity];
+            errors = new long[capacity];
+        }
+        
+        synchronized void offer(String key) {
+            int hash = key.hashCode();
+            for (int i = 0; i < size; i++) {
+                if (hashes[i] == hash && keys[i].equals(key)) {
+                    counts[i]++;
+                    return;
+                }
+            }
+            int slot = size;
+            if (size < keys.length) {
+                size++;
+            } else {
+                slot = 0;
+                for (int i = 1; i < size; i++) {
+                    if (counts[i] < counts[slot]) {
+                        slot = i;
+                    }
+                }
+            }
+            keys[slot] = key;
+            hashes[slot] = hash;
+            errors[slot] = counts[slot];
+            counts[slot]++;
+        }
+        
+        /**
+         * Merges this summary into {count, overcount} totals per key
+         */
+        synchronized void addTo(Map<String, long[]> totals) {
+            for (int i = 0; i < size; i++) {
+                long[] total = totals.computeIfAbsent(keys[i], key -> new long[2]);
+                total[0] += counts[i];
+                total[1] += errors[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.logintest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of named counters and gauges, served by /api/metrics
+ */
+public final class Metrics {
+    
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<?>> GAUGES = new ConcurrentHashMap<>();
+    
+    private Metrics() {
+    }
+    
+    /**
+     * Increments a counter by one
+     */
+    public static void increment(String name) {
+        counter(name).increment();
+    }
+    
+    /**
+     * Adds a delta to a counter
+     */
+    public static void add(String name, long delta) {
+        counter(name).add(delta);
+    }
+    
+    /**
+     * @return current value of a counter, 0 if it was never incremented
+     */
+    public static long count(String name) {
+        LongAdder adder = COUNTERS.get(name);
+        return adder == null ? 0 : adder.sum();
+    }
+    
+    /**
+     * Registers (or replaces) a gauge whose value is read on every snapshot
+     */
+    public static void gauge(String name, Supplier<?> supplier) {
+        GAUGES.put(name, supplier);
+    }
+    
+    /**
+     * @return all counters and gauges, sorted by name
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> values = new TreeMap<>();
+        COUNTERS.forEach((name, adder) -> values.put(name, adder.sum()));
+        GAUGES.forEach((name, supplier) -> values.put(name, supplier.get()));
+        return values;
+    }
+    
+    private static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+    }
+}
@@ -0,0 +1,424 @@
+package com.logintest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Credential cache stored outside the Java heap.
+ *
+ * Entries live in fixed-width slots inside direct (or memory-mapped) ByteBuffer segments,
+ * using open addressing with linear probing. Each segment has its own StampedLock;
+ * lookups use optimistic reads and do not allocate. Emails are stored as ASCII bytes
+ * (validateEmailFormat already rejects anything else) and digests are fixed-width,
+ * so the heap footprint does not grow with the number of users. Invalidation leaves a
+ * tombstone; once a segment holds more than 1/8 tombstones it is rehashed in place, so
+ * misses keep ending at an empty slot instead of scanning the whole segment. A full segment
+ * makes room for a new email by sweeping out expired entries (at most once a second) and
+ * otherwise evicting the entry under the segment's clock hand.
+ *
+ * Slot layout: int hash | byte state | byte emailLength | 64 email bytes | 32 digest bytes
+ * | 2 padding bytes | long storedAt (System.nanoTime() of the put)
+ */
+public class OffHeapCredentialCache implements CredentialCache {
+    
+    public static final int MAX_EMAIL_BYTES = 64;
+    
+    private static final int HASH_OFFSET = 0;
+    private static final int STATE_OFFSET = 4;
+    private static final int LENGTH_OFFSET = 5;
+    private static final int EMAIL_OFFSET = 6;
+    private static final int DIGEST_OFFSET = EMAIL_OFFSET + MAX_EMAIL_BYTES;
+    private static final int STORED_AT_OFFSET = 104; // DIGEST_OFFSET + 32, rounded to 8 bytes
+    private static final int SLOT_SIZE = STORED_AT_OFFSET + 8;
+    
+    private static final byte EMPTY = 0;
+    private static final byte OCCUPIED = 1;
+    private static final byte DELETED = 2;
+    // Live entry not yet reinserted by a compaction
+    private static final byte MOVING = 3;
+    
+    private static final int SEGMENT_COUNT = 16;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+    private static final int TOMBSTONE_DIVISOR = 8;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    private final ByteBuffer[] segments = new ByteBuffer[SEGMENT_COUNT];
+    private final StampedLock[] locks = new StampedLock[SEGMENT_COUNT];
+    // Two slots per segment that hold the entries a compaction is moving
+    private final ByteBuffer[] scratch = new ByteBuffer[SEGMENT_COUNT];
+    private final int[] used = new int[SEGMENT_COUNT];
+    private final int[] tombstones = new int[SEGMENT_COUNT];
+    private final int[] hands = new int[SEGMENT_COUNT];
+    private final long[] lastSweeps = new long[SEGMENT_COUNT];
+    private final int slotsPerSegment;
+    private final int maxEntriesPerSegment;
+    private final long ttlNanos;
+    private final AtomicInteger size = new AtomicInteger();
+    
+    /**
+     * Allocates the cache in direct memory
+     * @param capacity - Maximum number of entries
+     * @param ttlMillis - Time after which an entry no longer answers lookups
+     */
+    public OffHeapCredentialCache(int capacity, long ttlMillis) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.slotsPerSegment = slotsPerSegment(capacity);
+        this.maxEntriesPerSegment = (int) (slotsPerSegment * MAX_LOAD_FACTOR);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = ByteBuffer.allocateDirect(slotsPerSegment * SLOT_SIZE);
+            scratch[i] = ByteBuffer.allocateDirect(2 * SLOT_SIZE);
+            locks[i] = new StampedLock();
+        }
+        Arrays.fill(lastSweeps, System.nanoTime() - SWEEP_INTERVAL_NANOS);
+    }
+    
+    /**
+     * Backs the cache with a memory-mapped file, which is truncated on open
+     * @param capacity - Maximum number of entries
+     * @param ttlMillis - Time after which an entry no longer answers lookups
+     * @param file - Backing file
+     */
+    public OffHeapCredentialCache(int capacity, long ttlMillis, Path file) throws IOException {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.slotsPerSegment = slotsPerSegment(capacity);
+        this.maxEntriesPerSegment = (int) (slotsPerSegment * MAX_LOAD_FACTOR);
+        long segmentBytes = (long) slotsPerSegment * SLOT_SIZE;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < SEGMENT_COUNT; i++) {
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * segmentBytes, segmentBytes);
+                scratch[i] = ByteBuffer.allocateDirect(2 * SLOT_SIZE);
+                locks[i] = new StampedLock();
+            }
+        }
+        Arrays.fill(lastSweeps, System.nanoTime() - SWEEP_INTERVAL_NANOS);
+    }
+    
+    private static int slotsPerSegment(int capacity) {
+        long needed = (long) Math.ceil(capacity / MAX_LOAD_FACTOR / SEGMENT_COUNT);
+        long slots = Long.highestOneBit(Math.max(needed, 16) - 1) << 1;
+        if (slots * SLOT_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Capacity too large for " + SEGMENT_COUNT + " segments: " + capacity);
+        }
+        return (int) slots;
+    }
+    
+    @Override
+    public Lookup lookup(String email, byte[] digest) {
+        int hash = hash(email);
+        if (hash == 0) {
+            return Lookup.MISS;
+        }
+        int segmentIndex = hash >>> 28;
+        ByteBuffer segment = segments[segmentIndex];
+        StampedLock lock = locks[segmentIndex];
+        
+        long stamp = lock.tryOptimisticRead();
+        Lookup result = probe(segment, email, hash, digest);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = probe(segment, email, hash, digest);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+    
+    private Lookup probe(ByteBuffer segment, String email, int hash, byte[] digest) {
+        int slot = find(segment, email, hash);
+        if (slot < 0 || expired(segment, slot * SLOT_SIZE, System.nanoTime())) {
+            return Lookup.MISS;
+        }
+        int base = slot * SLOT_SIZE + DIGEST_OFFSET;
+        int difference = 0;
+        for (int i = 0; i < PasswordDigest.LENGTH; i++) {
+            difference |= segment.get(base + i) ^ digest[i];
+        }
+        return difference == 0 ? Lookup.MATCH : Lookup.MISMATCH;
+    }
+    
+    private boolean expired(ByteBuffer segment, int base, long now) {
+        return now - segment.getLong(base + STORED_AT_OFFSET) >= ttlNanos;
+    }
+    
+    /**
+     * @return slot index holding the email, or -1
+     */
+    private int find(ByteBuffer segment, String email, int hash) {
+        int mask = slotsPerSegment - 1;
+        int slot = hash & mask;
+        for (int probes = 0; probes < slotsPerSegment; probes++, slot = (slot + 1) & mask) {
+            int base = slot * SLOT_SIZE;
+            byte state = segment.get(base + STATE_OFFSET);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == OCCUPIED && segment.getInt(base + HASH_OFFSET) == hash && keyEquals(segment, base, email)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean keyEquals(ByteBuffer segment, int base, String email) {
+        int length = email.length();
+        if ((segment.get(base + LENGTH_OFFSET) & 0xFF) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (segment.get(base + EMAIL_OFFSET + i) != (byte) email.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public void put(String email, byte[] digest) {
+        int hash = hash(email);
+        if (hash == 0 || digest.length != PasswordDigest.LENGTH) {
+            return;
+        }
+        int segmentIndex = hash >>> 28;
+        ByteBuffer segment = segments[segmentIndex];
+        StampedLock lock = locks[segmentIndex];
+        
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(segment, email, hash);
+            if (slot < 0) {
+                if (used[segmentIndex] >= maxEntriesPerSegment) {
+                    makeRoom(segmentIndex);
+                }
+                slot = firstFree(segment, hash);
+                if (segment.get(slot * SLOT_SIZE + STATE_OFFSET) == DELETED) {
+                    tombstones[segmentIndex]--;
+                }
+                used[segmentIndex]++;
+                size.incrementAndGet();
+                int base = slot * SLOT_SIZE;
+                segment.putInt(base + HASH_OFFSET, hash);
+                segment.put(base + LENGTH_OFFSET, (byte) email.length());
+                for (int i = 0; i < email.length(); i++) {
+                    segment.put(base + EMAIL_OFFSET + i, (byte) email.charAt(i));
+                }
+                segment.put(base + STATE_OFFSET, OCCUPIED);
+            }
+            int base = slot * SLOT_SIZE;
+            for (int i = 0; i < PasswordDigest.LENGTH; i++) {
+                segment.put(base + DIGEST_OFFSET + i, digest[i]);
+            }
+            segment.putLong(base + STORED_AT_OFFSET, System.nanoTime());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * @return first EMPTY or DELETED slot on the email's probe chain
+     */
+    private int firstFree(ByteBuffer segment, int hash) {
+        int mask = slotsPerSegment - 1;
+        int slot = hash & mask;
+        while (segment.get(slot * SLOT_SIZE + STATE_OFFSET) == OCCUPIED) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    @Override
+    public void invalidate(String email) {
+        int hash = hash(email);
+        if (hash == 0) {
+            return;
+        }
+        int segmentIndex = hash >>> 28;
+        ByteBuffer segment = segments[segmentIndex];
+        StampedLock lock = locks[segmentIndex];
+        
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(segment, email, hash);
+            if (slot >= 0) {
+                delete(segmentIndex, slot);
+                compactIfNeeded(segmentIndex);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Frees room in a full segment: drops expired entries, then evicts under the clock hand;
+     * caller holds the write lock
+     */
+    private void makeRoom(int segmentIndex) {
+        ByteBuffer segment = segments[segmentIndex];
+        long now = System.nanoTime();
+        if (now - lastSweeps[segmentIndex] >= SWEEP_INTERVAL_NANOS) {
+            lastSweeps[segmentIndex] = now;
+            for (int slot = 0; slot < slotsPerSegment; slot++) {
+                int base = slot * SLOT_SIZE;
+                if (segment.get(base + STATE_OFFSET) == OCCUPIED && expired(segment, base, now)) {
+                    delete(segmentIndex, slot);
+                }
+            }
+        }
+        int mask = slotsPerSegment - 1;
+        while (used[segmentIndex] >= maxEntriesPerSegment) {
+            int slot = hands[segmentIndex];
+            hands[segmentIndex] = (slot + 1) & mask;
+            if (segment.get(slot * SLOT_SIZE + STATE_OFFSET) == OCCUPIED) {
+                delete(segmentIndex, slot);
+                Metrics.increment("cache.evictions");
+            }
+        }
+        compactIfNeeded(segmentIndex);
+    }
+    
+    /**
+     * Leaves a tombstone, which keeps probe chains intact until a put reuses the slot or the
+     * segment is compacted; caller holds the write lock
+     */
+    private void delete(int segmentIndex, int slot) {
+        segments[segmentIndex].put(slot * SLOT_SIZE + STATE_OFFSET, DELETED);
+        used[segmentIndex]--;
+        size.decrementAndGet();
+        tombstones[segmentIndex]++;
+    }
+    
+    private void compactIfNeeded(int segmentIndex) {
+        if (tombstones[segmentIndex] > slotsPerSegment / TOMBSTONE_DIVISOR) {
+            compact(segmentIndex);
+        }
+    }
+    
+    /**
+     * Rehashes the live entries of a segment in place so no tombstones remain; caller holds
+     * the write lock. Each live entry is lifted into the segment's scratch buffer and put back
+     * at the first free slot of its probe chain, swapping out an entry not yet moved if one
+     * is in the way, so nothing is copied to the heap.
+     */
+    private void compact(int segmentIndex) {
+        ByteBuffer segment = segments[segmentIndex];
+        ByteBuffer carry = scratch[segmentIndex];
+        for (int slot = 0; slot < slotsPerSegment; slot++) {
+            int base = slot * SLOT_SIZE;
+            byte state = segment.get(base + STATE_OFFSET);
+            if (state != EMPTY) {
+                segment.put(base + STATE_OFFSET, state == OCCUPIED ? MOVING : EMPTY);
+            }
+        }
+        
+        int mask = slotsPerSegment - 1;
+        for (int slot = 0; slot < slotsPerSegment; slot++) {
+            if (segment.get(slot * SLOT_SIZE + STATE_OFFSET) != MOVING) {
+                continue;
+            }
+            int held = 0;
+            carry.put(0, segment, slot * SLOT_SIZE, SLOT_SIZE);
+            segment.put(slot * SLOT_SIZE + STATE_OFFSET, EMPTY);
+            while (true) {
+                int target = carry.getInt(held + HASH_OFFSET) & mask;
+                while (segment.get(target * SLOT_SIZE + STATE_OFFSET) == OCCUPIED) {
+                    target = (target + 1) & mask;
+                }
+                int base = target * SLOT_SIZE;
+                boolean displaces = segment.get(base + STATE_OFFSET) == MOVING;
+                int other = SLOT_SIZE - held;
+                if (displaces) {
+                    carry.put(other, segment, base, SLOT_SIZE);
+                }
+                segment.put(base, carry, held, SLOT_SIZE);
+                segment.put(base + STATE_OFFSET, OCCUPIED);
+                if (!displaces) {
+                    break;
+                }
+                held = other;
+            }
+        }
+        tombstones[segmentIndex] = 0;
+        Metrics.increment("cache.offheap.compactions");
+    }
+    
+    /**
+     * @return tombstones left by invalidations, across all segments
+     */
+    int tombstoneCount() {
+        int total = 0;
+        for (int s = 0; s < SEGMENT_COUNT; s++) {
+            long stamp = locks[s].readLock();
+            try {
+                total += tombstones[s];
+            } finally {
+                locks[s].unlockRead(stamp);
+            }
+        }
+        return total;
+    }
+    
+    @Override
+    public int size() {
+        return size.get();
+    }
+    
+    @Override
+    public void forEach(BiConsumer<String, byte[]> action) {
+        byte[] emailBytes = new byte[MAX_EMAIL_BYTES];
+        long now = System.nanoTime();
+        for (int s = 0; s < SEGMENT_COUNT; s++) {
+            ByteBuffer segment = segments[s];
+            long stamp = locks[s].readLock();
+            try {
+                for (int slot = 0; slot < slotsPerSegment; slot++) {
+                    int base = slot * SLOT_SIZE;
+                    if (segment.get(base + STATE_OFFSET) != OCCUPIED || expired(segment, base, now)) {
+                        continue;
+                    }
+                    int length = segment.get(base + LENGTH_OFFSET) & 0xFF;
+                    segment.get(base + EMAIL_OFFSET, emailBytes, 0, length);
+                    byte[] digest = new byte[PasswordDigest.LENGTH];
+                    segment.get(base + DIGEST_OFFSET, digest);
+                    action.accept(new String(emailBytes, 0, length, StandardCharsets.US_ASCII), digest);
+                }
+            } finally {
+                locks[s].unlockRead(stamp);
+            }
+        }
+    }
+    
+    /**
+     * FNV-1a over the ASCII characters of the email, mixed so the top bits pick a segment
+     * @return hash, or 0 if the email cannot be stored (too long or not ASCII)
+     */
+    private static int hash(String email) {
+        int length = email.length();
+        if (length == 0 || length > MAX_EMAIL_BYTES) {
+            return 0;
+        }
+        int h = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            char c = email.charAt(i);
+            if (c > 0x7F) {
+                return 0;
+            }
+            h ^= c;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,44 @@
+package com.logintest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Fixed-width SHA-256 digests of passwords, used wherever credentials are
+ * kept outside the database (caches and snapshot files) so plain-text
+ * passwords never leave MySQL.
+ */
+public final class PasswordDigest {
+    
+    public static final int LENGTH = 32;
+    
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+    
+    private PasswordDigest() {
+    }
+    
+    /**
+     * Computes the digest of a password
+     * @param password - Plain-text password
+     * @return 32-byte SHA-256 digest
+     */
+    public static byte[] of(String password) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Constant-time comparison of two digests
+     */
+    public static boolean matches(byte[] expected, byte[] actual) {
+        return MessageDigest.isEqual(expected, actual);
+    }
+}
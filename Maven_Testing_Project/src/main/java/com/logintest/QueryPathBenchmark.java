@@ -0,0 +1,92 @@
+package com.logintest;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Measures the cost of the JDBC query path (pool borrow, prepared statement, driver round trip)
+ * against the same lookups on an InMemoryUserStore.
+ *
+ * Runs against the configured database; with -Ddb.profile=embedded it needs no MySQL server:
+ *   mvn exec:java -Dexec.mainClass="com.logintest.QueryPathBenchmark" -Ddb.profile=embedded -Dexec.args="1000 50000"
+ * Arguments: number of seeded users [1000], measured iterations per case [50000]
+ */
+public class QueryPathBenchmark {
+    
+    private static final String EMAIL_PREFIX = "bench";
+    private static final String EMAIL_DOMAIN = "@querypath.test";
+    
+    public static void main(String[] args) throws SQLException {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        
+        DatabaseHelper database = new DatabaseHelper();
+        database.connect();
+        InMemoryUserStore memory = new InMemoryUserStore();
+        try {
+            System.out.println("Seeding " + users + " users into " + database.getUrl());
+            for (int i = 0; i < users; i++) {
+                database.addUser(email(i), "Password" + i + "!");
+                memory.addUser(email(i), "Password" + i + "!");
+            }
+            
+            Map<String, Double> results = new LinkedHashMap<>();
+            results.put("in-memory getPassword (hit)", measure(iterations, i -> memory.getPassword(email(i % users))));
+            results.put("in-memory userExists (miss)", measure(iterations, i -> memory.userExists("missing" + i + EMAIL_DOMAIN)));
+            results.put("pool borrow + return", measure(iterations, i -> borrowAndReturn(database)));
+            results.put("jdbc SELECT 1", measure(iterations, i -> ping(database)));
+            results.put("jdbc getPassword (hit)", measure(iterations, i -> database.getPassword(email(i % users))));
+            results.put("jdbc userExists (miss)", measure(iterations, i -> database.userExists("missing" + i + EMAIL_DOMAIN)));
+            
+            System.out.println();
+            System.out.printf("%-32s %12s%n", "case", "ns/op");
+            results.forEach((name, nanos) -> System.out.printf("%-32s %12.0f%n", name, nanos));
+            System.out.printf("%nJDBC query-path overhead per lookup: %.0f ns%n",
+                    results.get("jdbc getPassword (hit)") - results.get("in-memory getPassword (hit)"));
+        } finally {
+            for (int i = 0; i < users; i++) {
+                database.removeUser(email(i));
+            }
+            database.disconnect();
+        }
+        System.exit(0);
+    }
+    
+    /**
+     * Runs an operation for a warm-up pass and a measured pass
+     * @return mean nanoseconds per operation in the measured pass
+     */
+    private static double measure(int iterations, IntConsumer operation) {
+        for (int i = 0; i < Math.min(iterations, 10_000); i++) {
+            operation.accept(i);
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.accept(i);
+        }
+        return (double) (System.nanoTime() - started) / iterations;
+    }
+    
+    private static void borrowAndReturn(DatabaseHelper database) {
+        try (Connection connection = database.getConnection()) {
+            connection.getAutoCommit();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static void ping(DatabaseHelper database) {
+        try {
+            database.ping();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static String email(int index) {
+        return EMAIL_PREFIX + index + EMAIL_DOMAIN;
+    }
+}
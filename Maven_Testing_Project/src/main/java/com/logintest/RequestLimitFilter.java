@@ -0,0 +1,125 @@
+package com.logintest;
+
+import com.google.gson.Gson;
+import spark.Filter;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static spark.Spark.halt;
+
+/**
+ * Rejects oversized or malformed POST bodies before any buffering or JSON parsing.
+ *
+ * Checks run cheapest first: Content-Type, declared Content-Length, then a bounded read
+ * of the raw stream (covers chunked requests without a Content-Length). The accepted body
+ * is stored as a request attribute; handlers read it through {@link #body(Request)}.
+ * Streaming endpoints are exempted by path and read {@link #rawBody(Request)} themselves.
+ */
+public class RequestLimitFilter implements Filter {
+    
+    public static final int MAX_BODY_BYTES = AppConfig.getInt("api.maxBodyBytes", 1024);
+    
+    private static final String BODY_ATTRIBUTE = "com.logintest.body";
+    
+    private final Gson gson;
+    private final Set<String> exemptPaths;
+    
+    /**
+     * @param exemptPaths - Paths that do their own bounded reading of the body
+     */
+    public RequestLimitFilter(Gson gson, String... exemptPaths) {
+        this.gson = gson;
+        this.exemptPaths = new HashSet<>(Arrays.asList(exemptPaths));
+    }
+    
+    @Override
+    public void handle(Request req, Response res) throws IOException {
+        if (!"POST".equals(req.requestMethod()) || exemptPaths.contains(req.pathInfo())) {
+            return;
+        }
+        
+        String contentType = req.contentType();
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("application/json")) {
+            reject(res, 415, "Content-Type must be application/json");
+        }
+        
+        long declaredLength = req.raw().getContentLengthLong();
+        if (declaredLength > MAX_BODY_BYTES) {
+            reject(res, 413, "Request body too large");
+        }
+        
+        byte[] body = readBounded(unwrap(req.raw()).getInputStream());
+        if (body == null) {
+            reject(res, 413, "Request body too large");
+        }
+        if (!startsWithObject(body)) {
+            reject(res, 400, "Malformed request body");
+        }
+        
+        req.attribute(BODY_ATTRIBUTE, new String(body, StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Returns the body accepted by the filter (falls back to Spark's buffered body)
+     */
+    public static String body(Request req) {
+        String body = req.attribute(BODY_ATTRIBUTE);
+        return body != null ? body : req.body();
+    }
+    
+    /**
+     * @return the container's body stream, for exempt endpoints that read the body incrementally
+     */
+    public static InputStream rawBody(Request req) throws IOException {
+        return unwrap(req.raw()).getInputStream();
+    }
+    
+    /**
+     * Reads at most MAX_BODY_BYTES
+     * @return the body, or null if the stream holds more than the limit
+     */
+    private static byte[] readBounded(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+        return body.length > MAX_BODY_BYTES ? null : body;
+    }
+    
+    private static boolean startsWithObject(byte[] body) {
+        for (byte b : body) {
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return b == '{';
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Spark's request wrapper buffers the whole body on first access; read the container's stream instead
+     */
+    private static ServletRequest unwrap(ServletRequest request) {
+        while (request instanceof ServletRequestWrapper) {
+            request = ((ServletRequestWrapper) request).getRequest();
+        }
+        return request;
+    }
+    
+    private void reject(Response res, int status, String message) {
+        Metrics.increment("api.rejected." + status);
+        res.type("application/json");
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", message);
+        halt(status, gson.toJson(errorResponse));
+    }
+}
@@ -0,0 +1,283 @@
+package com.logintest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * Admission control ahead of the API handlers. Requests are grouped into route classes in
+ * priority order (health, login, register, admin); at most scheduler.maxConcurrent run at once,
+ * and each class also has its own concurrency quota, so a registration burst (up to three
+ * database round trips each) holds at most scheduler.register.maxConcurrent workers.
+ *
+ * Requests that cannot run yet wait in their class's FIFO queue; a freed slot goes to the
+ * highest-priority class that may run. When the queues are full, the newest request of the
+ * lowest-priority class below the arrival is shed (503), or the arrival itself if there is none.
+ * Waiting counts against the request's {@link Deadline}.
+ *
+ * Per class: gauges scheduler.(class).queued, .active and .wait (queue wait histogram),
+ * counters scheduler.(class).shed and .expired.
+ */
+public class RequestScheduler {
+    
+    /**
+     * Route classes, highest priority first
+     */
+    public enum RouteClass {
+        HEALTH, LOGIN, REGISTER, ADMIN;
+        
+        String metricName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+    
+    private static final int CLASSES = RouteClass.values().length;
+    
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final int[] classConcurrency;
+    private final int[] classQueue;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int[] active = new int[CLASSES];
+    private final List<ArrayDeque<Waiter>> queues = new ArrayList<>(CLASSES);
+    private final LatencyHistogram[] waits = new LatencyHistogram[CLASSES];
+    private int running;
+    private int queued;
+    
+    /**
+     * Uses the scheduler.* settings
+     */
+    public RequestScheduler() {
+        this(AppConfig.getInt("scheduler.maxConcurrent", 2 * AppConfig.getInt("db.pool.size", 10)),
+                AppConfig.getInt("scheduler.maxQueued", 100));
+    }
+    
+    private RequestScheduler(int maxConcurrent, int maxQueued) {
+        this(maxConcurrent, maxQueued,
+                new int[] {
+                    AppConfig.getInt("scheduler.health.maxConcurrent", 4),
+                    AppConfig.getInt("scheduler.login.maxConcurrent", maxConcurrent),
+                    AppConfig.getInt("scheduler.register.maxConcurrent", 2),
+                    AppConfig.getInt("scheduler.admin.maxConcurrent", 2)},
+                new int[] {
+                    AppConfig.getInt("scheduler.health.maxQueued", 16),
+                    AppConfig.getInt("scheduler.login.maxQueued", maxQueued),
+                    AppConfig.getInt("scheduler.register.maxQueued", 20),
+                    AppConfig.getInt("scheduler.admin.maxQueued", 4)});
+    }
+    
+    /**
+     * @param maxConcurrent - Requests running at once, all classes together
+     * @param maxQueued - Requests waiting, all classes together
+     * @param classConcurrency - Running requests per class, in RouteClass order
+     * @param classQueue - Waiting requests per class, in RouteClass order
+     */
+    RequestScheduler(int maxConcurrent, int maxQueued, int[] classConcurrency, int[] classQueue) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.classConcurrency = classConcurrency.clone();
+        this.classQueue = classQueue.clone();
+        for (RouteClass routeClass : RouteClass.values()) {
+            int index = routeClass.ordinal();
+            queues.add(new ArrayDeque<>());
+            waits[index] = new LatencyHistogram();
+            String prefix = "scheduler." + routeClass.metricName();
+            Metrics.gauge(prefix + ".queued", () -> queued(routeClass));
+            Metrics.gauge(prefix + ".active", () -> locked(() -> active[index]));
+            Metrics.gauge(prefix + ".wait", waits[index]::summary);
+        }
+    }
+    
+    /**
+     * Waits until a request of the class may run
+     * @return permit to close when the request has finished
+     * @throws ShedException if the request was turned away to make room or the queues are full
+     * @throws Deadline.ExceededException if the request's deadline passed while it waited
+     */
+    public Permit acquire(RouteClass routeClass) {
+        int index = routeClass.ordinal();
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (queues.get(index).isEmpty() && canRun(index)) {
+                grant(index);
+                waits[index].record(0);
+                return new Permit(index);
+            }
+            if (queues.get(index).size() >= classQueue[index] || (queued >= maxQueued && !shedBelow(index))) {
+                throw shed(index);
+            }
+            waiter = new Waiter(lock.newCondition());
+            queues.get(index).addLast(waiter);
+            queued++;
+            
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(Deadline.remainingMillis());
+            while (waiter.state == Waiter.WAITING) {
+                if (remainingNanos <= 0) {
+                    remove(index, waiter);
+                    Metrics.increment("scheduler." + routeClass.metricName() + ".expired");
+                    throw new Deadline.ExceededException("queue");
+                }
+                try {
+                    remainingNanos = waiter.signal.awaitNanos(remainingNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (waiter.state == Waiter.WAITING) {
+                        remove(index, waiter);
+                        throw shed(index);
+                    }
+                }
+            }
+            if (waiter.state == Waiter.SHED) {
+                throw new ShedException(routeClass);
+            }
+        } finally {
+            lock.unlock();
+        }
+        waits[index].record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - waiter.enqueuedAt));
+        return new Permit(index);
+    }
+    
+    private boolean canRun(int index) {
+        return running < maxConcurrent && active[index] < classConcurrency[index];
+    }
+    
+    private void grant(int index) {
+        running++;
+        active[index]++;
+    }
+    
+    /**
+     * Sheds the newest waiter of the lowest-priority class below the given one
+     * @return false if no such waiter exists
+     */
+    private boolean shedBelow(int index) {
+        for (int lower = CLASSES - 1; lower > index; lower--) {
+            Waiter victim = queues.get(lower).pollLast();
+            if (victim != null) {
+                queued--;
+                victim.state = Waiter.SHED;
+                victim.signal.signal();
+                Metrics.increment("scheduler." + RouteClass.values()[lower].metricName() + ".shed");
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private ShedException shed(int index) {
+        RouteClass routeClass = RouteClass.values()[index];
+        Metrics.increment("scheduler." + routeClass.metricName() + ".shed");
+        return new ShedException(routeClass);
+    }
+    
+    private void remove(int index, Waiter waiter) {
+        Iterator<Waiter> it = queues.get(index).iterator();
+        while (it.hasNext()) {
+            if (it.next() == waiter) {
+                it.remove();
+                queued--;
+                return;
+            }
+        }
+    }
+    
+    private void release(int index) {
+        lock.lock();
+        try {
+            running--;
+            active[index]--;
+            // Hand freed slots to waiters, highest priority first
+            for (int next = 0; next < CLASSES; next++) {
+                while (!queues.get(next).isEmpty() && canRun(next)) {
+                    Waiter waiter = queues.get(next).pollFirst();
+                    queued--;
+                    grant(next);
+                    waiter.state = Waiter.GRANTED;
+                    waiter.signal.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * @return requests of the class waiting for their turn
+     */
+    int queued(RouteClass routeClass) {
+        return locked(() -> queues.get(routeClass.ordinal()).size());
+    }
+    
+    private int locked(IntSupplier read) {
+        lock.lock();
+        try {
+            return read.getAsInt();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Right to run one request; close it (once or more) when the request has finished
+     */
+    public final class Permit implements AutoCloseable {
+        
+        private final int index;
+        private boolean closed;
+        
+        private Permit(int index) {
+            this.index = index;
+        }
+        
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(index);
+            }
+        }
+    }
+    
+    /**
+     * Thrown when a request is turned away; LoginAPI answers it with 503
+     */
+    public static class ShedException extends RuntimeException {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final RouteClass routeClass;
+        
+        public ShedException(RouteClass routeClass) {
+            super("Request shed (" + routeClass.metricName() + ")");
+            this.routeClass = routeClass;
+        }
+        
+        public RouteClass getRouteClass() {
+            return routeClass;
+        }
+    }
+    
+    private static final class Waiter {
+        
+        static final int WAITING = 0;
+        static final int GRANTED = 1;
+        static final int SHED = 2;
+        
+        final Condition signal;
+        final long enqueuedAt = System.nanoTime();
+        // Guarded by the scheduler's lock
+        int state = WAITING;
+        
+        Waiter(Condition signal) {
+            this.signal = signal;
+        }
+    }
+}
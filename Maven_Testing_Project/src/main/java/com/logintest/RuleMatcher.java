@@ -0,0 +1,230 @@
+package com.logintest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Immutable matcher for the validation blacklist, compiled from a rule file into one
+ * Aho-Corasick automaton, so every pattern is checked in a single pass over the input.
+ * Matching is ASCII case-insensitive and allocates nothing.
+ *
+ * Rule file format: "[sql]", "[xss]" or "[html]" starts a section, every other non-blank
+ * line is a pattern. Lines starting with '#' are comments. In patterns, "\s" stands for a
+ * space (so trailing spaces survive editors), "\#" for a leading '#' and "\\" for '\'.
+ */
+public final class RuleMatcher {
+    
+    private static final int ALPHABET = 128;
+    private static final int NO_RULE = -1;
+    
+    private final String[] categories;
+    private final String[] patterns;
+    private final LongAdder[] matchCounts;
+    // Complete transition table: transitions[state * ALPHABET + c]
+    private final int[] transitions;
+    // Rule matched when the automaton is in a state (its own pattern or a suffix's), or NO_RULE
+    private final int[] matchedRule;
+    
+    private RuleMatcher(String[] categories, String[] patterns, LongAdder[] matchCounts,
+                        int[] transitions, int[] matchedRule) {
+        this.categories = categories;
+        this.patterns = patterns;
+        this.matchCounts = matchCounts;
+        this.transitions = transitions;
+        this.matchedRule = matchedRule;
+    }
+    
+    /**
+     * Parses and compiles a rule file
+     * @param rules - Rule file contents
+     * @param counters - Match counters by "category:pattern", shared across reloads so counts survive a swap
+     * @throws IllegalArgumentException if the file has no rules or a rule is malformed
+     */
+    public static RuleMatcher compile(Reader rules, Map<String, LongAdder> counters) throws IOException {
+        List<String> categories = new ArrayList<>();
+        List<String> patterns = new ArrayList<>();
+        String category = null;
+        BufferedReader reader = new BufferedReader(rules);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("[") && line.trim().endsWith("]")) {
+                category = line.trim().substring(1, line.trim().length() - 1).trim().toLowerCase(Locale.ROOT);
+                continue;
+            }
+            if (category == null) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": pattern outside a [section]");
+            }
+            String pattern = unescape(line, lineNumber).toLowerCase(Locale.ROOT);
+            for (int i = 0; i < pattern.length(); i++) {
+                if (pattern.charAt(i) >= ALPHABET) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": only ASCII patterns are supported");
+                }
+            }
+            categories.add(category);
+            patterns.add(pattern);
+        }
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("Rule file contains no patterns");
+        }
+        
+        LongAdder[] matchCounts = new LongAdder[patterns.size()];
+        for (int i = 0; i < matchCounts.length; i++) {
+            matchCounts[i] = counters.computeIfAbsent(categories.get(i) + ":" + patterns.get(i), key -> new LongAdder());
+        }
+        return build(categories.toArray(new String[0]), patterns.toArray(new String[0]), matchCounts);
+    }
+    
+    /**
+     * @return true if the input contains any pattern (the match is counted against its rule)
+     */
+    public boolean matches(CharSequence input) {
+        int rule = firstMatch(input);
+        if (rule == NO_RULE) {
+            return false;
+        }
+        matchCounts[rule].increment();
+        return true;
+    }
+    
+    /**
+     * @return index of the rule that matches earliest in the input, or -1; not counted
+     */
+    public int firstMatch(CharSequence input) {
+        int state = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            char lower = c < ALPHABET ? asciiLower(c) : Character.toLowerCase(c);
+            // Patterns are ASCII, so any other character restarts matching
+            state = lower < ALPHABET ? transitions[state * ALPHABET + lower] : 0;
+            if (matchedRule[state] != NO_RULE) {
+                return matchedRule[state];
+            }
+        }
+        return NO_RULE;
+    }
+    
+    public int getRuleCount() {
+        return patterns.length;
+    }
+    
+    /**
+     * @return "category:pattern" of a rule
+     */
+    public String describe(int rule) {
+        return categories[rule] + ":" + patterns[rule];
+    }
+    
+    /**
+     * @return number of rules per category
+     */
+    public Map<String, Integer> getCategoryCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String category : categories) {
+            counts.merge(category, 1, Integer::sum);
+        }
+        return counts;
+    }
+    
+    /**
+     * Builds the trie, then fills in failure transitions breadth-first so every
+     * (state, char) pair has a direct next state
+     */
+    private static RuleMatcher build(String[] categories, String[] patterns, LongAdder[] matchCounts) {
+        int maxStates = 1;
+        for (String pattern : patterns) {
+            maxStates += pattern.length();
+        }
+        int[] transitions = new int[maxStates * ALPHABET];
+        Arrays.fill(transitions, -1);
+        int[] matchedRule = new int[maxStates];
+        Arrays.fill(matchedRule, NO_RULE);
+        int states = 1;
+        
+        for (int rule = 0; rule < patterns.length; rule++) {
+            int state = 0;
+            for (char c : patterns[rule].toCharArray()) {
+                int index = state * ALPHABET + c;
+                if (transitions[index] < 0) {
+                    transitions[index] = states++;
+                }
+                state = transitions[index];
+            }
+            if (matchedRule[state] == NO_RULE) {
+                matchedRule[state] = rule;
+            }
+        }
+        
+        int[] failure = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = transitions[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                failure[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            if (matchedRule[state] == NO_RULE) {
+                matchedRule[state] = matchedRule[failure[state]];
+            }
+            for (int c = 0; c < ALPHABET; c++) {
+                int index = state * ALPHABET + c;
+                int next = transitions[index];
+                int fallback = transitions[failure[state] * ALPHABET + c];
+                if (next < 0) {
+                    transitions[index] = fallback;
+                } else {
+                    failure[next] = fallback;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return new RuleMatcher(categories, patterns, matchCounts,
+                Arrays.copyOf(transitions, states * ALPHABET), Arrays.copyOf(matchedRule, states));
+    }
+    
+    private static String unescape(String line, int lineNumber) {
+        StringBuilder pattern = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c != '\\') {
+                pattern.append(c);
+                continue;
+            }
+            if (++i == line.length()) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": dangling '\\'");
+            }
+            char escaped = line.charAt(i);
+            if (escaped == 's') {
+                pattern.append(' ');
+            } else if (escaped == '#' || escaped == '\\') {
+                pattern.append(escaped);
+            } else {
+                throw new IllegalArgumentException("Line " + lineNumber + ": unknown escape \\" + escaped);
+            }
+        }
+        return pattern.toString();
+    }
+    
+    private static char asciiLower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -0,0 +1,148 @@
+package com.logintest;
+
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory login sessions. A successful HTTP login issues an opaque token; co-located
+ * gateways verify it over the binary protocol instead of re-checking the password.
+ *
+ * Settings: session.ttlSeconds (1800) and session.maxEntries (100000). Tokens are also kept
+ * in issue order; since every session has the same lifetime, expired sessions sit at the
+ * front and are dropped as new ones are issued. When full, the oldest live sessions are
+ * evicted (counted in sessions.evicted) until 1% of the capacity is free.
+ */
+public class SessionRegistry {
+    
+    private static final int TOKEN_BYTES = 24;
+    
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Guarded by itself; may still hold revoked tokens, which are skipped when they reach the front
+    private final Deque<String> issueOrder = new ArrayDeque<>();
+    
+    public SessionRegistry() {
+        this(AppConfig.getLong("session.ttlSeconds", 1800) * 1000, AppConfig.getInt("session.maxEntries", 100_000));
+    }
+    
+    /**
+     * @param ttlMillis - How long a session stays valid
+     * @param maxEntries - Sessions kept before eviction
+     */
+    public SessionRegistry(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+    
+    /**
+     * Starts a session for an authenticated user
+     * @param email - Normalized email
+     * @return the session token (URL-safe Base64)
+     */
+    public String issue(String email) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        long now = System.currentTimeMillis();
+        synchronized (issueOrder) {
+            dropEnded(now);
+            if (sessions.size() >= maxEntries) {
+                makeRoom();
+            }
+            sessions.put(token, new Session(email, now + ttlMillis));
+            issueOrder.addLast(token);
+        }
+        Metrics.increment("sessions.issued");
+        return token;
+    }
+    
+    /**
+     * @return the session's email, or null if the token is unknown or expired
+     */
+    public String verify(String token) {
+        Session session = token == null ? null : sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        if (session.expiresAt <= System.currentTimeMillis()) {
+            sessions.remove(token, session);
+            return null;
+        }
+        return session.email;
+    }
+    
+    /**
+     * Ends a session
+     * @return true if the token was active
+     */
+    public boolean revoke(String token) {
+        return token != null && sessions.remove(token) != null;
+    }
+    
+    /**
+     * Ends every session of a user; scans all sessions, so meant for account removal
+     * @param email - Normalized email
+     * @return number of sessions ended
+     */
+    public int revokeAll(String email) {
+        int[] revoked = {0};
+        sessions.values().removeIf(session -> {
+            boolean match = session.email.equals(email);
+            if (match) {
+                revoked[0]++;
+            }
+            return match;
+        });
+        return revoked[0];
+    }
+    
+    public int size() {
+        return sessions.size();
+    }
+    
+    /**
+     * Removes expired and revoked sessions from the front of the issue order; caller holds issueOrder
+     */
+    private void dropEnded(long now) {
+        String oldest;
+        while ((oldest = issueOrder.peekFirst()) != null) {
+            Session session = sessions.get(oldest);
+            if (session != null && session.expiresAt > now) {
+                return;
+            }
+            issueOrder.pollFirst();
+            if (session != null) {
+                sessions.remove(oldest, session);
+            }
+        }
+    }
+    
+    /**
+     * Evicts the oldest sessions until 1% of the capacity is free; caller holds issueOrder
+     */
+    private void makeRoom() {
+        int target = maxEntries - Math.max(1, maxEntries / 100);
+        String oldest;
+        while (sessions.size() > target && (oldest = issueOrder.pollFirst()) != null) {
+            if (sessions.remove(oldest) != null) {
+                Metrics.increment("sessions.evicted");
+            }
+        }
+    }
+    
+    private static final class Session {
+        private final String email;
+        private final long expiresAt;
+        
+        Session(String email, long expiresAt) {
+            this.email = email;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
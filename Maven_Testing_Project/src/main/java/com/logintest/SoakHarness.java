@@ -0,0 +1,329 @@
+package com.logintest;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Long-running soak test for LoginAPI with heap, GC, thread, pool and latency trend reporting.
+ *
+ * Starts the API in-process over a stand-in store (embedded H2 through DatabaseHelper, or an
+ * InMemoryUserStore), seeds synthetic users and drives a steady mixed login workload. Every
+ * interval it appends one row to a CSV time series; at the end it fits a least-squares line to
+ * each series (after the warm-up share of the run) and flags those that keep rising.
+ * Exits with status 1 when a trend is flagged.
+ *
+ * Usage:
+ *   mvn exec:java -Dexec.mainClass="com.logintest.SoakHarness" -Dexec.args="--duration 3600 --interval 10"
+ *
+ * Options (defaults in brackets):
+ *   --duration s [600]       --interval s [10]       --rate requests/s [100]
+ *   --store embedded|memory [embedded]              --users [10000]
+ *   --mix [valid=70,invalid=15,injection=10,unknown=5]            --seed [42]
+ *   --warmup-fraction [0.2]  --growth-tolerance [0.10]            --out [soak-report.csv]
+ */
+public class SoakHarness {
+    
+    private static final String[] COLUMNS = {
+        "elapsedSeconds", "heapAfterGcBytes", "gcPauseMs", "gcCount", "threads", "poolOpen", "poolActive",
+        "cacheEntries", "requests", "errors", "p50Micros", "p99Micros", "maxMicros"
+    };
+    
+    // Series checked for upward trends, with the smallest absolute growth worth flagging
+    private static final Map<String, Double> TRENDED = new LinkedHashMap<>();
+    
+    static {
+        TRENDED.put("heapAfterGcBytes", 8.0 * 1024 * 1024);
+        TRENDED.put("threads", 2.0);
+        TRENDED.put("poolOpen", 1.0);
+        TRENDED.put("cacheEntries", 100.0);
+        TRENDED.put("p99Micros", 1000.0);
+    }
+    
+    private final Map<String, String> options;
+    private final Gson gson = new Gson();
+    private final AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+    private final LongAdder errors = new LongAdder();
+    
+    private long lastGcCount;
+    private long lastGcMillis;
+    
+    public SoakHarness(Map<String, String> options) {
+        this.options = options;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        List<String> flagged = new SoakHarness(LoadGenerator.parseArgs(args)).run();
+        System.exit(flagged.isEmpty() ? 0 : 1);
+    }
+    
+    /**
+     * Runs the soak and writes the time series
+     * @return descriptions of the series that kept rising
+     */
+    public List<String> run() throws Exception {
+        long durationNanos = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "600"))).toNanos();
+        long intervalNanos = Duration.ofSeconds(Long.parseLong(options.getOrDefault("interval", "10"))).toNanos();
+        double rate = Double.parseDouble(options.getOrDefault("rate", "100"));
+        int users = Integer.parseInt(options.getOrDefault("users", "10000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        Path out = Paths.get(options.getOrDefault("out", "soak-report.csv"));
+        
+        UserStore store = "memory".equals(options.getOrDefault("store", "embedded"))
+                ? new InMemoryUserStore()
+                : new DatabaseHelper(EmbeddedDatabase.url("soak"), "sa", "");
+        LoginService service = new LoginService(store);
+        service.initialize();
+        List<String[]> credentials = seed(store, users, seed);
+        CredentialMix mix = new CredentialMix(credentials,
+                CredentialMix.parseWeights(options.getOrDefault("mix", "valid=70,invalid=15,injection=10,unknown=5")), seed);
+        
+        Path snapshot = Files.createTempFile("soak", ".snapshot");
+        Files.delete(snapshot);
+        LoginAPI.start(service, 0, snapshot);
+        URI uri = URI.create("http://localhost:" + LoginAPI.getPort() + "/api/login");
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        
+        System.out.printf("Soaking %s at %.0f req/s for %d s, sampling every %d s into %s%n", uri, rate,
+                durationNanos / 1_000_000_000L, intervalNanos / 1_000_000_000L, out);
+        sampleGc();
+        List<double[]> samples = new ArrayList<>();
+        try (BufferedWriter writer = Files.newBufferedWriter(out)) {
+            writer.write(String.join(",", COLUMNS));
+            writer.newLine();
+            
+            long start = System.nanoTime();
+            long end = start + durationNanos;
+            long nextSample = start + intervalNanos;
+            long intended = start;
+            long gapNanos = (long) (1_000_000_000L / Math.max(rate, 0.001));
+            while (intended < end) {
+                long now = System.nanoTime();
+                if (now >= nextSample) {
+                    double[] sample = sample((now - start) / 1e9, store, service);
+                    samples.add(sample);
+                    writeRow(writer, sample);
+                    nextSample += intervalNanos;
+                    continue;
+                }
+                if (intended > now) {
+                    LockSupport.parkNanos(Math.min(intended, nextSample) - now);
+                    continue;
+                }
+                CredentialMix.Kind kind = mix.nextKind();
+                send(client, uri, mix.next(kind), intended);
+                intended += gapNanos;
+            }
+        } finally {
+            LoginAPI.shutdown();
+            Files.deleteIfExists(snapshot);
+        }
+        
+        List<String> flagged = findTrends(samples);
+        System.out.println();
+        System.out.println("=== Soak Report (" + samples.size() + " samples, " + out.toAbsolutePath() + ") ===");
+        if (flagged.isEmpty()) {
+            System.out.println("No upward trends detected");
+        } else {
+            flagged.forEach(trend -> System.out.println("RISING: " + trend));
+        }
+        return flagged;
+    }
+    
+    /**
+     * Seeds synthetic users into the store
+     * @return their credentials, for the workload
+     */
+    private static List<String[]> seed(UserStore store, int users, long seed) throws Exception {
+        UserDatasetGenerator generator = new UserDatasetGenerator(seed, "example.com=60,mail.test=40", "6-14=100", false);
+        if (store instanceof DatabaseHelper) {
+            ((DatabaseHelper) store).addUsers(generator.users(users), 1000);
+        } else {
+            Iterator<String[]> rows = generator.users(users);
+            while (rows.hasNext()) {
+                String[] user = rows.next();
+                store.addUser(user[0], user[1]);
+            }
+        }
+        List<String[]> credentials = new ArrayList<>(users);
+        generator.users(users).forEachRemaining(credentials::add);
+        return credentials;
+    }
+    
+    private void send(HttpClient client, URI uri, String[] credential, long intendedNanos) {
+        Map<String, String> body = new HashMap<>();
+        body.put("email", credential[0]);
+        body.put("password", credential[1]);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body)))
+                .build();
+        
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            if (failure != null || response.statusCode() >= 500) {
+                errors.increment();
+                return;
+            }
+            // Measured from the intended start, so server stalls are not hidden
+            interval.get().record((System.nanoTime() - intendedNanos) / 1000);
+        });
+    }
+    
+    /**
+     * @return one row of COLUMNS for the interval that just ended
+     */
+    private double[] sample(double elapsedSeconds, UserStore store, LoginService service) {
+        LatencyHistogram latency = interval.getAndSet(new LatencyHistogram());
+        long[] gc = sampleGc();
+        ConnectionPool pool = store instanceof DatabaseHelper ? ((DatabaseHelper) store).getPool() : null;
+        return new double[] {
+            Math.round(elapsedSeconds),
+            heapAfterGc(),
+            gc[1],
+            gc[0],
+            ManagementFactory.getThreadMXBean().getThreadCount(),
+            pool != null ? pool.getOpenCount() : 0,
+            pool != null ? pool.getActiveCount() : 0,
+            service.getCachedCredentialCount(),
+            latency.getCount(),
+            errors.sumThenReset(),
+            latency.getPercentile(50),
+            latency.getPercentile(99),
+            latency.getMax()
+        };
+    }
+    
+    /**
+     * @return heap in use right after the most recent collection of each heap pool,
+     *         which excludes garbage without forcing a GC
+     */
+    private static long heapAfterGc() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && afterGc != null) {
+                used += afterGc.getUsed();
+            }
+        }
+        return used;
+    }
+    
+    /**
+     * @return {collections, pause milliseconds} since the previous call
+     */
+    private long[] sampleGc() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        long[] delta = {count - lastGcCount, millis - lastGcMillis};
+        lastGcCount = count;
+        lastGcMillis = millis;
+        return delta;
+    }
+    
+    private static void writeRow(BufferedWriter writer, double[] sample) throws IOException {
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < sample.length; i++) {
+            row.append(i == 0 ? "" : ",").append((long) sample[i]);
+        }
+        writer.write(row.toString());
+        writer.newLine();
+        writer.flush();
+        System.out.println(row);
+    }
+    
+    /**
+     * Fits a line to each trended series after the warm-up share of the run. A series is
+     * flagged when its fitted growth over that window exceeds both its minimum absolute
+     * growth and the growth tolerance relative to its mean.
+     */
+    private List<String> findTrends(List<double[]> samples) {
+        double warmupFraction = Double.parseDouble(options.getOrDefault("warmup-fraction", "0.2"));
+        double tolerance = Double.parseDouble(options.getOrDefault("growth-tolerance", "0.10"));
+        List<double[]> steady = samples.subList((int) (samples.size() * warmupFraction), samples.size());
+        List<String> flagged = new ArrayList<>();
+        if (steady.size() < 3) {
+            System.out.println("Too few samples after warm-up to judge trends");
+            return flagged;
+        }
+        
+        double[] time = column(steady, 0);
+        double window = time[time.length - 1] - time[0];
+        for (int c = 1; c < COLUMNS.length; c++) {
+            Double minimumGrowth = TRENDED.get(COLUMNS[c]);
+            if (minimumGrowth == null) {
+                continue;
+            }
+            double[] values = column(steady, c);
+            double growth = slope(time, values) * window;
+            double mean = mean(values);
+            if (growth > minimumGrowth && growth > tolerance * mean) {
+                flagged.add(String.format("%s grew by %.0f over %.0f s (mean %.0f, %.1f%%)",
+                        COLUMNS[c], growth, window, mean, mean == 0 ? 100.0 : 100 * growth / mean));
+            }
+        }
+        return flagged;
+    }
+    
+    private static double[] column(List<double[]> samples, int index) {
+        double[] values = new double[samples.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = samples.get(i)[index];
+        }
+        return values;
+    }
+    
+    /**
+     * @return least-squares slope of y over x
+     */
+    static double slope(double[] x, double[] y) {
+        double meanX = mean(x);
+        double meanY = mean(y);
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < x.length; i++) {
+            covariance += (x[i] - meanX) * (y[i] - meanY);
+            variance += (x[i] - meanX) * (x[i] - meanX);
+        }
+        return variance == 0 ? 0 : covariance / variance;
+    }
+    
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return values.length == 0 ? 0 : sum / values.length;
+    }
+}
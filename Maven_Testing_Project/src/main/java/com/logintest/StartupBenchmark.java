@@ -0,0 +1,145 @@
+package com.logintest;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures time from process start to the first served login of the fast-start packaging,
+ * with and without its AppCDS archive. Every run starts target/login-api.jar over the
+ * embedded database on a free port, sends a login every few milliseconds until one is
+ * answered, then reads the server's own timeline from /api/startup.
+ *
+ * Usage (after mvn -Pfast-start -DskipTests package):
+ *   mvn exec:java -Dexec.mainClass="com.logintest.StartupBenchmark" -Dexec.args="5 -Dwarmup.background=true"
+ * Arguments: runs per mode [5], then any JVM options for the server
+ */
+public class StartupBenchmark {
+    
+    private static final Path TARGET = Paths.get("target");
+    private static final String LOGIN = "{\"email\":\"test@example.com\",\"password\":\"Password123!\"}";
+    
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        List<String> options = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : List.of();
+        if (!Files.exists(TARGET.resolve("login-api.jar")) || !Files.exists(TARGET.resolve("login-api.jsa"))) {
+            System.err.println("Build the fast-start packaging first: mvn -Pfast-start -DskipTests package");
+            System.exit(1);
+        }
+        
+        System.out.printf("%-12s %18s %18s %12s%n", "mode", "first login (wall)", "first login (jvm)", "ready (jvm)");
+        for (boolean appCds : new boolean[] {false, true}) {
+            List<Long> wall = new ArrayList<>();
+            List<Long> firstLogin = new ArrayList<>();
+            List<Long> ready = new ArrayList<>();
+            for (int run = 0; run < runs; run++) {
+                long[] result = run(appCds, options);
+                wall.add(result[0]);
+                firstLogin.add(result[1]);
+                ready.add(result[2]);
+            }
+            System.out.printf("%-12s %15d ms %15d ms %9d ms%n", appCds ? "jar+appcds" : "jar",
+                    median(wall), median(firstLogin), median(ready));
+        }
+        Log.flush(1000);
+    }
+    
+    /**
+     * @return {wall-clock ms to the first answered login, first_login and ready phases in ms (-1 if absent)}
+     */
+    private static long[] run(boolean appCds, List<String> options) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Path snapshot = Files.createTempFile("startup-benchmark", ".snapshot");
+        Files.delete(snapshot);
+        
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (appCds) {
+            command.add("-XX:SharedArchiveFile=" + TARGET.resolve("login-api.jsa"));
+        }
+        command.addAll(options);
+        command.addAll(List.of("-Ddb.profile=embedded", "-Dapi.port=" + port, "-Dcache.snapshot=" + snapshot,
+                "-Dvalidation.watch=false", "-jar", TARGET.resolve("login-api.jar").toString()));
+        
+        long started = System.nanoTime();
+        // Started from the working directory with target/login-api.jar, the classpath the archive was trained with
+        Process server = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            String base = "http://localhost:" + port;
+            while (!answered(base + "/api/login")) {
+                if (!server.isAlive()) {
+                    throw new IllegalStateException("Server exited with status " + server.exitValue());
+                }
+                Thread.sleep(5);
+            }
+            long wall = (System.nanoTime() - started) / 1_000_000;
+            
+            Map<String, Object> timeline = new Gson().fromJson(get(base + "/api/startup"),
+                    new TypeToken<Map<String, Object>>(){}.getType());
+            @SuppressWarnings("unchecked")
+            Map<String, Number> phases = (Map<String, Number>) timeline.get("phasesMs");
+            return new long[] {wall, phase(phases, "first_login"), phase(phases, "ready")};
+        } finally {
+            server.destroy();
+            server.waitFor();
+            Files.deleteIfExists(snapshot);
+        }
+    }
+    
+    private static long phase(Map<String, Number> phases, String name) {
+        Number value = phases.get(name);
+        return value == null ? -1 : value.longValue();
+    }
+    
+    /**
+     * @return true once the server answered the login, whatever the result
+     */
+    private static boolean answered(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(200);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(LOGIN.getBytes(StandardCharsets.UTF_8));
+            }
+            return connection.getResponseCode() > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    private static String get(String url) throws IOException {
+        try (InputStream in = new URL(url).openStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+    
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+}
@@ -0,0 +1,91 @@
+package com.logintest;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Startup phases of the API in milliseconds since the process started, ending with the first
+ * login served over HTTP or the binary protocol. The timeline is logged when the API is
+ * ready and served by /api/startup; startup.time_to_first_login_ms is also a metric.
+ *
+ * The start time is the JVM's (RuntimeMXBean); ProcessHandle's start instant is derived from
+ * the boot time in whole seconds and can be several hundred milliseconds off.
+ */
+public final class StartupTimeline {
+    
+    private static final long PROCESS_START_MS = processStart();
+    private static final Map<String, Long> PHASES = new LinkedHashMap<>();
+    
+    private static volatile boolean loginServed;
+    
+    private StartupTimeline() {
+    }
+    
+    private static long processStart() {
+        return ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+    
+    /**
+     * @return milliseconds since the process started
+     */
+    public static long sinceStart() {
+        return System.currentTimeMillis() - PROCESS_START_MS;
+    }
+    
+    /**
+     * Records that a startup phase has finished (a phase marked again keeps its first position)
+     * @param phase - Phase name
+     * @return milliseconds since the process started
+     */
+    public static long mark(String phase) {
+        long elapsed = sinceStart();
+        synchronized (PHASES) {
+            PHASES.put(phase, elapsed);
+        }
+        return elapsed;
+    }
+    
+    /**
+     * Called for every served login; records the first one
+     */
+    public static void loginServed() {
+        if (loginServed) {
+            return;
+        }
+        synchronized (PHASES) {
+            if (loginServed) {
+                return;
+            }
+            loginServed = true;
+        }
+        long elapsed = mark("first_login");
+        Metrics.gauge("startup.time_to_first_login_ms", () -> elapsed);
+        Log.info(StartupTimeline.class, "First login served " + elapsed + " ms after process start");
+    }
+    
+    /**
+     * @return the phases so far, in milliseconds since the process started
+     */
+    public static Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("processStartedAt", Instant.ofEpochMilli(PROCESS_START_MS).toString());
+        synchronized (PHASES) {
+            report.put("phasesMs", new LinkedHashMap<>(PHASES));
+        }
+        return report;
+    }
+    
+    /**
+     * @return the phases so far as "phase=ms" pairs, for the startup log line
+     */
+    public static String summary() {
+        StringBuilder summary = new StringBuilder();
+        synchronized (PHASES) {
+            PHASES.forEach((phase, elapsed) -> summary.append(summary.length() == 0 ? "" : ", ")
+                    .append(phase).append('=').append(elapsed).append(" ms"));
+        }
+        return summary.toString();
+    }
+}
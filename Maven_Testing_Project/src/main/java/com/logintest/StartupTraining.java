@@ -0,0 +1,76 @@
+package com.logintest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Training run for the fast-start AppCDS archive, started by "mvn -Pfast-start package" with
+ * -XX:ArchiveClassesAtExit. Runs LoginAPI.main on a free port over the configured database
+ * (the embedded one during the build), sends the requests a fresh instance serves first and
+ * exits, so the JVM archives every class those requests loaded.
+ */
+public final class StartupTraining {
+    
+    private static final String[][] LOGINS = {
+        {"test@example.com", "Password123!"},
+        {"test@example.com", "WrongPass123"},
+        {"nobody@example.com", "Password123!"},
+        {"' OR '1'='1", "password"},
+        {"user@example.com", "<script>alert(1)</script>"}
+    };
+    
+    private StartupTraining() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Path snapshot = Files.createTempFile("login-training", ".snapshot");
+        System.setProperty("api.port", "0");
+        System.setProperty("cache.snapshot", snapshot.toString());
+        try {
+            LoginAPI.main(args);
+            String base = "http://localhost:" + LoginAPI.getPort();
+            request(base + "/api/register", "{\"email\":\"training@example.com\",\"password\":\"Training123!\"}");
+            for (int round = 0; round < 3; round++) {
+                for (String[] login : LOGINS) {
+                    request(base + "/api/login", "{\"email\":\"" + login[0] + "\",\"password\":\"" + login[1] + "\"}");
+                }
+                request(base + "/api/login", "{not json");
+            }
+            for (String path : new String[] {"/api/health", "/api/ready", "/api/metrics", "/api/startup"}) {
+                request(base + path, null);
+            }
+            System.out.println("Training run served in " + StartupTimeline.sinceStart() + " ms: " + StartupTimeline.summary());
+        } finally {
+            LoginAPI.shutdown();
+            Files.deleteIfExists(snapshot);
+        }
+        System.exit(0);
+    }
+    
+    /**
+     * Sends a GET, or a JSON POST when a body is given, and reads the whole response
+     */
+    private static void request(String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (body != null) {
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            try (InputStream response = in) {
+                response.readAllBytes();
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.logintest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk credential verification over NDJSON, behind POST /api/login/verify-stream.
+ *
+ * Input is one {"email": ..., "password": ...} object per line. Records are grouped into
+ * chunks of verify.chunkSize; each chunk is checked on a worker with one
+ * LoginService.validateLogins call (one store round trip for the cache misses) and its
+ * results are written and flushed as soon as it finishes, so results arrive out of input
+ * order and carry the input line number (counting blank lines, which are skipped). At most
+ * verify.parallelism chunks per stream are in flight (a chunk stays in flight until its
+ * results are written); beyond that the request thread stops reading records, which pushes
+ * back on the sender through TCP. Memory per stream is therefore bounded by parallelism x
+ * chunk size, whatever the input size.
+ *
+ * Only the request thread writes the response, between reads. Clients must read results
+ * while still sending: one that reads only after sending everything stalls once the
+ * socket buffers fill, as results cannot be held back without unbounded memory.
+ *
+ * Output lines are {"line": n, "email": ..., "success": ..., "message": ...}, followed by
+ * a final {"done": true, "records": n, "valid": n}. A stream without the final line was
+ * cut short.
+ *
+ * Settings: verify.chunkSize (256), verify.parallelism (4), verify.workers (2 x cores) and
+ * verify.maxLineBytes (1024).
+ */
+public class StreamingVerifier {
+    
+    private static final int CHUNK_SIZE = AppConfig.getInt("verify.chunkSize", 256);
+    private static final int PARALLELISM = AppConfig.getInt("verify.parallelism", 4);
+    private static final int WORKERS = AppConfig.getInt("verify.workers", 2 * Runtime.getRuntime().availableProcessors());
+    private static final int MAX_LINE_BYTES = AppConfig.getInt("verify.maxLineBytes", 1024);
+    private static final Type RECORD_TYPE = new TypeToken<Map<String, String>>(){}.getType();
+    
+    private final LoginService service;
+    private final Gson gson;
+    private final ExecutorService workers;
+    
+    public StreamingVerifier(LoginService service, Gson gson) {
+        this.service = service;
+        this.gson = gson;
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(WORKERS, task -> {
+            Thread thread = new Thread(task, "verify-worker-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Verifies every record of an NDJSON stream, writing results as chunks finish
+     * @param in - Request body
+     * @param out - Response body, only written by the calling thread and flushed after every chunk
+     * @return number of records read
+     * @throws IOException if either stream fails; results already written stay written
+     */
+    public long verify(InputStream in, OutputStream out) throws IOException {
+        Metrics.increment("verify.streams");
+        // A chunk counts as in flight until its results are written, so at most PARALLELISM
+        // chunks of records or results are held at any time
+        BlockingQueue<byte[]> finished = new LinkedBlockingQueue<>();
+        AtomicLong valid = new AtomicLong();
+        LineReader lines = new LineReader(in, MAX_LINE_BYTES);
+        int inFlight = 0;
+        
+        // Blank lines are skipped but still counted, so "line" points into the input
+        long lineNumber = 0;
+        long records = 0;
+        List<Record> chunk = new ArrayList<>(CHUNK_SIZE);
+        String line;
+        try {
+            while ((line = lines.next()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                records++;
+                chunk.add(lines.wasTooLong() ? new Record(lineNumber, null, null, "Record too long") : parse(lineNumber, line));
+                if (chunk.size() == CHUNK_SIZE) {
+                    inFlight = submit(chunk, finished, valid, inFlight, out);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+                inFlight -= writeFinished(finished, out);
+            }
+            if (!chunk.isEmpty()) {
+                inFlight = submit(chunk, finished, valid, inFlight, out);
+            }
+            for (; inFlight > 0; inFlight--) {
+                write(finished.take(), out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while verifying", e);
+        }
+        
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("done", true);
+        summary.put("records", records);
+        summary.put("valid", valid.get());
+        write((gson.toJson(summary) + "\n").getBytes(StandardCharsets.UTF_8), out);
+        Metrics.add("verify.records", records);
+        return records;
+    }
+    
+    /**
+     * Stops the worker pool
+     */
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private Record parse(long lineNumber, String line) {
+        try {
+            Map<String, String> record = gson.fromJson(line, RECORD_TYPE);
+            if (record != null) {
+                return new Record(lineNumber, record.get("email"), record.get("password"), null);
+            }
+        } catch (JsonSyntaxException e) {
+            // Reported as a malformed record below
+        }
+        return new Record(lineNumber, null, null, "Malformed record");
+    }
+    
+    /**
+     * Hands a chunk to a worker, first writing one finished chunk if all slots are taken;
+     * this is where a slow reader of the results slows down the reading of records
+     * @return chunks now in flight
+     */
+    private int submit(List<Record> chunk, BlockingQueue<byte[]> finished, AtomicLong valid,
+                       int inFlight, OutputStream out) throws IOException, InterruptedException {
+        if (inFlight == PARALLELISM) {
+            write(finished.take(), out);
+            inFlight--;
+        }
+        workers.execute(() -> {
+            byte[] results;
+            try {
+                results = check(chunk, valid);
+            } catch (RuntimeException e) {
+                Log.error(StreamingVerifier.class, "Bulk verification chunk failed", e);
+                results = failed(chunk);
+            }
+            finished.add(results);
+        });
+        return inFlight + 1;
+    }
+    
+    /**
+     * Writes every chunk that has finished so far, without waiting
+     * @return number of chunks written
+     */
+    private static int writeFinished(BlockingQueue<byte[]> finished, OutputStream out) throws IOException {
+        int written = 0;
+        byte[] results;
+        while ((results = finished.poll()) != null) {
+            write(results, out);
+            written++;
+        }
+        return written;
+    }
+    
+    private static void write(byte[] results, OutputStream out) throws IOException {
+        out.write(results);
+        out.flush();
+    }
+    
+    /**
+     * @return the chunk's result lines
+     */
+    private byte[] check(List<Record> chunk, AtomicLong valid) {
+        List<String[]> credentials = new ArrayList<>(chunk.size());
+        for (Record record : chunk) {
+            if (record.error == null) {
+                credentials.add(new String[] {record.email, record.password});
+            }
+        }
+        LoginService.LoginResult[] results = service.validateLogins(credentials);
+        
+        StringBuilder lines = new StringBuilder(chunk.size() * 80);
+        Map<String, Object> line = new LinkedHashMap<>();
+        int next = 0;
+        for (Record record : chunk) {
+            boolean success = false;
+            String message = record.error;
+            if (message == null) {
+                LoginService.LoginResult result = results[next++];
+                success = result.isSuccess();
+                message = result.getMessage();
+            }
+            if (success) {
+                valid.incrementAndGet();
+            }
+            appendResult(lines, line, record, success, message);
+        }
+        return lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * @return result lines reporting every record of the chunk as failed
+     */
+    private byte[] failed(List<Record> chunk) {
+        StringBuilder lines = new StringBuilder(chunk.size() * 80);
+        Map<String, Object> line = new LinkedHashMap<>();
+        for (Record record : chunk) {
+            appendResult(lines, line, record, false, "Verification failed");
+        }
+        return lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private void appendResult(StringBuilder lines, Map<String, Object> line, Record record, boolean success, String message) {
+        line.clear();
+        line.put("line", record.lineNumber);
+        line.put("email", record.email);
+        line.put("success", success);
+        line.put("message", message);
+        lines.append(gson.toJson(line)).append('\n');
+    }
+    
+    private static final class Record {
+        private final long lineNumber;
+        private final String email;
+        private final String password;
+        // Set when the line could not be parsed
+        private final String error;
+        
+        Record(long lineNumber, String email, String password, String error) {
+            this.lineNumber = lineNumber;
+            this.email = email;
+            this.password = password;
+            this.error = error;
+        }
+    }
+    
+    /**
+     * Splits a byte stream into UTF-8 lines without ever holding more than one bounded line
+     */
+    private static final class LineReader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[8192];
+        private final byte[] line;
+        private int position;
+        private int limit;
+        private boolean tooLong;
+        
+        LineReader(InputStream in, int maxLineBytes) {
+            this.in = in;
+            this.line = new byte[maxLineBytes];
+        }
+        
+        /**
+         * @return the next line (cut at the limit, see {@link #wasTooLong()}), or null at the end of the stream
+         */
+        String next() throws IOException {
+            int length = 0;
+            tooLong = false;
+            while (true) {
+                if (position == limit) {
+                    limit = in.read(buffer);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        if (length == 0 && !tooLong) {
+                            return null;
+                        }
+                        break;
+                    }
+                }
+                byte b = buffer[position++];
+                if (b == '\n') {
+                    break;
+                }
+                if (length < line.length) {
+                    line[length++] = b;
+                } else {
+                    tooLong = true;
+                }
+            }
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+        
+        /**
+         * @return true if the last line exceeded the limit; its remainder was skipped
+         */
+        boolean wasTooLong() {
+            return tooLong;
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.logintest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * Generates reproducible synthetic user datasets and matching access traces.
+ *
+ * User i is a pure function of (seed, i), so the same seed always yields the same rows in
+ * the same order and any user can be regenerated without storing the dataset. Emails pass
+ * LoginService's format checks and stay within its length limits. The local part is a
+ * random name followed by '.' and the user index, so emails are unique.
+ *
+ * Usage:
+ *   mvn exec:java -Dexec.mainClass="com.logintest.UserDatasetGenerator" -Dexec.args="--users 1000000 --out users.csv"
+ *
+ * Options (defaults in brackets):
+ *   --users count [100000]          --seed [42]
+ *   --format csv|ndjson|db [csv]    --out file [users.csv]    --batch rows per insert [1000]
+ *   --domains [example.com=50,mail.test=30,corp.example.org=20]
+ *   --local-lengths [6-9=30,10-14=50,15-24=20]
+ *   --passwords plain|sha256 [plain]
+ *   --trace file [none]             --trace-requests [1000000]    --zipf-exponent [1.1]
+ *
+ * With --format db the rows go through DatabaseHelper.addUsers using the configured
+ * database (see config.properties). The trace holds "email,password" lines in access order,
+ * with Zipf-distributed popularity over the users, for LoadGenerator --trace to replay.
+ * sha256 writes hex digests in place of passwords; the trace always carries the plain ones.
+ */
+public class UserDatasetGenerator {
+    
+    private static final char[] LOCAL_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Base-36 digits of the largest supported user index (36^6 is about 2.1 billion)
+    private static final int MAX_INDEX_CHARS = 6;
+    
+    private final long seed;
+    private final WeightedChoice<String> domains;
+    private final WeightedChoice<int[]> localLengths;
+    private final boolean hashPasswords;
+    
+    /**
+     * @param seed - Seed for every random choice
+     * @param domainSpec - Weighted domains, e.g. "example.com=50,mail.test=50"
+     * @param localLengthSpec - Weighted length ranges of the name part, e.g. "6-9=30,10-14=70"
+     * @param hashPasswords - Emit SHA-256 hex digests instead of plain passwords
+     */
+    public UserDatasetGenerator(long seed, String domainSpec, String localLengthSpec, boolean hashPasswords) {
+        this.seed = seed;
+        this.domains = WeightedChoice.parse(domainSpec, domain -> domain);
+        this.localLengths = WeightedChoice.parse(localLengthSpec, UserDatasetGenerator::parseRange);
+        this.hashPasswords = hashPasswords;
+        for (String domain : domains.values) {
+            // Longest name plus '.', the index and '@' must still fit LoginService's limit
+            if (maxNameLength() + 1 + MAX_INDEX_CHARS + 1 + domain.length() > LoginService.MAX_EMAIL_LENGTH) {
+                throw new IllegalArgumentException("Emails at " + domain + " could exceed "
+                        + LoginService.MAX_EMAIL_LENGTH + " characters");
+            }
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        long users = Long.parseLong(options.getOrDefault("users", "100000"));
+        if (users < 1 || Long.toString(users - 1, 36).length() > MAX_INDEX_CHARS) {
+            throw new IllegalArgumentException("--users must be between 1 and 36^" + MAX_INDEX_CHARS);
+        }
+        UserDatasetGenerator generator = new UserDatasetGenerator(
+                Long.parseLong(options.getOrDefault("seed", "42")),
+                options.getOrDefault("domains", "example.com=50,mail.test=30,corp.example.org=20"),
+                options.getOrDefault("local-lengths", "6-9=30,10-14=50,15-24=20"),
+                "sha256".equals(options.getOrDefault("passwords", "plain")));
+        
+        long start = System.nanoTime();
+        String format = options.getOrDefault("format", "csv");
+        if ("db".equals(format)) {
+            DatabaseHelper database = new DatabaseHelper();
+            database.connect();
+            try {
+                int inserted = database.addUsers(generator.users(users),
+                        Integer.parseInt(options.getOrDefault("batch", "1000")));
+                System.out.println("Inserted " + inserted + " users");
+            } finally {
+                database.disconnect();
+            }
+        } else {
+            Path out = Paths.get(options.getOrDefault("out", "users.csv"));
+            generator.write(out, users, "ndjson".equals(format));
+            System.out.println("Wrote " + users + " users to " + out.toAbsolutePath());
+        }
+        
+        if (options.containsKey("trace")) {
+            Path trace = Paths.get(options.get("trace"));
+            long requests = Long.parseLong(options.getOrDefault("trace-requests", "1000000"));
+            generator.writeTrace(trace, users, requests, Double.parseDouble(options.getOrDefault("zipf-exponent", "1.1")));
+            System.out.println("Wrote " + requests + " trace entries to " + trace.toAbsolutePath());
+        }
+        System.out.printf("Done in %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+    
+    /**
+     * @return {email, plain password} of user i
+     */
+    public String[] user(long index) {
+        SplittableRandom random = new SplittableRandom(mix(seed * 31 + index));
+        String domain = domains.pick(random);
+        int[] range = localLengths.pick(random);
+        int length = range[0] + random.nextInt(range[1] - range[0] + 1);
+        
+        // A random name starting with a letter, then '.' and the index in base 36 for uniqueness
+        StringBuilder email = new StringBuilder(length + 2 + MAX_INDEX_CHARS + domain.length());
+        email.append((char) ('a' + random.nextInt(26)));
+        for (int i = 1; i < length; i++) {
+            email.append(LOCAL_CHARS[random.nextInt(LOCAL_CHARS.length)]);
+        }
+        email.append('.').append(Long.toString(index, 36)).append('@').append(domain);
+        
+        StringBuilder password = new StringBuilder("Pw");
+        for (int i = 0; i < 10; i++) {
+            password.append(LOCAL_CHARS[random.nextInt(LOCAL_CHARS.length)]);
+        }
+        password.append('!');
+        return new String[] {email.toString(), password.toString()};
+    }
+    
+    /**
+     * @return users 0 until count, generated lazily, with passwords in the configured form
+     */
+    public Iterator<String[]> users(long count) {
+        return new Iterator<>() {
+            private long next;
+            
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+            
+            @Override
+            public String[] next() {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+                String[] user = user(next++);
+                if (hashPasswords) {
+                    user[1] = hex(PasswordDigest.of(user[1]));
+                }
+                return user;
+            }
+        };
+    }
+    
+    /**
+     * Streams the dataset as CSV (with an "email,password" header) or NDJSON
+     */
+    public void write(Path out, long count, boolean ndjson) throws IOException {
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(out, StandardCharsets.US_ASCII), BUFFER_SIZE)) {
+            if (!ndjson) {
+                writer.write("email,password\n");
+            }
+            Iterator<String[]> users = users(count);
+            while (users.hasNext()) {
+                String[] user = users.next();
+                if (ndjson) {
+                    // Generated values never need JSON escaping
+                    writer.write("{\"email\":\"" + user[0] + "\",\"password\":\"" + user[1] + "\"}\n");
+                } else {
+                    writer.write(user[0] + "," + user[1] + "\n");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Writes an access trace where user popularity follows a Zipf distribution.
+     * Ranks are scattered over the dataset, so hot accounts are not just the first rows.
+     * @param users - Dataset size the trace refers to
+     * @param requests - Number of trace entries
+     * @param exponent - Zipf exponent; higher means more skew
+     */
+    public void writeTrace(Path out, long users, long requests, double exponent) throws IOException {
+        ZipfSampler sampler = new ZipfSampler(users, exponent);
+        SplittableRandom random = new SplittableRandom(seed + 1);
+        long stride = coprimeStride(users);
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(out, StandardCharsets.US_ASCII), BUFFER_SIZE)) {
+            writer.write("email,password\n");
+            for (long i = 0; i < requests; i++) {
+                long rank = sampler.sample(random) - 1;
+                String[] user = user(Math.floorMod(rank * stride, users));
+                writer.write(user[0] + "," + user[1] + "\n");
+            }
+        }
+    }
+    
+    private int maxNameLength() {
+        int max = 0;
+        for (int[] range : localLengths.values) {
+            max = Math.max(max, range[1]);
+        }
+        return max;
+    }
+    
+    private static int[] parseRange(String spec) {
+        String[] bounds = spec.split("-");
+        int min = Integer.parseInt(bounds[0].trim());
+        int max = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : min;
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Bad length range: " + spec);
+        }
+        return new int[] {min, max};
+    }
+    
+    /**
+     * @return a multiplier that permutes 0..n-1 when used modulo n
+     */
+    private static long coprimeStride(long n) {
+        long stride = 0x9E3779B97L % n;
+        while (gcd(stride, n) != 1) {
+            stride++;
+        }
+        return stride;
+    }
+    
+    /**
+     * MurmurHash3 finalizer, so neighbouring indexes get unrelated random streams
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+    
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+    
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+    
+    /**
+     * Values drawn by relative weight from a "value=weight,..." spec
+     */
+    private static final class WeightedChoice<T> {
+        private final List<T> values = new ArrayList<>();
+        private final List<Integer> cumulative = new ArrayList<>();
+        
+        static <T> WeightedChoice<T> parse(String spec, Function<String, T> parser) {
+            WeightedChoice<T> choice = new WeightedChoice<>();
+            int total = 0;
+            for (String part : spec.split(",")) {
+                int equals = part.lastIndexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Bad weighted entry: " + part);
+                }
+                total += Integer.parseInt(part.substring(equals + 1).trim());
+                choice.values.add(parser.apply(part.substring(0, equals).trim()));
+                choice.cumulative.add(total);
+            }
+            if (total <= 0) {
+                throw new IllegalArgumentException("Weights must add up to more than 0: " + spec);
+            }
+            return choice;
+        }
+        
+        T pick(SplittableRandom random) {
+            int draw = random.nextInt(cumulative.get(cumulative.size() - 1));
+            for (int i = 0; i < values.size(); i++) {
+                if (draw < cumulative.get(i)) {
+                    return values.get(i);
+                }
+            }
+            return values.get(values.size() - 1);
+        }
+    }
+    
+    /**
+     * Zipf sampler over ranks 1..n using rejection-inversion (Hormann and Derflinger),
+     * which needs constant memory however large n is
+     */
+    static final class ZipfSampler {
+        private final long n;
+        private final double exponent;
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double s;
+        
+        ZipfSampler(long n, double exponent) {
+            if (n < 1 || exponent <= 0) {
+                throw new IllegalArgumentException("Zipf needs n >= 1 and exponent > 0");
+            }
+            this.n = n;
+            this.exponent = exponent;
+            this.hIntegralX1 = hIntegral(1.5) - 1;
+            this.hIntegralN = hIntegral(n + 0.5);
+            this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+        
+        long sample(SplittableRandom random) {
+            while (true) {
+                double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                long k = Math.max(1, Math.min(n, (long) (x + 0.5)));
+                if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                    return k;
+                }
+            }
+        }
+        
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return expm1OverX((1 - exponent) * logX) * logX;
+        }
+        
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+        
+        private double hIntegralInverse(double x) {
+            double t = Math.max(-1, x * (1 - exponent));
+            return Math.exp(log1pOverX(t) * x);
+        }
+        
+        private static double log1pOverX(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+        }
+        
+        private static double expm1OverX(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x * (1.0 / 3) * (1 + 0.25 * x));
+        }
+    }
+}
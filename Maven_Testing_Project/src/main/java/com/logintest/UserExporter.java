@@ -0,0 +1,131 @@
+package com.logintest;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Exports users (email, created_at, updated_at; never passwords) as NDJSON or CSV, ordered by
+ * email and read with keyset pagination: every page is a separate short query that starts
+ * after the last email of the previous one. A page is collected into a bounded buffer while
+ * the query runs and written out once its connection is back in the pool, so a slow client
+ * or disk never keeps a database read open and heap use depends on the page size only.
+ * An interrupted export can be resumed from the last exported email. NDJSON ends with
+ * {"done": true, "users": n}; a file without that line was cut short.
+ *
+ * Served by GET /api/admin/users/export and usable from the command line:
+ *   mvn exec:java -Dexec.mainClass="com.logintest.UserExporter" -Dexec.args="--format csv --out users-export.csv"
+ * Options: --format ndjson|csv [ndjson], --out file [users-export.ndjson or .csv],
+ *          --after email (resume), --page-size n [export.pageSize, 5000]
+ */
+public class UserExporter {
+    
+    public static final int DEFAULT_PAGE_SIZE = AppConfig.getInt("export.pageSize", 5000);
+    
+    private static final String CSV_HEADER = "email,created_at,updated_at\n";
+    
+    private final UserStore store;
+    private final Gson gson = new Gson();
+    
+    public UserExporter(UserStore store) {
+        this.store = store;
+    }
+    
+    /**
+     * @return "ndjson" or "csv"
+     * @throws IllegalArgumentException for any other format
+     */
+    public static String checkFormat(String format) {
+        if (!"ndjson".equals(format) && !"csv".equals(format)) {
+            throw new IllegalArgumentException("Unknown export format: " + format);
+        }
+        return format;
+    }
+    
+    /**
+     * Writes every user after the given email, flushing after each page, and for NDJSON
+     * the final done line
+     * @param out - Destination
+     * @param format - "ndjson" or "csv"
+     * @param afterEmail - Resume after this email, or null to start at the beginning
+     * @param pageSize - Users per query
+     * @return number of users written
+     */
+    public long export(Writer out, String format, String afterEmail, int pageSize) throws IOException, SQLException {
+        boolean csv = "csv".equals(checkFormat(format));
+        if (csv) {
+            out.write(CSV_HEADER);
+        }
+        
+        StringBuilder page = new StringBuilder(pageSize * 64);
+        String[] last = {afterEmail};
+        long exported = 0;
+        int rows;
+        do {
+            page.setLength(0);
+            rows = store.forEachUserPage(last[0], pageSize, (email, createdAt, updatedAt) -> {
+                if (csv) {
+                    appendCsv(page, email, createdAt, updatedAt);
+                } else {
+                    appendJson(page, email, createdAt, updatedAt);
+                }
+                last[0] = email;
+            });
+            out.append(page);
+            out.flush();
+            exported += rows;
+        } while (rows == pageSize);
+        if (!csv) {
+            out.write("{\"done\":true,\"users\":" + exported + "}\n");
+            out.flush();
+        }
+        
+        Metrics.add("export.users", exported);
+        return exported;
+    }
+    
+    private void appendJson(StringBuilder page, String email, Instant createdAt, Instant updatedAt) {
+        page.append("{\"email\":").append(gson.toJson(email))
+                .append(",\"created_at\":").append(createdAt == null ? "null" : "\"" + createdAt + "\"")
+                .append(",\"updated_at\":").append(updatedAt == null ? "null" : "\"" + updatedAt + "\"")
+                .append("}\n");
+    }
+    
+    private static void appendCsv(StringBuilder page, String email, Instant createdAt, Instant updatedAt) {
+        if (email.indexOf(',') >= 0 || email.indexOf('"') >= 0 || email.indexOf('\n') >= 0) {
+            page.append('"').append(email.replace("\"", "\"\"")).append('"');
+        } else {
+            page.append(email);
+        }
+        page.append(',').append(createdAt == null ? "" : createdAt.toString())
+                .append(',').append(updatedAt == null ? "" : updatedAt.toString())
+                .append('\n');
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseArgs(args);
+        String format = checkFormat(options.getOrDefault("format", "ndjson"));
+        Path out = Paths.get(options.getOrDefault("out", "users-export." + format));
+        int pageSize = Integer.parseInt(options.getOrDefault("page-size", Integer.toString(DEFAULT_PAGE_SIZE)));
+        
+        DatabaseHelper database = new DatabaseHelper();
+        database.connect();
+        long start = System.nanoTime();
+        try (Writer writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            long exported = new UserExporter(database).export(writer, format, options.get("after"), pageSize);
+            System.out.printf("Exported %d users to %s in %.1f s%n",
+                    exported, out.toAbsolutePath(), (System.nanoTime() - start) / 1e9);
+        } finally {
+            database.disconnect();
+        }
+        Log.flush(1000);
+    }
+}
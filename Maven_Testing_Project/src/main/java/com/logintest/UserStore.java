@@ -0,0 +1,108 @@
+package com.logintest;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Storage of user credentials used by LoginService.
+ * DatabaseHelper is the MySQL implementation; InMemoryUserStore backs tests and benchmarks.
+ * Emails are compared case-insensitively, as with MySQL's default collation.
+ */
+public interface UserStore {
+    
+    /**
+     * Opens the store
+     * @throws SQLException if the store cannot be reached
+     */
+    void connect() throws SQLException;
+    
+    /**
+     * Closes the store
+     */
+    void disconnect();
+    
+    /**
+     * Opens every pooled connection ahead of traffic
+     * @return number of connections opened
+     */
+    int prefillPool() throws SQLException;
+    
+    /**
+     * Checks the store is reachable
+     * @throws SQLException if it is not
+     */
+    void ping() throws SQLException;
+    
+    /**
+     * @return the stored password, or null if the user does not exist
+     */
+    String getPassword(String email);
+    
+    /**
+     * Looks up many users in one round trip
+     * @return stored passwords keyed by lower-cased email; unknown users are absent
+     */
+    Map<String, String> getPasswords(Collection<String> emails);
+    
+    /**
+     * @return true if the email exists and the password matches
+     */
+    boolean validateCredentials(String email, String password);
+    
+    /**
+     * @return true if the user exists
+     */
+    boolean userExists(String email);
+    
+    /**
+     * @return true if the user was added
+     */
+    boolean addUser(String email, String password);
+    
+    /**
+     * @return true if the user was removed
+     */
+    boolean removeUser(String email);
+    
+    /**
+     * Streams every user created or updated since the given store time
+     */
+    void forEachUserUpdatedSince(long since, BiConsumer<String, String> action) throws SQLException;
+    
+    /**
+     * Streams every registered email
+     */
+    void forEachEmail(Consumer<String> action) throws SQLException;
+    
+    /**
+     * Streams one keyset page of users ordered by email, without passwords
+     * @param afterEmail - Last email of the previous page, or null for the first page
+     * @param limit - Page size
+     * @return number of users passed to the action
+     */
+    int forEachUserPage(String afterEmail, int limit, UserRowAction action) throws SQLException;
+    
+    /**
+     * Writes per-minute login statistics rollups in one statement
+     * @return number of rows written
+     */
+    int insertLoginStats(List<LoginStats.Row> rows) throws SQLException;
+    
+    /**
+     * @return the store's current time in milliseconds
+     */
+    long currentTimestamp() throws SQLException;
+    
+    /**
+     * Receives exported users; timestamps may be null
+     */
+    @FunctionalInterface
+    interface UserRowAction {
+        void accept(String email, Instant createdAt, Instant updatedAt);
+    }
+}
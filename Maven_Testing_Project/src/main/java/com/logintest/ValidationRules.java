@@ -0,0 +1,220 @@
+package com.logintest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide validation blacklist, loaded from validation.rulesFile (default
+ * validation-rules.txt in the working directory, else the copy bundled on the classpath).
+ *
+ * The file is watched with a WatchService. On change it is recompiled into a new RuleMatcher,
+ * checked against validation-corpus.txt, and swapped in atomically; requests in flight keep
+ * the matcher they started with. A rule set that fails to parse or misclassifies a corpus
+ * sample is rejected and the previous one stays active.
+ */
+public final class ValidationRules {
+    
+    static final String RULES_RESOURCE = "validation-rules.txt";
+    static final String CORPUS_RESOURCE = "validation-corpus.txt";
+    // Lets an editor finish writing before the file is read
+    private static final long RELOAD_SETTLE_MS = 100;
+    
+    private static final Path RULES_FILE = Paths.get(AppConfig.get("validation.rulesFile", RULES_RESOURCE)).toAbsolutePath();
+    private static final Map<String, LongAdder> MATCH_COUNTS = new ConcurrentHashMap<>();
+    private static final List<String[]> CORPUS = loadCorpus();
+    private static final AtomicReference<RuleMatcher> CURRENT = new AtomicReference<>(loadInitial());
+    
+    static {
+        Metrics.gauge("validation.rules", () -> CURRENT.get().getCategoryCounts());
+        Metrics.gauge("validation.ruleMatches", ValidationRules::matchCounts);
+        if (AppConfig.getBoolean("validation.watch", true)) {
+            startWatcher();
+        }
+    }
+    
+    private ValidationRules() {
+    }
+    
+    /**
+     * @return true if the input contains a blacklisted pattern
+     */
+    public static boolean matches(CharSequence input) {
+        return CURRENT.get().matches(input);
+    }
+    
+    /**
+     * @return the active matcher
+     */
+    public static RuleMatcher current() {
+        return CURRENT.get();
+    }
+    
+    /**
+     * Recompiles the rule file and swaps it in if it passes the corpus
+     * @return true if the new rules are active
+     */
+    public static boolean reload() {
+        try {
+            RuleMatcher matcher = compileAndVerify(Files.readString(RULES_FILE, StandardCharsets.UTF_8));
+            CURRENT.set(matcher);
+            Metrics.increment("validation.reloads");
+            Log.info(ValidationRules.class, "Validation rules reloaded from " + RULES_FILE
+                    + " (" + matcher.getRuleCount() + " rules)");
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            Metrics.increment("validation.reloadFailures");
+            Log.error(ValidationRules.class, "Rejected validation rules in " + RULES_FILE + ", keeping previous rules", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Compiles a rule set and checks it against the corpus
+     * @throws IllegalArgumentException listing the samples it misclassifies
+     */
+    static RuleMatcher compileAndVerify(String rules) throws IOException {
+        RuleMatcher matcher = RuleMatcher.compile(new StringReader(rules), MATCH_COUNTS);
+        List<String> failures = new ArrayList<>();
+        for (String[] sample : CORPUS) {
+            boolean reject = "reject".equals(sample[0]);
+            if ((matcher.firstMatch(sample[1]) >= 0) != reject) {
+                failures.add(sample[0] + " " + sample[1]);
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalArgumentException("Rules misclassify corpus samples: " + String.join(" | ", failures));
+        }
+        return matcher;
+    }
+    
+    private static RuleMatcher loadInitial() {
+        if (Files.exists(RULES_FILE)) {
+            try {
+                return compileAndVerify(Files.readString(RULES_FILE, StandardCharsets.UTF_8));
+            } catch (IOException | IllegalArgumentException e) {
+                Log.error(ValidationRules.class, "Invalid validation rules in " + RULES_FILE + ", using bundled rules", e);
+            }
+        }
+        try {
+            return compileAndVerify(readResource(RULES_RESOURCE));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load bundled " + RULES_RESOURCE, e);
+        }
+    }
+    
+    /**
+     * Reads "accept input" / "reject input" lines from the bundled corpus and validation.corpusFile
+     */
+    private static List<String[]> loadCorpus() {
+        List<String[]> corpus = new ArrayList<>();
+        try {
+            parseCorpus(readResource(CORPUS_RESOURCE), corpus);
+            String extra = AppConfig.get("validation.corpusFile", null);
+            if (extra != null) {
+                parseCorpus(Files.readString(Paths.get(extra), StandardCharsets.UTF_8), corpus);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load validation corpus", e);
+        }
+        return corpus;
+    }
+    
+    private static void parseCorpus(String text, List<String[]> corpus) {
+        for (String line : text.split("\r?\n")) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            String expectation = space < 0 ? line : line.substring(0, space);
+            if (!"accept".equals(expectation) && !"reject".equals(expectation)) {
+                throw new IllegalArgumentException("Corpus line must start with accept or reject: " + line);
+            }
+            corpus.add(new String[] {expectation, line.substring(space + 1)});
+        }
+    }
+    
+    private static String readResource(String name) throws IOException {
+        try (InputStream in = ValidationRules.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException(name + " not found on the classpath");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+    
+    private static Map<String, Long> matchCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        MATCH_COUNTS.forEach((rule, count) -> {
+            long value = count.sum();
+            if (value > 0) {
+                counts.put(rule, value);
+            }
+        });
+        return counts;
+    }
+    
+    /**
+     * Watches the rule file's directory and reloads when the file is created or modified
+     */
+    private static void startWatcher() {
+        Path directory = RULES_FILE.getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        WatchService watcher;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            Log.warn(ValidationRules.class, "Cannot watch " + directory + "; validation rules will not hot-reload", e);
+            return;
+        }
+        
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (RULES_FILE.getFileName().equals(event.context())) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                    if (changed) {
+                        Thread.sleep(RELOAD_SETTLE_MS);
+                        // Coalesce the burst of events a single save produces
+                        WatchKey pending = watcher.poll();
+                        if (pending != null) {
+                            pending.pollEvents();
+                            pending.reset();
+                        }
+                        reload();
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "rules-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
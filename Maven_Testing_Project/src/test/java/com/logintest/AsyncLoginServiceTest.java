@@ -0,0 +1,156 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Tests for AsyncLoginService over an InMemoryUserStore that counts lookups
+ */
+public class AsyncLoginServiceTest {
+
+    private static final String VALID_EMAIL = "test@example.com";
+    private static final String VALID_PASSWORD = "Password123!";
+
+    @Test
+    public void testResultsMatchBlockingService() throws Exception {
+        LoginService service = service(new CountingStore());
+        try (AsyncLoginService async = new AsyncLoginService(service)) {
+            Assert.assertTrue(get(async.validateLogin(VALID_EMAIL, VALID_PASSWORD).toCompletableFuture()).isSuccess());
+            // Second time from the credential cache
+            Assert.assertTrue(get(async.validateLogin(VALID_EMAIL, VALID_PASSWORD).toCompletableFuture()).isSuccess());
+
+            LoginService.LoginResult wrong = get(async.validateLogin(VALID_EMAIL, "WrongPass123").toCompletableFuture());
+            Assert.assertEquals(wrong.getOutcome(), LoginService.LoginResult.Outcome.FAILURE);
+            LoginService.LoginResult rejected = get(async.validateLogin("' OR '1'='1", "x").toCompletableFuture());
+            Assert.assertEquals(rejected.getOutcome(), LoginService.LoginResult.Outcome.REJECTED);
+
+            Assert.assertTrue(get(async.doesUserExist(VALID_EMAIL, null).toCompletableFuture()));
+            Assert.assertTrue(get(async.registerUser("async@example.com", VALID_PASSWORD, null).toCompletableFuture()));
+            Assert.assertTrue(service.doesUserExist("async@example.com"));
+        }
+    }
+
+    @Test
+    public void testExpiredLoginNeverReachesStore() throws Exception {
+        CountingStore store = new CountingStore();
+        LoginService service = service(store);
+        ExecutorService io = Executors.newSingleThreadExecutor();
+        CountDownLatch blocked = new CountDownLatch(1);
+        io.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            AsyncLoginService async = new AsyncLoginService(service, Runnable::run, io);
+            CompletableFuture<LoginService.LoginResult> login = async
+                    .validateLogin("late@example.com", VALID_PASSWORD, Duration.ofMillis(50)).toCompletableFuture();
+            ExecutionException timeout = Assert.expectThrows(ExecutionException.class, () -> login.get(5, TimeUnit.SECONDS));
+            Assert.assertTrue(timeout.getCause() instanceof TimeoutException);
+
+            blocked.countDown();
+            io.submit(() -> { }).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(store.lookups.get(), 0);
+        } finally {
+            io.shutdown();
+        }
+    }
+
+    @Test
+    public void testCpuStagesRunOnCallerThread() throws Exception {
+        CountingStore store = new CountingStore();
+        AsyncLoginService async = new AsyncLoginService(service(store), Runnable::run, Runnable::run);
+        // Rejected input is decided by the CPU stage alone, before the call returns
+        CompletableFuture<LoginService.LoginResult> rejected = async.validateLogin("", VALID_PASSWORD).toCompletableFuture();
+        Assert.assertTrue(rejected.isDone());
+        Assert.assertTrue(async.validateLogin(VALID_EMAIL, VALID_PASSWORD).toCompletableFuture().isDone());
+        Assert.assertEquals(store.lookups.get(), 1);
+    }
+
+    @Test
+    public void testExistenceCheckCpuStageNeverTouchesStore() throws Exception {
+        ThreadRecordingStore store = new ThreadRecordingStore();
+        store.addUser(VALID_EMAIL, VALID_PASSWORD);
+        // No background catch-up, so the filter stays as loaded
+        LoginService service = new LoginService(store, 0L);
+        service.loadSnapshot(Paths.get("target", "no-such-login-cache.snapshot"));
+        store.addUser("elsewhere@example.com", VALID_PASSWORD);
+        store.callers.clear();
+
+        ExecutorService io = Executors.newSingleThreadExecutor();
+        try {
+            AsyncLoginService async = new AsyncLoginService(service, Runnable::run, io);
+            Assert.assertFalse(get(async.doesUserExist("nobody@example.com", null).toCompletableFuture()));
+            // Added behind the filter's back: ruled out without catching up on the CPU stage
+            Assert.assertFalse(get(async.doesUserExist("elsewhere@example.com", null).toCompletableFuture()));
+            Assert.assertTrue(get(async.doesUserExist(VALID_EMAIL, null).toCompletableFuture()));
+
+            Assert.assertFalse(store.callers.isEmpty());
+            Assert.assertFalse(store.callers.contains(Thread.currentThread()), "the CPU stage used the store");
+        } finally {
+            io.shutdown();
+        }
+    }
+
+    private static LoginService service(InMemoryUserStore store) throws Exception {
+        store.addUser(VALID_EMAIL, VALID_PASSWORD);
+        LoginService service = new LoginService(store);
+        service.initialize();
+        return service;
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    private static final class CountingStore extends InMemoryUserStore {
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        @Override
+        public String getPassword(String email) {
+            lookups.incrementAndGet();
+            return super.getPassword(email);
+        }
+    }
+
+    /**
+     * Records the threads that read from the store
+     */
+    private static final class ThreadRecordingStore extends InMemoryUserStore {
+        private final Set<Thread> callers = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public String getPassword(String email) {
+            callers.add(Thread.currentThread());
+            return super.getPassword(email);
+        }
+
+        @Override
+        public boolean userExists(String email) {
+            callers.add(Thread.currentThread());
+            return super.userExists(email);
+        }
+
+        @Override
+        public void forEachUserUpdatedSince(long since, BiConsumer<String, String> action) {
+            callers.add(Thread.currentThread());
+            super.forEachUserUpdatedSince(since, action);
+        }
+    }
+}
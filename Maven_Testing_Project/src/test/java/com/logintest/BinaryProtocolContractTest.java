@@ -0,0 +1,247 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contract tests for the binary credential-check protocol: BinaryLoginServer runs on an
+ * ephemeral port and on a Unix domain socket over an InMemoryUserStore.
+ */
+public class BinaryProtocolContractTest {
+
+    private static final String VALID_EMAIL = "test@example.com";
+    private static final String VALID_PASSWORD = "Password123!";
+
+    private static LoginService service;
+    private static BinaryLoginServer server;
+    private static InetSocketAddress address;
+    private static Path socketDir;
+    private static BinaryLoginServer udsServer;
+    private static UnixDomainSocketAddress udsAddress;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        InMemoryUserStore store = new InMemoryUserStore();
+        store.addUser(VALID_EMAIL, VALID_PASSWORD);
+        service = new LoginService(store);
+        service.initialize();
+
+        server = new BinaryLoginServer(service);
+        server.start(new InetSocketAddress("localhost", 0));
+        address = new InetSocketAddress("localhost", server.getPort());
+
+        socketDir = Files.createTempDirectory("login-uds");
+        udsAddress = UnixDomainSocketAddress.of(socketDir.resolve("login-api.sock"));
+        udsServer = new BinaryLoginServer(service);
+        udsServer.start(udsAddress);
+    }
+
+    @AfterClass
+    public static void stopServer() throws IOException {
+        server.close();
+        udsServer.close();
+        Files.deleteIfExists(socketDir);
+    }
+
+    @Test
+    public void testValidLogin() throws Exception {
+        try (BinaryLoginClient client = BinaryLoginClient.connect(address)) {
+            BinaryProtocol.Response response = client.login(VALID_EMAIL, VALID_PASSWORD).get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(response.isSuccess());
+            Assert.assertEquals(response.getMessage(), "Login Successful");
+        }
+    }
+
+    @Test
+    public void testInvalidLogin() throws Exception {
+        try (BinaryLoginClient client = BinaryLoginClient.connect(address)) {
+            BinaryProtocol.Response response = client.login(VALID_EMAIL, "WrongPass123").get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(response.getStatus(), BinaryProtocol.STATUS_REJECTED);
+        }
+    }
+
+    @Test
+    public void testPipelinedResponsesMatchRequests() throws Exception {
+        List<String[]> credentials = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            credentials.add(i % 2 == 0
+                    ? new String[] {VALID_EMAIL, VALID_PASSWORD}
+                    : new String[] {"user" + i + "@example.com", "WrongPass123"});
+        }
+        try (BinaryLoginClient client = BinaryLoginClient.connect(address)) {
+            List<CompletableFuture<BinaryProtocol.Response>> responses = client.loginAll(credentials);
+            for (int i = 0; i < responses.size(); i++) {
+                Assert.assertEquals(responses.get(i).get(5, TimeUnit.SECONDS).isSuccess(), i % 2 == 0, "request " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testUnixSocketServesLoginExistsAndSessionVerify() throws Exception {
+        String token = service.createSession(VALID_EMAIL);
+        try (BinaryLoginClient client = BinaryLoginClient.connect(udsAddress)) {
+            Assert.assertTrue(client.login(VALID_EMAIL, VALID_PASSWORD).get(5, TimeUnit.SECONDS).isSuccess());
+            Assert.assertTrue(client.exists(VALID_EMAIL).get(5, TimeUnit.SECONDS).isSuccess());
+            Assert.assertEquals(client.exists("nobody@example.com").get(5, TimeUnit.SECONDS).getStatus(),
+                    BinaryProtocol.STATUS_REJECTED);
+
+            BinaryProtocol.Response session = client.verifySession(token).get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(session.isSuccess());
+            Assert.assertEquals(session.getMessage(), VALID_EMAIL);
+            Assert.assertEquals(client.verifySession("not-a-token").get(5, TimeUnit.SECONDS).getStatus(),
+                    BinaryProtocol.STATUS_REJECTED);
+        }
+    }
+
+    @Test
+    public void testTcpRefusesExistsAndSessionVerify() throws Exception {
+        String token = service.createSession(VALID_EMAIL);
+        try (BinaryLoginClient client = BinaryLoginClient.connect(address)) {
+            Assert.assertEquals(client.exists(VALID_EMAIL).get(5, TimeUnit.SECONDS).getStatus(),
+                    BinaryProtocol.STATUS_BAD_REQUEST);
+            BinaryProtocol.Response session = client.verifySession(token).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(session.getStatus(), BinaryProtocol.STATUS_BAD_REQUEST);
+            Assert.assertNotEquals(session.getMessage(), VALID_EMAIL);
+            // Logins are still served on the same connection
+            Assert.assertTrue(client.login(VALID_EMAIL, VALID_PASSWORD).get(5, TimeUnit.SECONDS).isSuccess());
+        }
+    }
+
+    @Test
+    public void testUnixSocketFileIsGroupOnly() throws Exception {
+        Assert.assertEquals(Files.getPosixFilePermissions(udsAddress.getPath()), PosixFilePermissions.fromString("rw-rw----"));
+    }
+
+    @Test
+    public void testLiveUnixSocketIsNotReplaced() {
+        Assert.assertThrows(IOException.class, () -> new BinaryLoginServer(service).start(udsAddress));
+    }
+
+    @Test
+    public void testMalformedRequestIsAnsweredAndConnectionKept() throws Exception {
+        try (Socket socket = new Socket(address.getHostString(), address.getPort())) {
+            // Unknown op with an empty payload
+            socket.getOutputStream().write(ByteBuffer.allocate(9).putInt(5).putInt(7).put((byte) 99).array());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            in.readInt();
+            Assert.assertEquals(in.readInt(), 7);
+            Assert.assertEquals(in.readByte(), BinaryProtocol.STATUS_BAD_REQUEST);
+            in.readFully(new byte[in.readUnsignedShort()]);
+
+            // The same connection still serves valid requests
+            socket.getOutputStream().write(toArray(BinaryProtocol.encodeLogin(8, VALID_EMAIL, VALID_PASSWORD)));
+            in.readInt();
+            Assert.assertEquals(in.readInt(), 8);
+            Assert.assertEquals(in.readByte(), BinaryProtocol.STATUS_OK);
+        }
+    }
+
+    @Test
+    public void testOversizedFrameClosesConnection() throws Exception {
+        try (Socket socket = new Socket(address.getHostString(), address.getPort())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(ByteBuffer.allocate(4).putInt(1 << 20).array());
+            Assert.assertThrows(EOFException.class, () -> new DataInputStream(socket.getInputStream()).readInt());
+        }
+    }
+
+    @Test
+    public void testCallerThatDoesNotReadIsPaused() throws Exception {
+        int requests = 300_000;
+        long pausesBefore = Metrics.count("binary.readPaused");
+        try (Socket socket = new Socket()) {
+            // A small receive window so unread responses back up on the server quickly
+            socket.setReceiveBufferSize(4096);
+            socket.connect(address);
+            socket.setSoTimeout(10_000);
+            CompletableFuture<Void> sender = CompletableFuture.runAsync(() -> {
+                ByteBuffer frames = ByteBuffer.allocate(9 * 1000);
+                try {
+                    for (int sent = 0; sent < requests; sent += 1000) {
+                        frames.clear();
+                        for (int i = 0; i < 1000; i++) {
+                            // Unknown op: answered on the selector thread without a worker
+                            frames.putInt(5).putInt(sent + i).put((byte) 99);
+                        }
+                        socket.getOutputStream().write(frames.array());
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (Metrics.count("binary.readPaused") == pausesBefore && System.nanoTime() < waitUntil) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(Metrics.count("binary.readPaused") > pausesBefore, "reading was never paused");
+
+            // Once the caller reads again, every request is answered
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            for (int i = 0; i < requests; i++) {
+                in.readInt();
+                Assert.assertEquals(in.readInt(), i);
+                Assert.assertEquals(in.readByte(), BinaryProtocol.STATUS_BAD_REQUEST);
+                in.skipBytes(in.readUnsignedShort());
+            }
+            sender.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testConnectionsBeyondTheCapAreClosedAndTheListenerKeepsServing() throws Exception {
+        try (BinaryLoginServer capped = new BinaryLoginServer(service, 1)) {
+            capped.start(new InetSocketAddress("localhost", 0));
+            InetSocketAddress cappedAddress = new InetSocketAddress("localhost", capped.getPort());
+            long rejectedBefore = Metrics.count("binary.rejected.connections");
+            try (BinaryLoginClient first = BinaryLoginClient.connect(cappedAddress)) {
+                Assert.assertTrue(first.login(VALID_EMAIL, VALID_PASSWORD).get(5, TimeUnit.SECONDS).isSuccess());
+                try (Socket extra = new Socket(cappedAddress.getHostString(), cappedAddress.getPort())) {
+                    extra.setSoTimeout(5000);
+                    Assert.assertEquals(extra.getInputStream().read(), -1);
+                }
+                Assert.assertTrue(Metrics.count("binary.rejected.connections") > rejectedBefore);
+                Assert.assertTrue(first.login(VALID_EMAIL, VALID_PASSWORD).get(5, TimeUnit.SECONDS).isSuccess());
+            }
+
+            // The slot frees up once the first connection is gone
+            long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (true) {
+                try (BinaryLoginClient next = BinaryLoginClient.connect(cappedAddress)) {
+                    Assert.assertTrue(next.login(VALID_EMAIL, VALID_PASSWORD).get(5, TimeUnit.SECONDS).isSuccess());
+                    break;
+                } catch (ExecutionException e) {
+                    if (System.nanoTime() > waitUntil) {
+                        throw e;
+                    }
+                    Thread.sleep(10);
+                }
+            }
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
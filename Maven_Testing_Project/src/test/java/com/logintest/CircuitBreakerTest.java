@@ -0,0 +1,73 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.sql.SQLException;
+
+/**
+ * Tests for CircuitBreaker and how DatabaseHelper reports requests it turns away
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void testFailuresWhileOpenDoNotExtendCoolDown() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(3, 200);
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        Assert.assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+        Assert.assertFalse(breaker.allowRequest());
+
+        // Late failures of requests that started before the opening
+        Thread.sleep(120);
+        breaker.recordFailure();
+        Thread.sleep(120);
+        Assert.assertEquals(breaker.getState(), CircuitBreaker.State.HALF_OPEN);
+        Assert.assertTrue(breaker.allowRequest());
+
+        // A failure while half open re-opens the circuit at once
+        breaker.recordFailure();
+        Assert.assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void testRejectionIsReportedOncePerOpening() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        breaker.recordFailure();
+        Assert.assertTrue(breaker.firstRejection());
+        Assert.assertFalse(breaker.firstRejection());
+
+        Thread.sleep(80);
+        Assert.assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        Assert.assertTrue(breaker.firstRejection());
+    }
+
+    @Test
+    public void testFastFailsAreNotFailures() throws SQLException {
+        DatabaseHelper database = new DatabaseHelper(EmbeddedDatabase.url("BreakerTest"), "sa", "");
+        database.connect();
+        try {
+            CircuitBreaker breaker = database.getBreaker();
+            // Threshold of DatabaseHelper's breaker
+            for (int i = 0; i < 5; i++) {
+                breaker.recordFailure();
+            }
+            long rejected = Metrics.count("db.breaker.rejected");
+
+            for (int i = 0; i < 50; i++) {
+                Assert.assertNull(database.getPassword("test@example.com"));
+            }
+            Assert.assertTrue(Metrics.count("db.breaker.rejected") - rejected >= 50);
+            // Only the opening itself reported a rejection
+            Assert.assertFalse(breaker.firstRejection());
+
+            database.ping();
+            Assert.assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+            Assert.assertEquals(database.getPassword("test@example.com"), "Password123!");
+        } finally {
+            database.disconnect();
+        }
+    }
+}
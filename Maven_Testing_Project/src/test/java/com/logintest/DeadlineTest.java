@@ -0,0 +1,127 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for request deadlines: stage checks in LoginService and the capped
+ * pool borrow of DatabaseHelper over the embedded H2 database
+ */
+public class DeadlineTest {
+
+    @AfterMethod
+    public void clearDeadline() {
+        Deadline.clear();
+    }
+
+    @Test
+    public void testSpentBudgetFailsBeforeStore() {
+        AtomicInteger lookups = new AtomicInteger();
+        LoginService service = new LoginService(new InMemoryUserStore() {
+            @Override
+            public String getPassword(String email) {
+                lookups.incrementAndGet();
+                return super.getPassword(email);
+            }
+        });
+
+        Deadline.start(0);
+        Deadline.ExceededException exceeded = Assert.expectThrows(Deadline.ExceededException.class,
+                () -> service.validateLogin("late@example.com", "Password123!"));
+        Assert.assertEquals(exceeded.getStage(), "precheck");
+        Assert.assertEquals(lookups.get(), 0);
+
+        // Rejected input is answered without the store, whatever the budget
+        Assert.assertEquals(service.validateLogin("' OR '1'='1", "x").getOutcome(),
+                LoginService.LoginResult.Outcome.REJECTED);
+
+        Deadline.clear();
+        Assert.assertEquals(service.validateLogin("late@example.com", "Password123!").getOutcome(),
+                LoginService.LoginResult.Outcome.FAILURE);
+    }
+
+    @Test
+    public void testLastMillisecondIsNotReadAsNoTimeout() {
+        List<String> calls = new ArrayList<>();
+        Statement statement = recording(Statement.class, calls);
+        Connection connection = recording(Connection.class, calls);
+
+        // Less than a millisecond left, but not yet past the deadline
+        Deadline.start(1);
+        while (Deadline.remainingMillis() > 0) {
+            Thread.onSpinWait();
+        }
+        Assert.assertEquals(Assert.expectThrows(Deadline.ExceededException.class,
+                () -> Deadline.applyTo(statement)).getStage(), "query");
+        Assert.assertEquals(Assert.expectThrows(Deadline.ExceededException.class,
+                () -> Deadline.applyTo(connection)).getStage(), "borrow");
+        Assert.assertTrue(calls.isEmpty(), calls.toString());
+    }
+
+    @Test
+    public void testTimeoutsFollowRemainingBudget() throws SQLException {
+        List<String> calls = new ArrayList<>();
+        Deadline.start(1500);
+        Deadline.applyTo(recording(Statement.class, calls));
+        Assert.assertEquals(calls, List.of("setQueryTimeout 2"));
+
+        Deadline.clear();
+        calls.clear();
+        Deadline.applyTo(recording(Statement.class, calls));
+        Deadline.applyTo(recording(Connection.class, calls));
+        Assert.assertTrue(calls.isEmpty(), calls.toString());
+    }
+
+    @Test
+    public void testPoolWaitEndsWithDeadline() throws SQLException {
+        DatabaseHelper database = new DatabaseHelper(EmbeddedDatabase.url("DeadlineTest"), "sa", "");
+        database.connect();
+        List<Connection> held = new ArrayList<>();
+        try {
+            // Exhaust the pool so the next borrow has to wait
+            while (held.size() < database.getPool().getMaxSize()) {
+                held.add(database.getConnection());
+            }
+            LoginService service = new LoginService(database);
+
+            Deadline.start(200);
+            long started = System.nanoTime();
+            Deadline.ExceededException exceeded = Assert.expectThrows(Deadline.ExceededException.class,
+                    () -> service.validateLogin("test@example.com", "Password123!"));
+            long waitedMillis = (System.nanoTime() - started) / 1_000_000;
+
+            Assert.assertEquals(exceeded.getStage(), "lookup");
+            Assert.assertTrue(waitedMillis >= 150 && waitedMillis < 2000, "waited " + waitedMillis + " ms");
+            // The request's own budget says nothing about database health
+            Assert.assertEquals(database.getBreaker().getState(), CircuitBreaker.State.CLOSED);
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+            database.disconnect();
+        }
+    }
+
+    /**
+     * @return a JDBC object that only records the timeouts set on it
+     */
+    private static <T> T recording(Class<T> type, List<String> calls) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (method.getName().equals("setQueryTimeout")) {
+                calls.add("setQueryTimeout " + args[0]);
+            } else if (method.getName().equals("setNetworkTimeout")) {
+                calls.add("setNetworkTimeout " + args[1]);
+            }
+            return null;
+        }));
+    }
+}
@@ -0,0 +1,91 @@
+package com.logintest;
+
+import io.github.bonigarcia.wdm.WebDriverManager;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Thread-safe pool of Chrome drivers shared by the UI tests.
+ * Browsers are started once, reused across test methods and reset between them;
+ * pass -Dselenium.headless=false to watch the tests run.
+ */
+public final class DriverPool {
+    
+    private static final boolean HEADLESS = Boolean.parseBoolean(System.getProperty("selenium.headless", "true"));
+    
+    private static final BlockingQueue<WebDriver> IDLE = new LinkedBlockingQueue<>();
+    private static final List<WebDriver> ALL = new CopyOnWriteArrayList<>();
+    private static volatile boolean driverBinaryReady = false;
+    
+    private DriverPool() {
+    }
+    
+    /**
+     * Takes an idle browser, starting a new one if none is free
+     */
+    public static WebDriver acquire() {
+        WebDriver driver = IDLE.poll();
+        return driver != null ? driver : start();
+    }
+    
+    /**
+     * Resets browser state and returns the driver to the pool; broken drivers are discarded
+     */
+    public static void release(WebDriver driver) {
+        if (driver == null) {
+            return;
+        }
+        try {
+            driver.manage().deleteAllCookies();
+            ((JavascriptExecutor) driver).executeScript("window.localStorage.clear(); window.sessionStorage.clear();");
+            driver.get("about:blank");
+            IDLE.offer(driver);
+        } catch (WebDriverException e) {
+            ALL.remove(driver);
+            driver.quit();
+        }
+    }
+    
+    /**
+     * Quits every browser the pool has started
+     */
+    public static void shutdown() {
+        IDLE.clear();
+        for (WebDriver driver : ALL) {
+            try {
+                driver.quit();
+            } catch (WebDriverException ignored) {
+                // Browser already gone
+            }
+        }
+        ALL.clear();
+    }
+    
+    private static WebDriver start() {
+        setupDriverBinary();
+        ChromeOptions options = new ChromeOptions();
+        options.addArguments("--remote-allow-origins=*");
+        options.addArguments("--window-size=1920,1080");
+        if (HEADLESS) {
+            options.addArguments("--headless=new");
+        }
+        WebDriver driver = new ChromeDriver(options);
+        ALL.add(driver);
+        return driver;
+    }
+    
+    private static synchronized void setupDriverBinary() {
+        if (!driverBinaryReady) {
+            WebDriverManager.chromedriver().setup();
+            driverBinaryReady = true;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests for HeapCredentialCache: expiry and making room once full
+ */
+public class HeapCredentialCacheTest {
+
+    private static final long NO_EXPIRY = Long.MAX_VALUE / 2;
+
+    @Test
+    public void testExpiredEntriesMakeRoomOnceFull() throws InterruptedException {
+        HeapCredentialCache cache = new HeapCredentialCache(100, 50L);
+        byte[] digest = PasswordDigest.of("Password123!");
+        for (int i = 0; i < 100; i++) {
+            cache.put("old" + i + "@example.com", digest);
+        }
+        Thread.sleep(100);
+
+        cache.put("new@example.com", digest);
+        Assert.assertEquals(cache.lookup("new@example.com", digest), CredentialCache.Lookup.MATCH);
+        // The sweep dropped every expired entry, not just one
+        Assert.assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testFullCacheEvictsForNewEntries() {
+        HeapCredentialCache cache = new HeapCredentialCache(100, NO_EXPIRY);
+        byte[] digest = PasswordDigest.of("Password123!");
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("user" + i + "@example.com", digest);
+            Assert.assertEquals(cache.lookup("user" + i + "@example.com", digest), CredentialCache.Lookup.MATCH);
+        }
+        Assert.assertEquals(cache.size(), 100);
+
+        // Replacing a cached email evicts nothing
+        cache.put("user9999@example.com", PasswordDigest.of("Changed123!"));
+        Assert.assertEquals(cache.size(), 100);
+        Map<String, byte[]> visited = new HashMap<>();
+        cache.forEach(visited::put);
+        Assert.assertEquals(visited.size(), 100);
+    }
+
+    @Test
+    public void testZeroCapacityCachesNothing() {
+        HeapCredentialCache cache = new HeapCredentialCache(0, NO_EXPIRY);
+        byte[] digest = PasswordDigest.of("Password123!");
+        cache.put("user@example.com", digest);
+
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.lookup("user@example.com", digest), CredentialCache.Lookup.MISS);
+    }
+}
@@ -0,0 +1,150 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for HedgedUserStore over two in-memory stores with injected latency;
+ * a cancelled read ends early, as a cancelled JDBC statement would
+ */
+public class HedgedUserStoreTest {
+
+    private static final String EMAIL = "test@example.com";
+    private static final String PASSWORD = "Password123!";
+
+    private static ExecutorService executor;
+
+    @BeforeClass
+    public static void startExecutor() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterClass
+    public static void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSlowPrimaryIsHedgedAndCancelled() throws Exception {
+        SlowStore primary = new SlowStore();
+        SlowStore secondary = new SlowStore();
+        HedgedUserStore store = new HedgedUserStore(primary, secondary, executor, 95, 5);
+        warmUp(store);
+        long won = Metrics.count("hedge.won");
+        int hedged = secondary.reads.get();
+
+        primary.delayMillis = 5000;
+        long started = System.nanoTime();
+        Assert.assertEquals(store.getPassword(EMAIL), PASSWORD);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        Assert.assertTrue(elapsedMillis < 1000, "answered after " + elapsedMillis + " ms");
+        Assert.assertEquals(secondary.reads.get() - hedged, 1);
+        Assert.assertTrue(Metrics.count("hedge.won") > won);
+        Assert.assertTrue(primary.cancelled.await(5, TimeUnit.SECONDS), "slow primary read was not cancelled");
+    }
+
+    @Test
+    public void testUnknownUserFromSecondaryWaitsForPrimary() {
+        SlowStore primary = new SlowStore();
+        // A replica that lags behind, or whose breaker is open: DatabaseHelper answers null either way
+        SlowStore secondary = new SlowStore(false);
+        HedgedUserStore store = new HedgedUserStore(primary, secondary, executor, 95, 5);
+        warmUp(store);
+        int hedged = secondary.reads.get();
+
+        primary.delayMillis = 300;
+        long started = System.nanoTime();
+        Assert.assertEquals(store.getPassword(EMAIL), PASSWORD);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        Assert.assertEquals(secondary.reads.get() - hedged, 1);
+        Assert.assertTrue(elapsedMillis >= 250, "answered after " + elapsedMillis + " ms");
+        Assert.assertEquals(primary.cancelled.getCount(), 1L, "primary read was cancelled");
+    }
+
+    @Test
+    public void testBudgetCapsHedges() {
+        SlowStore primary = new SlowStore();
+        SlowStore secondary = new SlowStore();
+        HedgedUserStore store = new HedgedUserStore(primary, secondary, executor, 95, 5);
+        warmUp(store);
+        int hedged = secondary.reads.get();
+        long exhausted = Metrics.count("hedge.budget_exhausted");
+
+        // Every read is now far slower than the learned percentile; 40 reads stay below the
+        // next recomputation of the hedging delay, so a noisy warm-up cannot hide them
+        primary.delayMillis = 50;
+        for (int i = 0; i < 40; i++) {
+            Assert.assertEquals(store.getPassword(EMAIL), PASSWORD);
+        }
+
+        // At most 10 hedges saved up during the warm-up, plus 5% of 40 reads
+        int hedges = secondary.reads.get() - hedged;
+        Assert.assertTrue(hedges > 0 && hedges <= 12, hedges + " hedges");
+        Assert.assertTrue(Metrics.count("hedge.budget_exhausted") > exhausted);
+    }
+
+    /**
+     * Fast reads, so the store learns its latency percentile and saves up its hedge budget
+     */
+    private static void warmUp(HedgedUserStore store) {
+        for (int i = 0; i < 200; i++) {
+            Assert.assertEquals(store.getPassword(EMAIL), PASSWORD);
+        }
+    }
+
+    private static final class SlowStore extends InMemoryUserStore {
+        private final AtomicInteger reads = new AtomicInteger();
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+        private volatile long delayMillis;
+
+        SlowStore() {
+            this(true);
+        }
+
+        SlowStore(boolean hasUser) {
+            if (hasUser) {
+                addUser(EMAIL, PASSWORD);
+            }
+        }
+
+        @Override
+        public String getPassword(String email) {
+            reads.incrementAndGet();
+            if (delayMillis > 0) {
+                CountDownLatch finished = new CountDownLatch(1);
+                HedgedUserStore.track(cancellable(finished));
+                try {
+                    if (finished.await(delayMillis, TimeUnit.MILLISECONDS)) {
+                        cancelled.countDown();
+                        return null;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.getPassword(email);
+        }
+
+        private static Statement cancellable(CountDownLatch finished) {
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] {Statement.class},
+                    (proxy, method, args) -> {
+                        if ("cancel".equals(method.getName())) {
+                            finished.countDown();
+                        }
+                        return null;
+                    });
+        }
+    }
+}
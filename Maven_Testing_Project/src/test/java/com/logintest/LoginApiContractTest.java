@@ -0,0 +1,435 @@
+package com.logintest;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * API contract tests: LoginAPI runs on an ephemeral port inside the test JVM over an
+ * InMemoryUserStore, so these need neither a browser nor MySQL.
+ * Run only this tier with: mvn test -Pcontract
+ */
+public class LoginApiContractTest {
+
+    private static final Gson gson = new Gson();
+    private static final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private static final String VALID_EMAIL = "test@example.com";
+    private static final String VALID_PASSWORD = "Password123!";
+    private static final String ADMIN_TOKEN = "contract-test-admin";
+
+    private static Path snapshot;
+    private static String baseUrl;
+
+    @BeforeClass
+    public static void startApi() throws Exception {
+        InMemoryUserStore store = new ExportFailingStore();
+        store.addUser(VALID_EMAIL, VALID_PASSWORD);
+        LoginService service = new LoginService(store);
+        service.initialize();
+        System.setProperty("admin.token", ADMIN_TOKEN);
+
+        snapshot = Files.createTempFile("login-cache", ".snapshot");
+        Files.delete(snapshot);
+        LoginAPI.start(service, 0, snapshot);
+        baseUrl = "http://localhost:" + LoginAPI.getPort();
+    }
+
+    @AfterClass
+    public static void stopApi() throws IOException {
+        LoginAPI.shutdown();
+        Files.deleteIfExists(snapshot);
+        System.clearProperty("admin.token");
+    }
+
+    // FUNCTIONAL TESTING
+
+    @Test
+    public void testValidLogin() throws Exception {
+        HttpResponse<String> response = login(VALID_EMAIL, VALID_PASSWORD);
+        Assert.assertEquals(response.statusCode(), 200);
+        Assert.assertEquals(message(response), "Login Successful");
+        Assert.assertNotNull(parse(response).get("sessionToken"));
+    }
+
+    @Test
+    public void testEmailIsCaseInsensitive() throws Exception {
+        Assert.assertEquals(login("Test@Example.com", VALID_PASSWORD).statusCode(), 200);
+    }
+
+    @Test
+    public void testInvalidLogin() throws Exception {
+        assertInvalid(login("wrong@user.com", "WrongPass123"));
+    }
+
+    @Test
+    public void testCorrectEmailWrongPassword() throws Exception {
+        assertInvalid(login(VALID_EMAIL, "WrongPass123"));
+    }
+
+    @Test
+    public void testEmptyFields() throws Exception {
+        HttpResponse<String> response = login("", "");
+        Assert.assertEquals(response.statusCode(), 401);
+        Assert.assertEquals(message(response), "Email is required");
+    }
+
+    @Test
+    public void testInvalidEmailFormat() throws Exception {
+        assertInvalid(login("invalid-email", VALID_PASSWORD));
+    }
+
+    // BOUNDARY VALUE ANALYSIS
+
+    @Test
+    public void testEmailMaxLengthBoundary() throws Exception {
+        assertInvalid(login("a".repeat(42) + "@test.com", VALID_PASSWORD));
+    }
+
+    @Test
+    public void testPasswordMaxBoundary() throws Exception {
+        assertInvalid(login(VALID_EMAIL, "A".repeat(31)));
+    }
+
+    @Test
+    public void testOversizedBodyRejected() throws Exception {
+        HttpResponse<String> response = post("/api/login", "application/json", "{\"email\":\"" + "a".repeat(4096) + "\"}");
+        Assert.assertEquals(response.statusCode(), 413);
+    }
+
+    // NEGATIVE TESTING
+
+    @Test
+    public void testSpacesOnlyInput() throws Exception {
+        Assert.assertEquals(login("   ", "   ").statusCode(), 401);
+    }
+
+    @Test
+    public void testLeadingTrailingSpaces() throws Exception {
+        assertInvalid(login("  test@example.com  ", "  Password123!  "));
+    }
+
+    @Test
+    public void testMalformedJson() throws Exception {
+        Assert.assertEquals(post("/api/login", "application/json", "{\"email\":").statusCode(), 400);
+    }
+
+    @Test
+    public void testRequestTimeoutHeader() throws Exception {
+        Assert.assertEquals(login(VALID_EMAIL, VALID_PASSWORD, "1000").statusCode(), 200);
+        Assert.assertEquals(login(VALID_EMAIL, VALID_PASSWORD, "soon").statusCode(), 400);
+        Assert.assertEquals(login(VALID_EMAIL, VALID_PASSWORD, "0").statusCode(), 400);
+    }
+
+    @Test
+    public void testWrongContentType() throws Exception {
+        Assert.assertEquals(post("/api/login", "text/plain", "{}").statusCode(), 415);
+    }
+
+    // SECURITY TESTING
+
+    @Test
+    public void testSQLInjection() throws Exception {
+        assertInvalid(login("' OR '1'='1", "password"));
+    }
+
+    @Test
+    public void testSQLInjectionInPassword() throws Exception {
+        assertInvalid(login(VALID_EMAIL, "' OR '1'='1"));
+    }
+
+    @Test
+    public void testXSSInjection() throws Exception {
+        assertInvalid(login("<script>alert(1)</script>@test.com", VALID_PASSWORD));
+    }
+
+    @Test
+    public void testHTMLInjection() throws Exception {
+        assertInvalid(login("<b>user</b>@test.com", VALID_PASSWORD));
+    }
+
+    @Test
+    public void testUnicodeEmail() throws Exception {
+        assertInvalid(login("üser@example.com", VALID_PASSWORD));
+    }
+
+    // REGISTRATION TESTING
+
+    @Test
+    public void testRegistrationThenLogin() throws Exception {
+        String email = "newuser-" + Thread.currentThread().getId() + "@example.com";
+        HttpResponse<String> response = register(email, "StrongPass1!");
+        Assert.assertEquals(response.statusCode(), 201);
+        Assert.assertEquals(message(response), "Registration Successful");
+        Assert.assertEquals(login(email, "StrongPass1!").statusCode(), 200);
+    }
+
+    @Test
+    public void testDuplicateRegistration() throws Exception {
+        Assert.assertEquals(register(VALID_EMAIL, "StrongPass1!").statusCode(), 409);
+    }
+
+    @Test
+    public void testRegistrationRequiresPassword() throws Exception {
+        Assert.assertEquals(register("someone@example.com", "").statusCode(), 400);
+    }
+
+    // BULK VERIFICATION
+
+    @Test
+    public void testVerifyStreamRequiresAdminToken() throws Exception {
+        HttpResponse<String> response = post("/api/login/verify-stream", "application/x-ndjson",
+                credentials(VALID_EMAIL, VALID_PASSWORD) + "\n");
+        Assert.assertEquals(response.statusCode(), 403);
+    }
+
+    @Test
+    public void testVerifyStreamAnswersEveryRecord() throws Exception {
+        // Far beyond the 1 KB body limit of the other endpoints, with a malformed line every 100 records
+        int records = 2000;
+        StringBuilder body = new StringBuilder();
+        for (int line = 1; line <= records; line++) {
+            if (line % 100 == 0) {
+                body.append("not json\n");
+            } else if (line % 2 == 1) {
+                body.append(credentials(VALID_EMAIL, VALID_PASSWORD)).append('\n');
+            } else {
+                body.append(credentials("user" + line + "@example.com", "WrongPass123")).append('\n');
+            }
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/login/verify-stream"))
+                .header("Content-Type", "application/x-ndjson")
+                .header("X-Admin-Token", ADMIN_TOKEN)
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(response.statusCode(), 200);
+
+        String[] lines = response.body().split("\n");
+        Assert.assertEquals(lines.length, records + 1);
+        boolean[] seen = new boolean[records + 1];
+        for (int i = 0; i < records; i++) {
+            Map<String, Object> result = gson.fromJson(lines[i], new TypeToken<Map<String, Object>>(){}.getType());
+            int line = ((Number) result.get("line")).intValue();
+            Assert.assertFalse(seen[line], "line " + line + " answered twice");
+            seen[line] = true;
+            Assert.assertEquals(result.get("success"), line % 2 == 1 && line % 100 != 0, "line " + line);
+            if (line % 100 == 0) {
+                Assert.assertEquals(result.get("message"), "Malformed record");
+            }
+        }
+        Map<String, Object> summary = gson.fromJson(lines[records], new TypeToken<Map<String, Object>>(){}.getType());
+        Assert.assertEquals(summary.get("done"), true);
+        Assert.assertEquals(((Number) summary.get("records")).intValue(), records);
+        Assert.assertEquals(((Number) summary.get("valid")).intValue(), records / 2);
+    }
+
+    @Test
+    public void testVerifyStreamReportsInputLineNumbers() throws Exception {
+        // Blank lines are skipped, but still count towards the reported line
+        String body = "\n" + credentials(VALID_EMAIL, VALID_PASSWORD) + "\n\n   \nnot json\n";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/login/verify-stream"))
+                .header("Content-Type", "application/x-ndjson")
+                .header("X-Admin-Token", ADMIN_TOKEN)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(response.statusCode(), 200);
+
+        Map<Integer, Object> messages = new HashMap<>();
+        String[] lines = response.body().split("\n");
+        Assert.assertEquals(lines.length, 3);
+        for (int i = 0; i < 2; i++) {
+            Map<String, Object> result = gson.fromJson(lines[i], new TypeToken<Map<String, Object>>(){}.getType());
+            messages.put(((Number) result.get("line")).intValue(), result.get("message"));
+        }
+        Assert.assertEquals(messages.get(2), "Login Successful");
+        Assert.assertEquals(messages.get(5), "Malformed record");
+        Map<String, Object> summary = gson.fromJson(lines[2], new TypeToken<Map<String, Object>>(){}.getType());
+        Assert.assertEquals(((Number) summary.get("records")).intValue(), 2);
+    }
+
+    @Test
+    public void testExportRequiresAdminToken() throws Exception {
+        Assert.assertEquals(get("/api/admin/users/export").statusCode(), 403);
+    }
+
+    @Test
+    public void testExportListsUsersInEmailOrderWithoutPasswords() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/admin/users/export?format=csv"))
+                .header("X-Admin-Token", ADMIN_TOKEN)
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(response.statusCode(), 200);
+
+        String[] lines = response.body().split("\n");
+        Assert.assertEquals(lines[0], "email,created_at,updated_at");
+        Assert.assertTrue(lines.length > 1);
+        for (int i = 2; i < lines.length; i++) {
+            Assert.assertTrue(lines[i - 1].compareToIgnoreCase(lines[i]) < 0, "not ordered at line " + i);
+        }
+        Assert.assertFalse(response.body().contains(VALID_PASSWORD));
+    }
+
+    @Test
+    public void testNdjsonExportEndsWithDoneLine() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/admin/users/export"))
+                .header("X-Admin-Token", ADMIN_TOKEN)
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(response.statusCode(), 200);
+
+        String[] lines = response.body().split("\n");
+        Map<String, Object> done = gson.fromJson(lines[lines.length - 1], new TypeToken<Map<String, Object>>(){}.getType());
+        Assert.assertEquals(done.get("done"), true);
+        Assert.assertEquals(((Number) done.get("users")).intValue(), lines.length - 1);
+    }
+
+    @Test
+    public void testExportFailingMidStreamBreaksTheTransfer() {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/admin/users/export?after="
+                        + ExportFailingStore.FAIL_AFTER))
+                .header("X-Admin-Token", ADMIN_TOKEN)
+                .build();
+        Assert.assertThrows(IOException.class, () -> client.send(request, HttpResponse.BodyHandlers.ofString()));
+    }
+
+    @Test
+    public void testStatsRequireAdminToken() throws Exception {
+        Assert.assertEquals(get("/api/stats").statusCode(), 403);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStatsCountLoginOutcomes() throws Exception {
+        login(VALID_EMAIL, VALID_PASSWORD);
+        login(VALID_EMAIL, "WrongPass123");
+        login("' OR 1=1 --", VALID_PASSWORD);
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/stats?minutes=2&domain=example.com"))
+                .header("X-Admin-Token", ADMIN_TOKEN)
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(response.statusCode(), 200);
+
+        Map<String, Object> stats = parse(response);
+        Map<String, Object> totals = (Map<String, Object>) stats.get("totals");
+        Assert.assertTrue(((Number) totals.get("success")).longValue() >= 1);
+        Assert.assertTrue(((Number) totals.get("failure")).longValue() >= 1);
+        Assert.assertEquals(((List<Object>) stats.get("minutes")).size(), 2);
+        Assert.assertTrue(response.body().contains("\"email\":\"test@example.com\""));
+    }
+
+    // OPERATIONS
+
+    @Test
+    public void testReadyAfterStart() throws Exception {
+        Assert.assertEquals(get("/api/ready").statusCode(), 200);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStartupTimelineRecordsFirstLogin() throws Exception {
+        login(VALID_EMAIL, VALID_PASSWORD);
+        HttpResponse<String> response = get("/api/startup");
+        Assert.assertEquals(response.statusCode(), 200);
+
+        Map<String, Object> phases = (Map<String, Object>) parse(response).get("phasesMs");
+        Assert.assertTrue(phases.containsKey("http_listening"));
+        Assert.assertTrue(phases.containsKey("ready"));
+        Assert.assertTrue(((Number) phases.get("first_login")).longValue() > 0);
+    }
+
+    @Test
+    public void testHealthReport() throws Exception {
+        HttpResponse<String> response = get("/api/health");
+        Assert.assertEquals(response.statusCode(), 200);
+        Assert.assertEquals(parse(response).get("status"), "ok");
+    }
+
+    // HELPER METHODS
+
+    private static HttpResponse<String> login(String email, String password) throws Exception {
+        return post("/api/login", "application/json", credentials(email, password));
+    }
+
+    private static HttpResponse<String> login(String email, String password, String timeoutMillis) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/login"))
+                .header("Content-Type", "application/json")
+                .header("X-Request-Timeout-Ms", timeoutMillis)
+                .POST(HttpRequest.BodyPublishers.ofString(credentials(email, password)))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> register(String email, String password) throws Exception {
+        return post("/api/register", "application/json", credentials(email, password));
+    }
+
+    private static String credentials(String email, String password) {
+        Map<String, String> body = new HashMap<>();
+        body.put("email", email);
+        body.put("password", password);
+        return gson.toJson(body);
+    }
+
+    private static HttpResponse<String> post(String path, String contentType, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static Map<String, Object> parse(HttpResponse<String> response) {
+        return gson.fromJson(response.body(), new TypeToken<Map<String, Object>>(){}.getType());
+    }
+
+    private static String message(HttpResponse<String> response) {
+        return String.valueOf(parse(response).get("message"));
+    }
+
+    private static void assertInvalid(HttpResponse<String> response) {
+        Assert.assertEquals(response.statusCode(), 401);
+        Assert.assertEquals(message(response), "Invalid credentials");
+    }
+
+    /**
+     * Exporting after FAIL_AFTER returns a full first page, then fails on the second
+     */
+    private static class ExportFailingStore extends InMemoryUserStore {
+
+        static final String FAIL_AFTER = "export-fails@example.com";
+        private static final String FIRST_PAGE_EMAIL = "export-fails-page-1@example.com";
+
+        @Override
+        public int forEachUserPage(String afterEmail, int limit, UserRowAction action) {
+            if (FAIL_AFTER.equals(afterEmail)) {
+                action.accept(FIRST_PAGE_EMAIL, null, null);
+                return limit;
+            }
+            if (FIRST_PAGE_EMAIL.equals(afterEmail)) {
+                throw new IllegalStateException("Simulated database failure");
+            }
+            return super.forEachUserPage(afterEmail, limit, action);
+        }
+    }
+}
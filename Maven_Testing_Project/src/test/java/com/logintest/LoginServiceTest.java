@@ -0,0 +1,158 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Tests that the existence filter and credential cache never outvote the store
+ */
+public class LoginServiceTest {
+
+    private static final String PASSWORD = "Password123!";
+
+    @Test
+    public void testUserAddedElsewhereIsFoundAfterCatchUp() {
+        InMemoryUserStore store = new InMemoryUserStore();
+        LoginService service = warmService(store);
+        Assert.assertFalse(service.doesUserExist("later@example.com"));
+
+        // Another instance (or DatabaseHelper.addUsers) writes to the same store
+        store.addUser("later@example.com", PASSWORD);
+        Assert.assertFalse(service.doesUserExist("later@example.com"));
+        service.catchUp();
+        Assert.assertTrue(service.doesUserExist("later@example.com"));
+        Assert.assertTrue(service.validateLogin("later@example.com", PASSWORD).isSuccess());
+    }
+
+    @Test
+    public void testUnknownEmailsNeverReachTheStore() {
+        AtomicInteger storeCalls = new AtomicInteger();
+        InMemoryUserStore store = new InMemoryUserStore() {
+            @Override
+            public String getPassword(String email) {
+                storeCalls.incrementAndGet();
+                return super.getPassword(email);
+            }
+
+            @Override
+            public boolean userExists(String email) {
+                storeCalls.incrementAndGet();
+                return super.userExists(email);
+            }
+
+            @Override
+            public void forEachUserUpdatedSince(long since, BiConsumer<String, String> action) {
+                storeCalls.incrementAndGet();
+                super.forEachUserUpdatedSince(since, action);
+            }
+        };
+        LoginService service = warmService(store);
+        storeCalls.set(0);
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertFalse(service.doesUserExist("flood" + i + "@example.com"));
+            Assert.assertFalse(service.validateLogin("flood" + i + "@example.com", PASSWORD).isSuccess());
+        }
+        Assert.assertEquals(storeCalls.get(), 0);
+    }
+
+    @Test
+    public void testBackgroundCatchUp() throws InterruptedException {
+        InMemoryUserStore store = new InMemoryUserStore();
+        LoginService service = new LoginService(store, 20L);
+        service.loadSnapshot(Paths.get("target", "no-such-login-cache.snapshot"));
+        try {
+            store.addUser("later@example.com", PASSWORD);
+            long giveUpAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!service.doesUserExist("later@example.com") && System.nanoTime() - giveUpAt < 0) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(service.doesUserExist("later@example.com"));
+        } finally {
+            service.cleanup();
+        }
+    }
+
+    @Test
+    public void testRemovedUserStopsMatchingFromCache() {
+        InMemoryUserStore store = new InMemoryUserStore();
+        store.addUser("gone@example.com", PASSWORD);
+        LoginService service = warmService(store);
+        Assert.assertTrue(service.validateLogin("gone@example.com", PASSWORD).isSuccess());
+        Assert.assertEquals(service.getCachedCredentialCount(), 1);
+
+        Assert.assertTrue(service.removeUser("gone@example.com"));
+        Assert.assertFalse(service.validateLogin("gone@example.com", PASSWORD).isSuccess());
+    }
+
+    @Test
+    public void testRemovedUserLosesSessions() {
+        InMemoryUserStore store = new InMemoryUserStore();
+        store.addUser("session@example.com", PASSWORD);
+        LoginService service = new LoginService(store);
+        String first = service.createSession("session@example.com");
+        String second = service.createSession("Session@Example.com");
+        String other = service.createSession("other@example.com");
+
+        service.removeUser("session@example.com");
+        Assert.assertNull(service.verifySession(first));
+        Assert.assertNull(service.verifySession(second));
+        Assert.assertEquals(service.verifySession(other), "other@example.com");
+    }
+
+    @Test
+    public void testRegistrationReplacesCachedCredential() {
+        InMemoryUserStore store = new InMemoryUserStore();
+        store.addUser("reused@example.com", PASSWORD);
+        LoginService service = warmService(store);
+        Assert.assertTrue(service.validateLogin("reused@example.com", PASSWORD).isSuccess());
+
+        // Deleted by another instance, then registered again here with a new password
+        store.removeUser("reused@example.com");
+        Assert.assertTrue(service.registerUser("reused@example.com", "NewPassword456!"));
+        Assert.assertFalse(service.validateLogin("reused@example.com", PASSWORD).isSuccess());
+        Assert.assertTrue(service.validateLogin("reused@example.com", "NewPassword456!").isSuccess());
+    }
+
+    @Test
+    public void testLookupRacingRemovalIsNotCached() {
+        InMemoryUserStore store = new InMemoryUserStore();
+        store.addUser("racing@example.com", PASSWORD);
+        LoginService service = new LoginService(store);
+
+        // The stored password is read, then the user is removed before the result is cached
+        long version = service.cacheVersion();
+        String storedPassword = store.getPassword("racing@example.com");
+        service.removeUser("racing@example.com");
+        Assert.assertTrue(service.completeLogin("racing@example.com", PASSWORD, storedPassword, version).isSuccess());
+
+        Assert.assertFalse(service.validateLogin("racing@example.com", PASSWORD).isSuccess());
+    }
+
+    @Test
+    public void testExpiredCredentialIsAMiss() {
+        byte[] digest = PasswordDigest.of(PASSWORD);
+        CredentialCache fresh = new HeapCredentialCache(10, 60_000L);
+        fresh.put("user@example.com", digest);
+        Assert.assertEquals(fresh.lookup("user@example.com", digest), CredentialCache.Lookup.MATCH);
+
+        CredentialCache expired = new HeapCredentialCache(10, 0L);
+        expired.put("user@example.com", digest);
+        Assert.assertEquals(expired.lookup("user@example.com", digest), CredentialCache.Lookup.MISS);
+    }
+
+    /**
+     * @return service whose existence filter is complete, as after startup, and only catches
+     *         up when the test calls {@link LoginService#catchUp()}
+     */
+    private static LoginService warmService(UserStore store) {
+        LoginService service = new LoginService(store, 0L);
+        service.loadSnapshot(Paths.get("target", "no-such-login-cache.snapshot"));
+        return service;
+    }
+}
@@ -0,0 +1,131 @@
+package com.logintest;
+
+import com.logintest.LoginService.LoginResult.Outcome;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for the per-minute login statistics, on a controlled clock; rollups are
+ * written to the embedded H2 database.
+ */
+public class LoginStatsTest {
+
+    private static final long MINUTE = 60_000L;
+    // 2026-01-01T00:00:00Z
+    private static final long START = 1_767_225_600_000L;
+
+    private static DatabaseHelper database;
+
+    @BeforeClass
+    public static void connect() throws SQLException {
+        database = new DatabaseHelper(EmbeddedDatabase.url("StatsTest"), "sa", "");
+        database.connect();
+    }
+
+    @AfterClass
+    public static void disconnect() {
+        database.disconnect();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCountsPerMinuteAndDomain() {
+        AtomicLong clock = new AtomicLong(START);
+        LoginStats stats = new LoginStats(60, 2, 3, clock::get);
+        stats.record("a@example.com", Outcome.SUCCESS);
+        stats.record("B@Example.com", Outcome.FAILURE);
+        stats.record("b@example.com", Outcome.FAILURE);
+        stats.record("c@test.org", Outcome.FAILURE);
+        stats.record("f@overflow.io", Outcome.SUCCESS);
+        clock.addAndGet(MINUTE);
+        stats.record("d@third.net", Outcome.REJECTED);
+        stats.record(null, Outcome.REJECTED);
+        stats.record("e@fourth.net", Outcome.SUCCESS);
+
+        Map<String, Object> all = stats.snapshot(2, null);
+        List<Map<String, Object>> minutes = (List<Map<String, Object>>) all.get("minutes");
+        Assert.assertEquals(minutes.get(0).get("success"), 2L);
+        Assert.assertEquals(minutes.get(0).get("failure"), 3L);
+        Assert.assertEquals(minutes.get(1).get("rejected"), 2L);
+        Assert.assertEquals(((Map<String, Object>) all.get("totals")).get("success"), 3L);
+
+        // Case-insensitive domains; beyond two domains a minute the rest counts as "(other)"
+        Map<String, Object> example = stats.snapshot(2, "EXAMPLE.com");
+        Assert.assertEquals(((Map<String, Object>) example.get("totals")).get("failure"), 2L);
+        Assert.assertEquals(((Map<String, Object>) stats.snapshot(2, LoginStats.OTHER_DOMAINS).get("totals")).get("success"), 1L);
+
+        List<Map<String, Object>> emails = (List<Map<String, Object>>) all.get("topFailingEmails");
+        Assert.assertEquals(emails.get(0).get("email"), "b@example.com");
+        Assert.assertEquals(emails.get(0).get("failures"), 2L);
+        List<Map<String, Object>> domains = (List<Map<String, Object>>) all.get("topFailingDomains");
+        Assert.assertEquals(domains.get(0).get("domain"), "example.com");
+
+        // Rejected input counts in the totals only and takes no domain slot
+        List<Map<String, Object>> byDomain = (List<Map<String, Object>>) all.get("domains");
+        Assert.assertTrue(byDomain.stream().noneMatch(row -> "third.net".equals(row.get("domain"))), byDomain.toString());
+        Assert.assertEquals(((Map<String, Object>) stats.snapshot(2, LoginStats.OTHER_DOMAINS).get("totals")).get("rejected"), 0L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBulkValidationIsNotCounted() {
+        InMemoryUserStore store = new InMemoryUserStore();
+        store.addUser("bulk@example.com", "Password123!");
+        LoginService service = new LoginService(store);
+        service.validateLogins(List.of(new String[] {"bulk@example.com", "Password123!"},
+                new String[] {"bulk@example.com", "Wrong123!"}, new String[] {"not an email", "x"}));
+
+        Map<String, Object> totals = (Map<String, Object>) service.getStats().snapshot(1, null).get("totals");
+        Assert.assertEquals(totals.get("success"), 0L);
+        Assert.assertEquals(totals.get("failure"), 0L);
+        Assert.assertEquals(totals.get("rejected"), 0L);
+
+        service.validateLogin("bulk@example.com", "Password123!");
+        totals = (Map<String, Object>) service.getStats().snapshot(1, null).get("totals");
+        Assert.assertEquals(totals.get("success"), 1L);
+    }
+
+    @Test
+    public void testFlushWritesCompletedMinutesOnceAndMergesRewrites() throws SQLException {
+        AtomicLong clock = new AtomicLong(START);
+        LoginStats stats = new LoginStats(60, 16, 3, clock::get);
+        stats.start(database);
+        stats.record("a@flush.com", Outcome.SUCCESS);
+        stats.record("b@flush.com", Outcome.FAILURE);
+
+        Assert.assertEquals(stats.flush(), 0, "the current minute is not complete");
+        clock.addAndGet(MINUTE + 10_000);
+        stats.record("c@flush.com", Outcome.SUCCESS);
+        Assert.assertEquals(stats.flush(), 2, "one totals row and one domain row");
+        Assert.assertEquals(stats.flush(), 0);
+        Assert.assertEquals(count("*", "successes"), 1);
+        Assert.assertEquals(count("flush.com", "failures"), 1);
+
+        // Stopping writes the current minute too; a second writer of the same minute adds to it
+        stats.stop();
+        LoginStats restarted = new LoginStats(60, 16, 3, clock::get);
+        restarted.start(database);
+        restarted.record("d@flush.com", Outcome.SUCCESS);
+        restarted.stop();
+        Assert.assertEquals(count("*", "successes"), 3);
+    }
+
+    private static long count(String domain, String column) throws SQLException {
+        try (Connection connection = database.getConnection();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT SUM(" + column + ") FROM login_stats_minute WHERE domain = '" + domain + "'")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
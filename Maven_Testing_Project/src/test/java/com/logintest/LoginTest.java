@@ -1,20 +1,21 @@
 package com.logintest;
 
-import io.github.bonigarcia.wdm.WebDriverManager;
 import org.openqa.selenium.*;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.support.ui.*;
 import org.testng.Assert;
 import org.testng.annotations.*;
 
 import java.sql.SQLException;
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class LoginTest {
 
-    private WebDriver driver;
-    private WebDriverWait wait;
+    // Test methods run in parallel (see surefire config), so each thread keeps its own browser
+    private static final ThreadLocal<WebDriver> DRIVER = new ThreadLocal<>();
+    private static final ThreadLocal<WebDriverWait> WAIT = new ThreadLocal<>();
+    private static final List<String> registeredEmails = new CopyOnWriteArrayList<>();
     private static LoginService loginService;
 
     private final String BASE_URL = "http://localhost:3000";
@@ -41,26 +42,41 @@ public class LoginTest {
 
     @AfterClass
     public static void cleanupDatabase() {
-        if (loginService != null) loginService.cleanup();
+        DriverPool.shutdown();
+        if (loginService != null) {
+            for (String email : registeredEmails) loginService.removeUser(email);
+            loginService.cleanup();
+        }
     }
 
     // ---------- DRIVER SETUP ----------
 
     @BeforeMethod
     public void setup() {
-        WebDriverManager.chromedriver().setup();
-        ChromeOptions options = new ChromeOptions();
-        options.addArguments("--remote-allow-origins=*");
-
-        driver = new ChromeDriver(options);
-        driver.manage().window().maximize();
-        wait = new WebDriverWait(driver, Duration.ofSeconds(10));
+        WebDriver driver = DriverPool.acquire();
+        DRIVER.set(driver);
+        WAIT.set(new WebDriverWait(driver, Duration.ofSeconds(10)));
         driver.get(BASE_URL);
     }
 
     @AfterMethod
     public void tearDown() {
-        if (driver != null) driver.quit();
+        DriverPool.release(DRIVER.get());
+        DRIVER.remove();
+        WAIT.remove();
+    }
+
+    private WebDriver driver() {
+        return DRIVER.get();
+    }
+
+    /**
+     * Email unique to this thread and run, so parallel registrations never collide
+     */
+    private String uniqueEmail(String prefix) {
+        String email = prefix + "-" + Thread.currentThread().getId() + "-" + System.nanoTime() + "@example.com";
+        registeredEmails.add(email);
+        return email;
     }
 
    
@@ -160,7 +176,7 @@ public class LoginTest {
     public void testRegistrationSuccess() {
         switchToRegister();
 
-        typeEmail("newuser@example.com");
+        typeEmail(uniqueEmail("newuser"));
         typePassword("StrongPass1!");
         typeConfirmPassword("StrongPass1!");
 
@@ -173,7 +189,7 @@ public class LoginTest {
     public void testPasswordMismatch() {
         switchToRegister();
 
-        typeEmail("user2@example.com");
+        typeEmail(uniqueEmail("user2"));
         typePassword("Password123!");
         typeConfirmPassword("Different123!");
 
@@ -205,17 +221,17 @@ public class LoginTest {
     @Test
     public void testEnterKeySubmission() {
         typeEmail(VALID_EMAIL);
-        WebElement pass = driver.findElement(By.cssSelector("[data-testid='password-input']"));
+        WebElement pass = driver().findElement(By.cssSelector("[data-testid='password-input']"));
         pass.sendKeys(VALID_PASSWORD + Keys.ENTER);
         assertStatusContains("Login Successful");
     }
 
     @Test
     public void testPasswordVisibilityToggle() {
-        WebElement pass = driver.findElement(By.cssSelector("[data-testid='password-input']"));
+        WebElement pass = driver().findElement(By.cssSelector("[data-testid='password-input']"));
         pass.sendKeys("Password123!");
 
-        WebElement toggle = driver.findElement(By.cssSelector("button[type='button']"));
+        WebElement toggle = driver().findElement(By.cssSelector("button[type='button']"));
         toggle.click();
 
         Assert.assertEquals(pass.getAttribute("type"), "text");
@@ -232,60 +248,58 @@ public class LoginTest {
     }
 
     private void typeEmail(String email) {
-        driver.findElement(By.cssSelector("[data-testid='email-input']")).sendKeys(email);
+        driver().findElement(By.cssSelector("[data-testid='email-input']")).sendKeys(email);
     }
 
     private void typePassword(String pass) {
-        driver.findElement(By.cssSelector("[data-testid='password-input']")).sendKeys(pass);
+        driver().findElement(By.cssSelector("[data-testid='password-input']")).sendKeys(pass);
     }
 
     private void clearPassword() {
-        driver.findElement(By.cssSelector("[data-testid='password-input']")).clear();
+        driver().findElement(By.cssSelector("[data-testid='password-input']")).clear();
     }
 
     private void typeConfirmPassword(String pass) {
-        driver.findElement(By.cssSelector("[data-testid='confirm-password-input']")).sendKeys(pass);
+        driver().findElement(By.cssSelector("[data-testid='confirm-password-input']")).sendKeys(pass);
     }
 
     private void clickSubmit() {
-        driver.findElement(By.cssSelector("[data-testid='submit-button']")).click();
+        driver().findElement(By.cssSelector("[data-testid='submit-button']")).click();
     }
 
     private void switchToRegister() {
-        driver.findElement(By.cssSelector("[data-testid='toggle-auth-mode']")).click();
+        driver().findElement(By.cssSelector("[data-testid='toggle-auth-mode']")).click();
     }
 
     private String getStrengthText() {
-        return driver.findElement(By.cssSelector("[data-testid='password-strength'] p")).getText();
+        return driver().findElement(By.cssSelector("[data-testid='password-strength'] p")).getText();
     }
 
     private void assertStatusContains(String text) {
-        // Add a small delay to ensure response has arrived
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        WebElement status = wait.until(
-                ExpectedConditions.presenceOfElementLocated(
-                        By.cssSelector("[data-testid='status-message']")));
+        // Wait for the status element's content rather than sleeping a fixed time
+        By statusLocator = By.cssSelector("[data-testid='status-message']");
+        String expected = text.toLowerCase();
         try {
-            Thread.sleep(200); // Give a bit more time for visibility
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            WAIT.get().until(d -> {
+                List<WebElement> status = d.findElements(statusLocator);
+                return !status.isEmpty() && status.get(0).getText().toLowerCase().contains(expected);
+            });
+        } catch (TimeoutException e) {
+            List<WebElement> status = driver().findElements(statusLocator);
+            Assert.fail("Status message did not contain '" + text + "', was: "
+                    + (status.isEmpty() ? "<missing>" : status.get(0).getText()));
         }
-        Assert.assertTrue(status.getText().toLowerCase().contains(text.toLowerCase()));
     }
 
     private void assertEmailError(String text) {
-        WebElement error = wait.until(
+        WebElement error = WAIT.get().until(
                 ExpectedConditions.visibilityOfElementLocated(
                         By.cssSelector("[data-testid='email-error']")));
         Assert.assertTrue(error.getText().toLowerCase().contains(text.toLowerCase()));
     }
 
     private void assertPasswordError(String text) {
-        WebElement error = wait.until(
+        WebElement error = WAIT.get().until(
                 ExpectedConditions.visibilityOfElementLocated(
                         By.cssSelector("[data-testid='password-error']")));
         Assert.assertTrue(error.getText().toLowerCase().contains(text.toLowerCase()));
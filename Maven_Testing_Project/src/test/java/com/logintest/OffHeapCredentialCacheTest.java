@@ -0,0 +1,165 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for OffHeapCredentialCache: probing, capacity, expiry and tombstone compaction
+ */
+public class OffHeapCredentialCacheTest {
+
+    private static final long NO_EXPIRY = Long.MAX_VALUE / 2;
+
+    @Test
+    public void testLookupMatchMismatchAndMiss() {
+        OffHeapCredentialCache cache = new OffHeapCredentialCache(1000, NO_EXPIRY);
+        cache.put("user@example.com", PasswordDigest.of("Password123!"));
+
+        Assert.assertEquals(cache.lookup("user@example.com", PasswordDigest.of("Password123!")), CredentialCache.Lookup.MATCH);
+        Assert.assertEquals(cache.lookup("user@example.com", PasswordDigest.of("Wrong123!")), CredentialCache.Lookup.MISMATCH);
+        Assert.assertEquals(cache.lookup("other@example.com", PasswordDigest.of("Password123!")), CredentialCache.Lookup.MISS);
+
+        // Replacing keeps one entry
+        cache.put("user@example.com", PasswordDigest.of("Changed123!"));
+        Assert.assertEquals(cache.size(), 1);
+        Assert.assertEquals(cache.lookup("user@example.com", PasswordDigest.of("Changed123!")), CredentialCache.Lookup.MATCH);
+
+        cache.invalidate("user@example.com");
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.lookup("user@example.com", PasswordDigest.of("Changed123!")), CredentialCache.Lookup.MISS);
+    }
+
+    @Test
+    public void testUnstorableEmailsAreSkipped() {
+        OffHeapCredentialCache cache = new OffHeapCredentialCache(1000, NO_EXPIRY);
+        byte[] digest = PasswordDigest.of("Password123!");
+        String tooLong = "a".repeat(OffHeapCredentialCache.MAX_EMAIL_BYTES) + "@example.com";
+        cache.put(tooLong, digest);
+        cache.put("\u00fcser@example.com", digest);
+        cache.put("", digest);
+
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.lookup(tooLong, digest), CredentialCache.Lookup.MISS);
+    }
+
+    @Test
+    public void testFullSegmentsEvictForNewEntries() {
+        OffHeapCredentialCache cache = new OffHeapCredentialCache(16, NO_EXPIRY);
+        byte[] digest = PasswordDigest.of("Password123!");
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("user" + i + "@example.com", digest);
+        }
+        // 16 segments of 16 slots, each at most 75% full
+        Assert.assertTrue(cache.size() <= 16 * 12, "size " + cache.size());
+        Assert.assertTrue(cache.size() > 0);
+        // The newest emails are still admitted
+        Assert.assertEquals(cache.lookup("user9999@example.com", digest), CredentialCache.Lookup.MATCH);
+        Assert.assertEquals(cache.lookup("user0@example.com", digest), CredentialCache.Lookup.MISS);
+    }
+
+    @Test
+    public void testExpiredEntriesMakeRoomOnceFull() throws InterruptedException {
+        OffHeapCredentialCache cache = new OffHeapCredentialCache(16, 50L);
+        byte[] digest = PasswordDigest.of("Password123!");
+        for (int i = 0; i < 1000; i++) {
+            cache.put("old" + i + "@example.com", digest);
+        }
+        Thread.sleep(100);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("new" + i + "@example.com", digest);
+            Assert.assertEquals(cache.lookup("new" + i + "@example.com", digest), CredentialCache.Lookup.MATCH);
+        }
+        Assert.assertTrue(cache.size() <= 16 * 12, "size " + cache.size());
+    }
+
+    @Test
+    public void testExpiredEntriesAreMissesAndNotVisited() {
+        OffHeapCredentialCache cache = new OffHeapCredentialCache(1000, 0L);
+        byte[] digest = PasswordDigest.of("Password123!");
+        cache.put("user@example.com", digest);
+
+        Assert.assertEquals(cache.lookup("user@example.com", digest), CredentialCache.Lookup.MISS);
+        Map<String, byte[]> visited = new HashMap<>();
+        cache.forEach(visited::put);
+        Assert.assertTrue(visited.isEmpty());
+    }
+
+    @Test
+    public void testChurnCompactsTombstones() {
+        OffHeapCredentialCache cache = new OffHeapCredentialCache(1000, NO_EXPIRY);
+        byte[] digest = PasswordDigest.of("Password123!");
+        for (int i = 0; i < 500; i++) {
+            cache.put("kept" + i + "@example.com", digest);
+        }
+        // Far more invalidations than there are slots
+        for (int i = 0; i < 50_000; i++) {
+            String email = "churn" + i + "@example.com";
+            cache.put(email, digest);
+            cache.invalidate(email);
+        }
+
+        // Bounded by 1/8 of each segment's slots (128 slots per segment here)
+        Assert.assertTrue(cache.tombstoneCount() <= 16 * 128 / 8, "tombstones " + cache.tombstoneCount());
+        Assert.assertEquals(cache.size(), 500);
+        for (int i = 0; i < 500; i++) {
+            Assert.assertEquals(cache.lookup("kept" + i + "@example.com", digest), CredentialCache.Lookup.MATCH);
+        }
+        Assert.assertEquals(cache.lookup("churn7@example.com", digest), CredentialCache.Lookup.MISS);
+    }
+
+    @Test
+    public void testCompactionStaysOffHeap() {
+        OffHeapCredentialCache cache = new OffHeapCredentialCache(1000, NO_EXPIRY);
+        byte[] digest = PasswordDigest.of("Password123!");
+        for (int i = 0; i < 500; i++) {
+            cache.put("kept" + i + "@example.com", digest);
+        }
+        String[] churn = new String[5000];
+        for (int i = 0; i < churn.length; i++) {
+            churn[i] = "churn" + i + "@example.com";
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long compactions = Metrics.count("cache.offheap.compactions");
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (String email : churn) {
+            cache.put(email, digest);
+            cache.invalidate(email);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // Hundreds of compactions of segments holding about 30 live entries each
+        Assert.assertTrue(Metrics.count("cache.offheap.compactions") - compactions > 100);
+        Assert.assertTrue(allocated < 64 * 1024, allocated + " bytes allocated");
+        for (int i = 0; i < 500; i++) {
+            Assert.assertEquals(cache.lookup("kept" + i + "@example.com", digest), CredentialCache.Lookup.MATCH);
+        }
+    }
+
+    @Test
+    public void testFileBackedCacheVisitsEntries() throws Exception {
+        Path file = Files.createTempFile("offheap-cache", ".bin");
+        try {
+            OffHeapCredentialCache cache = new OffHeapCredentialCache(1000, NO_EXPIRY, file);
+            cache.put("a@example.com", PasswordDigest.of("PasswordA1!"));
+            cache.put("b@example.com", PasswordDigest.of("PasswordB1!"));
+            cache.invalidate("a@example.com");
+
+            Map<String, byte[]> visited = new HashMap<>();
+            cache.forEach(visited::put);
+            Assert.assertEquals(visited.keySet(), Set.of("b@example.com"));
+            Assert.assertTrue(PasswordDigest.matches(visited.get("b@example.com"), PasswordDigest.of("PasswordB1!")));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
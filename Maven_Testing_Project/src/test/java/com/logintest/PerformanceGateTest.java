@@ -0,0 +1,159 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Allocation and latency regression gate for LoginService.validateLogin.
+ *
+ * Runs a fixed workload in-process over an InMemoryUserStore and compares bytes allocated
+ * per call and p99 latency of each request kind with perf-baseline.properties.
+ * Run with: mvn test -Pperf-gate
+ * Rewrite the baseline with: mvn test -Pperf-gate -Dperf.updateBaseline=true
+ */
+public class PerformanceGateTest {
+
+    private static final String VALID_EMAIL = "test@example.com";
+    private static final String VALID_PASSWORD = "Password123!";
+
+    private static final int WARMUP_CALLS = Integer.getInteger("perf.warmupCalls", 50_000);
+    private static final int MEASURED_CALLS = Integer.getInteger("perf.measuredCalls", 20_000);
+    // p99 is the best of several rounds, which filters out one-off pauses from the machine
+    private static final int LATENCY_ROUNDS = Integer.getInteger("perf.latencyRounds", 5);
+
+    private static final double ALLOCATION_TOLERANCE = Double.parseDouble(System.getProperty("perf.allocationTolerance", "0.10"));
+    private static final double LATENCY_TOLERANCE = Double.parseDouble(System.getProperty("perf.latencyTolerance", "0.50"));
+    // Absolute slack, so tiny baselines do not fail on a few bytes or nanoseconds of noise
+    private static final long ALLOCATION_SLACK_BYTES = 64;
+    private static final long LATENCY_SLACK_NANOS = 500;
+
+    private static final Path BASELINE = Paths.get(System.getProperty("perf.baseline", "perf-baseline.properties"));
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private LoginService service;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        InMemoryUserStore store = new InMemoryUserStore();
+        store.addUser(VALID_EMAIL, VALID_PASSWORD);
+        for (int i = 0; i < 1000; i++) {
+            store.addUser("user" + i + "@example.com", "Password" + i + "!");
+        }
+        service = new LoginService(store);
+        service.initialize();
+        // A missing snapshot builds the existence filter from the store, as a cold start would
+        Path snapshot = Files.createTempFile("perf-gate", ".snapshot");
+        Files.delete(snapshot);
+        service.loadSnapshot(snapshot);
+    }
+
+    @Test
+    public void testNoAllocationOrLatencyRegression() throws IOException {
+        Map<String, String[]> workload = new LinkedHashMap<>();
+        workload.put("valid", new String[] {VALID_EMAIL, VALID_PASSWORD});
+        workload.put("wrongPassword", new String[] {VALID_EMAIL, "WrongPassword1!"});
+        workload.put("unknownUser", new String[] {"nobody@example.com", VALID_PASSWORD});
+        workload.put("injection", new String[] {"' OR '1'='1", "password"});
+        workload.put("badFormat", new String[] {"not-an-email", VALID_PASSWORD});
+
+        Map<String, Long> measured = new TreeMap<>();
+        workload.forEach((name, credential) -> {
+            measured.put(name + ".bytesPerCall", bytesPerCall(credential));
+            measured.put(name + ".p99Nanos", p99Nanos(credential));
+        });
+        measured.forEach((key, value) -> System.out.println("perf-gate " + key + " = " + value));
+
+        if (Boolean.getBoolean("perf.updateBaseline")) {
+            writeBaseline(measured);
+            System.out.println("Baseline written to " + BASELINE.toAbsolutePath());
+            return;
+        }
+
+        Properties baseline = readBaseline();
+        List<String> regressions = new ArrayList<>();
+        measured.forEach((key, value) -> {
+            String expected = baseline.getProperty(key);
+            if (expected == null) {
+                regressions.add(key + " has no baseline (run with -Dperf.updateBaseline=true)");
+                return;
+            }
+            boolean allocation = key.endsWith(".bytesPerCall");
+            long limit = limit(Long.parseLong(expected),
+                    allocation ? ALLOCATION_TOLERANCE : LATENCY_TOLERANCE,
+                    allocation ? ALLOCATION_SLACK_BYTES : LATENCY_SLACK_NANOS);
+            if (value > limit) {
+                regressions.add(key + " = " + value + ", baseline " + expected + ", limit " + limit);
+            }
+        });
+        Assert.assertTrue(regressions.isEmpty(), "Performance regressions:\n  " + String.join("\n  ", regressions));
+    }
+
+    private long bytesPerCall(String[] credential) {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            service.validateLogin(credential[0], credential[1]);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            service.validateLogin(credential[0], credential[1]);
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_CALLS;
+    }
+
+    private long p99Nanos(String[] credential) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < LATENCY_ROUNDS; round++) {
+            // The histogram is unit-agnostic; values here are nanoseconds
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (int i = 0; i < MEASURED_CALLS; i++) {
+                long start = System.nanoTime();
+                service.validateLogin(credential[0], credential[1]);
+                histogram.record(System.nanoTime() - start);
+            }
+            best = Math.min(best, histogram.getPercentile(99));
+        }
+        return best;
+    }
+
+    private static long limit(long baseline, double tolerance, long slack) {
+        return Math.max((long) (baseline * (1 + tolerance)), baseline + slack);
+    }
+
+    private static Properties readBaseline() throws IOException {
+        Properties baseline = new Properties();
+        if (Files.exists(BASELINE)) {
+            try (Reader reader = Files.newBufferedReader(BASELINE)) {
+                baseline.load(reader);
+            }
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(Map<String, Long> measured) throws IOException {
+        StringBuilder content = new StringBuilder()
+                .append("# LoginService.validateLogin baseline for the perf-gate profile.\n")
+                .append("# Regenerate with: mvn test -Pperf-gate -Dperf.updateBaseline=true\n")
+                .append("# java.version=").append(System.getProperty("java.version")).append('\n');
+        measured.forEach((key, value) -> content.append(key).append('=').append(value).append('\n'));
+        try (Writer writer = Files.newBufferedWriter(BASELINE)) {
+            writer.write(content.toString());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.logintest;
+
+import com.logintest.RequestScheduler.RouteClass;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for RequestScheduler: priority order, shedding and deadline-bounded waits
+ */
+public class RequestSchedulerTest {
+
+    @Test
+    public void testFreedSlotGoesToHigherPriority() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 10, new int[] {1, 1, 1, 1}, new int[] {10, 10, 10, 10});
+        List<RouteClass> order = new CopyOnWriteArrayList<>();
+        RequestScheduler.Permit running = scheduler.acquire(RouteClass.REGISTER);
+
+        CompletableFuture<Void> register = runAsync(scheduler, RouteClass.REGISTER, order);
+        awaitQueued(scheduler, RouteClass.REGISTER, 1);
+        CompletableFuture<Void> login = runAsync(scheduler, RouteClass.LOGIN, order);
+        awaitQueued(scheduler, RouteClass.LOGIN, 1);
+
+        running.close();
+        login.get(5, TimeUnit.SECONDS);
+        register.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(order, List.of(RouteClass.LOGIN, RouteClass.REGISTER));
+    }
+
+    @Test
+    public void testLowestPriorityShedFirst() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, 1, new int[] {1, 1, 1, 1}, new int[] {10, 10, 10, 10});
+        List<RouteClass> order = new CopyOnWriteArrayList<>();
+        RequestScheduler.Permit running = scheduler.acquire(RouteClass.LOGIN);
+
+        CompletableFuture<Void> register = runAsync(scheduler, RouteClass.REGISTER, order);
+        awaitQueued(scheduler, RouteClass.REGISTER, 1);
+        // The queue is full: a login takes the registration's place...
+        CompletableFuture<Void> login = runAsync(scheduler, RouteClass.LOGIN, order);
+        ExecutionException shed = Assert.expectThrows(ExecutionException.class, () -> register.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(shed.getCause() instanceof RequestScheduler.ShedException);
+        awaitQueued(scheduler, RouteClass.LOGIN, 1);
+        // ...and a registration arriving now is turned away at once
+        Assert.expectThrows(RequestScheduler.ShedException.class, () -> scheduler.acquire(RouteClass.REGISTER));
+
+        running.close();
+        login.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(order, List.of(RouteClass.LOGIN));
+    }
+
+    @Test
+    public void testWaitEndsWithDeadline() {
+        RequestScheduler scheduler = new RequestScheduler(1, 10, new int[] {1, 1, 1, 1}, new int[] {10, 10, 10, 10});
+        RequestScheduler.Permit running = scheduler.acquire(RouteClass.LOGIN);
+        try {
+            Deadline.start(50);
+            Deadline.ExceededException exceeded = Assert.expectThrows(Deadline.ExceededException.class,
+                    () -> scheduler.acquire(RouteClass.LOGIN));
+            Assert.assertEquals(exceeded.getStage(), "queue");
+            Assert.assertEquals(scheduler.queued(RouteClass.LOGIN), 0);
+        } finally {
+            running.close();
+            Deadline.clear();
+        }
+        // The expired waiter left no trace: the slot is free again
+        scheduler.acquire(RouteClass.LOGIN).close();
+    }
+
+    private static CompletableFuture<Void> runAsync(RequestScheduler scheduler, RouteClass routeClass, List<RouteClass> order) {
+        return CompletableFuture.runAsync(() -> {
+            RequestScheduler.Permit permit = scheduler.acquire(routeClass);
+            try {
+                order.add(routeClass);
+            } finally {
+                permit.close();
+            }
+        }, runnable -> new Thread(runnable).start());
+    }
+
+    private static void awaitQueued(RequestScheduler scheduler, RouteClass routeClass, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.queued(routeClass) != expected) {
+            Assert.assertTrue(System.nanoTime() < deadline, routeClass + " never queued");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tests for the Aho-Corasick automaton built by RuleMatcher and the corpus check on reload
+ */
+public class RuleMatcherTest {
+
+    @Test
+    public void testOverlappingPatterns() throws IOException {
+        RuleMatcher matcher = compile("[sql]\nhers\nhe\nshe\nhis\n");
+
+        // "she" ends first; "he" ends at the same position through the failure link of "sh" + "e"
+        Assert.assertEquals(matcher.describe(matcher.firstMatch("ushers")), "sql:she");
+        Assert.assertEquals(matcher.describe(matcher.firstMatch("ahe")), "sql:he");
+        Assert.assertEquals(matcher.describe(matcher.firstMatch("xhis")), "sql:his");
+        Assert.assertEquals(matcher.firstMatch("hxsx"), -1);
+    }
+
+    @Test
+    public void testMatchFoundThroughSuffix() throws IOException {
+        RuleMatcher matcher = compile("[sql]\nabcd\nbce\n");
+
+        // "abc" is a trie path that fails on 'e'; matching must continue from suffix "bc"
+        Assert.assertEquals(matcher.describe(matcher.firstMatch("abce")), "sql:bce");
+        Assert.assertEquals(matcher.describe(matcher.firstMatch("aabcd")), "sql:abcd");
+        Assert.assertEquals(matcher.firstMatch("abcx"), -1);
+    }
+
+    @Test
+    public void testShorterPatternInsideLongerOneIsReported() throws IOException {
+        RuleMatcher matcher = compile("[xss]\n<script>\n[html]\ncrip\n");
+
+        // "crip" completes inside "<script>" before the longer pattern does
+        Assert.assertEquals(matcher.describe(matcher.firstMatch("<script>")), "html:crip");
+    }
+
+    @Test
+    public void testEscapes() throws IOException {
+        RuleMatcher matcher = compile("[sql]\n--\\s\n\\#hash\nback\\\\slash\n");
+
+        Assert.assertTrue(matcher.matches("x-- y"));
+        Assert.assertFalse(matcher.matches("x--y"));
+        Assert.assertTrue(matcher.matches("a#hash"));
+        Assert.assertTrue(matcher.matches("back\\slash"));
+        Assert.assertFalse(matcher.matches("backslash"));
+        Assert.assertEquals(matcher.describe(1), "sql:#hash");
+    }
+
+    @Test
+    public void testCommentsAndSectionsAreNotPatterns() throws IOException {
+        RuleMatcher matcher = compile("# comment\n\n[SQL]\ndrop\n[xss]\n  \nalert(\n");
+
+        Assert.assertEquals(matcher.getRuleCount(), 2);
+        Assert.assertEquals(matcher.getCategoryCounts().get("sql"), Integer.valueOf(1));
+        Assert.assertFalse(matcher.matches("# comment"));
+    }
+
+    @Test
+    public void testCaseFolding() throws IOException {
+        RuleMatcher matcher = compile("[xss]\nOnError=\n");
+
+        Assert.assertTrue(matcher.matches("img ONERROR=x"));
+        Assert.assertTrue(matcher.matches("onerror="));
+        // Non-ASCII characters restart matching instead of folding into ASCII
+        Assert.assertFalse(matcher.matches("on\u00c9rror="));
+    }
+
+    @Test
+    public void testMalformedRulesAreRejected() {
+        Assert.assertThrows(IllegalArgumentException.class, () -> compile("drop\n"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> compile("[sql]\nbad\\q\n"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> compile("[sql]\ndangling\\\n"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> compile("[sql]\n\u00e9\n"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> compile("# nothing\n"));
+    }
+
+    @Test
+    public void testMatchesAreCountedPerRule() throws IOException {
+        Map<String, LongAdder> counters = new HashMap<>();
+        RuleMatcher matcher = RuleMatcher.compile(new StringReader("[sql]\ndrop\n"), counters);
+        matcher.matches("x drop");
+        matcher.firstMatch("y drop");
+
+        Assert.assertEquals(counters.get("sql:drop").sum(), 1L);
+    }
+
+    @Test
+    public void testReloadRejectedByCorpus() {
+        RuleMatcher active = ValidationRules.current();
+
+        // Misses every SQL injection sample in validation-corpus.txt
+        IllegalArgumentException rejected = Assert.expectThrows(IllegalArgumentException.class,
+                () -> ValidationRules.compileAndVerify("[xss]\n<script\n"));
+        Assert.assertTrue(rejected.getMessage().contains("reject ' OR '1'='1"), rejected.getMessage());
+
+        // Rejects a corpus "accept" sample
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> ValidationRules.compileAndVerify("[sql]\n' or '1'='1\n[html]\n@\n"));
+        Assert.assertSame(ValidationRules.current(), active);
+    }
+
+    private static RuleMatcher compile(String rules) throws IOException {
+        return RuleMatcher.compile(new StringReader(rules), new HashMap<>());
+    }
+}
@@ -0,0 +1,69 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for SessionRegistry expiry, eviction order and revocation
+ */
+public class SessionRegistryTest {
+
+    @Test
+    public void testFullRegistryEvictsOldestSessions() {
+        SessionRegistry registry = new SessionRegistry(60_000L, 100);
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tokens.add(registry.issue("user" + i + "@example.com"));
+        }
+        String newest = registry.issue("new@example.com");
+
+        // One percent of the capacity is freed, oldest first
+        Assert.assertNull(registry.verify(tokens.get(0)));
+        Assert.assertEquals(registry.verify(tokens.get(1)), "user1@example.com");
+        Assert.assertEquals(registry.verify(tokens.get(99)), "user99@example.com");
+        Assert.assertEquals(registry.verify(newest), "new@example.com");
+        Assert.assertEquals(registry.size(), 100);
+    }
+
+    @Test
+    public void testRevokedSessionsDoNotCountAsOldest() {
+        SessionRegistry registry = new SessionRegistry(60_000L, 10);
+        String revoked = registry.issue("a@example.com");
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            tokens.add(registry.issue("user" + i + "@example.com"));
+        }
+        Assert.assertTrue(registry.revoke(revoked));
+
+        // The revoked token's slot is free, so nothing live is evicted
+        String next = registry.issue("b@example.com");
+        Assert.assertEquals(registry.verify(tokens.get(0)), "user0@example.com");
+        Assert.assertEquals(registry.verify(next), "b@example.com");
+    }
+
+    @Test
+    public void testExpiredSessionsAreDroppedOnIssue() {
+        SessionRegistry registry = new SessionRegistry(0L, 100);
+        String expired = registry.issue("a@example.com");
+        registry.issue("b@example.com");
+
+        Assert.assertNull(registry.verify(expired));
+        Assert.assertEquals(registry.size(), 1);
+    }
+
+    @Test
+    public void testRevokeAllEndsOnlyThatUsersSessions() {
+        SessionRegistry registry = new SessionRegistry(60_000L, 100);
+        String first = registry.issue("a@example.com");
+        String second = registry.issue("a@example.com");
+        String other = registry.issue("b@example.com");
+
+        Assert.assertEquals(registry.revokeAll("a@example.com"), 2);
+        Assert.assertNull(registry.verify(first));
+        Assert.assertNull(registry.verify(second));
+        Assert.assertEquals(registry.verify(other), "b@example.com");
+    }
+}
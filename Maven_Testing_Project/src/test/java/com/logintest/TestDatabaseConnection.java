@@ -56,10 +56,11 @@ public class TestDatabaseConnection {
             System.err.println("\nPlease check:");
             System.err.println("  1. MySQL is running");
             System.err.println("  2. Database schema exists");
-            System.err.println("  3. Credentials in DatabaseHelper.java are correct");
-            System.err.println("     - DB_SCHEMA");
-            System.err.println("     - DB_USER");
-            System.err.println("     - DB_PASSWORD");
+            System.err.println("  3. Settings in config.properties are correct");
+            System.err.println("     - db.url");
+            System.err.println("     - db.schema");
+            System.err.println("     - db.username");
+            System.err.println("     - db.password");
         } finally {
             dbHelper.disconnect();
         }
@@ -0,0 +1,113 @@
+package com.logintest;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Runs one test's database work inside a transaction that is rolled back at the end,
+ * so tests can seed rows freely without cleanup and without seeing each other's data.
+ *
+ * Open it in @BeforeMethod and close it in @AfterMethod: the transaction is bound to the
+ * calling thread, which TestNG keeps the same for a method and its configuration methods.
+ * Only calls made from that thread through the DatabaseHelper are covered, so this does
+ * not reach a server running on other threads or in another process.
+ *
+ * A fixture begun while another is open on the same thread nests inside it: it marks a
+ * savepoint on the outer transaction, and closing it rolls back to that savepoint only.
+ * Close nested fixtures before the one they are nested in.
+ */
+public class TransactionalFixture implements AutoCloseable {
+
+    private static final int SEED_BATCH_SIZE = 500;
+
+    private final DatabaseHelper database;
+    private final Connection connection;
+    private final boolean autoCommit;
+    // Where a nested fixture started, or null for the fixture that opened the transaction
+    private final Savepoint start;
+    private Savepoint savepoint;
+
+    private TransactionalFixture(DatabaseHelper database, Connection connection, boolean nested) throws SQLException {
+        this.database = database;
+        this.connection = connection;
+        this.autoCommit = connection.getAutoCommit();
+        if (nested) {
+            this.start = connection.setSavepoint();
+        } else {
+            this.start = null;
+            connection.setAutoCommit(false);
+            database.bindConnection(connection);
+        }
+    }
+
+    /**
+     * Starts a transaction on a pooled connection and binds the helper to it for this thread,
+     * or nests inside the transaction already bound to this thread
+     * @param database - Connected DatabaseHelper
+     */
+    public static TransactionalFixture begin(DatabaseHelper database) throws SQLException {
+        boolean nested = database.isConnectionBound();
+        // A nested fixture gets the bound connection, whose close() does nothing
+        return new TransactionalFixture(database, database.getConnection(), nested);
+    }
+
+    /**
+     * Inserts users inside the transaction with batched statements
+     * @param users - Email to password map
+     * @return number of rows inserted
+     */
+    public int seed(Map<String, String> users) throws SQLException {
+        Iterator<String[]> rows = users.entrySet().stream()
+                .map(entry -> new String[] {entry.getKey(), entry.getValue()})
+                .iterator();
+        return seed(rows);
+    }
+
+    /**
+     * Inserts users inside the transaction with batched statements
+     * @param users - {email, password} pairs
+     * @return number of rows inserted
+     */
+    public int seed(Iterator<String[]> users) throws SQLException {
+        return database.addUsers(users, SEED_BATCH_SIZE);
+    }
+
+    /**
+     * Marks the current state so a test can undo part of its work with {@link #rollbackToSavepoint()}
+     */
+    public void savepoint() throws SQLException {
+        savepoint = connection.setSavepoint();
+    }
+
+    /**
+     * Undoes everything since the last {@link #savepoint()}
+     */
+    public void rollbackToSavepoint() throws SQLException {
+        if (savepoint == null) {
+            throw new IllegalStateException("No savepoint has been set");
+        }
+        connection.rollback(savepoint);
+    }
+
+    /**
+     * Rolls back the whole transaction and returns the connection to the pool; a nested
+     * fixture only rolls back its own work and leaves the connection bound
+     */
+    @Override
+    public void close() throws SQLException {
+        if (start != null) {
+            connection.rollback(start);
+            return;
+        }
+        database.unbindConnection();
+        try {
+            connection.rollback();
+            connection.setAutoCommit(autoCommit);
+        } finally {
+            connection.close();
+        }
+    }
+}
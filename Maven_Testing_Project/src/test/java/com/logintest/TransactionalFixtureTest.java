@@ -0,0 +1,156 @@
+package com.logintest;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Database tests over the embedded H2 profile, each running in a rolled-back transaction.
+ * Emails carry a per-test suffix because parallel methods share one database.
+ */
+public class TransactionalFixtureTest {
+
+    private static final String PASSWORD = "Password123!";
+
+    private static DatabaseHelper database;
+    // Parallel methods share this instance, so each thread keeps its own fixture
+    private final ThreadLocal<TransactionalFixture> fixture = new ThreadLocal<>();
+
+    @BeforeClass
+    public static void connect() throws SQLException {
+        database = new DatabaseHelper(EmbeddedDatabase.url("FixtureTest"), "sa", "");
+        database.connect();
+    }
+
+    @AfterClass
+    public static void disconnect() {
+        database.disconnect();
+    }
+
+    @BeforeMethod
+    public void beginTransaction() throws SQLException {
+        fixture.set(TransactionalFixture.begin(database));
+    }
+
+    @AfterMethod
+    public void rollback() throws SQLException {
+        fixture.get().close();
+        fixture.remove();
+    }
+
+    @Test
+    public void testSeededUsersAreVisibleInsideTransaction() throws SQLException {
+        Map<String, String> users = users("seeded", 1200);
+        Assert.assertEquals(fixture.get().seed(users), 1200);
+
+        String email = users.keySet().iterator().next();
+        Assert.assertTrue(database.validateCredentials(email, PASSWORD));
+        Assert.assertTrue(new LoginService(database).validateLogin(email, PASSWORD).isSuccess());
+    }
+
+    @Test
+    public void testRollbackDiscardsUsers() throws SQLException {
+        String email = uniqueEmail("discarded");
+        // End the per-test fixture early so the rollback can be observed from outside it
+        fixture.get().close();
+        try (TransactionalFixture inner = TransactionalFixture.begin(database)) {
+            Assert.assertEquals(inner.seed(Collections.singletonMap(email, PASSWORD)), 1);
+            Assert.assertTrue(database.userExists(email));
+        }
+        Assert.assertFalse(database.userExists(email));
+        fixture.set(TransactionalFixture.begin(database));
+    }
+
+    @Test
+    public void testNestedFixtureUndoesOnlyItsOwnWork() throws Exception {
+        String outer = uniqueEmail("outer");
+        String inner = uniqueEmail("inner");
+        Assert.assertTrue(database.addUser(outer, PASSWORD));
+
+        try (TransactionalFixture nested = TransactionalFixture.begin(database)) {
+            Assert.assertEquals(nested.seed(Collections.singletonMap(inner, PASSWORD)), 1);
+            Assert.assertTrue(database.userExists(inner));
+        }
+
+        Assert.assertFalse(database.userExists(inner));
+        Assert.assertTrue(database.userExists(outer));
+        // The outer transaction is still bound and uncommitted
+        Assert.assertTrue(database.addUser(inner, PASSWORD));
+        boolean[] seen = new boolean[1];
+        Thread other = new Thread(() -> seen[0] = database.userExists(outer));
+        other.start();
+        other.join();
+        Assert.assertFalse(seen[0]);
+    }
+
+    @Test
+    public void testRollbackToSavepoint() throws SQLException {
+        String kept = uniqueEmail("kept");
+        String undone = uniqueEmail("undone");
+        Assert.assertTrue(database.addUser(kept, PASSWORD));
+        fixture.get().savepoint();
+        Assert.assertTrue(database.addUser(undone, PASSWORD));
+
+        fixture.get().rollbackToSavepoint();
+
+        Assert.assertTrue(database.userExists(kept));
+        Assert.assertFalse(database.userExists(undone));
+    }
+
+    @Test
+    public void testUncommittedUsersAreInvisibleToOtherConnections() throws Exception {
+        String email = uniqueEmail("isolated");
+        Assert.assertTrue(database.addUser(email, PASSWORD));
+
+        // Another thread is not bound to the fixture and borrows its own pooled connection
+        boolean[] seen = new boolean[1];
+        Thread other = new Thread(() -> seen[0] = database.userExists(email));
+        other.start();
+        other.join();
+        Assert.assertFalse(seen[0]);
+    }
+
+    @Test
+    public void testAddUsersCommitsWhenNotBound() throws Exception {
+        String email = uniqueEmail("committed");
+        int[] inserted = new int[1];
+        Thread writer = new Thread(() -> {
+            try {
+                inserted[0] = database.addUsers(Collections.singletonList(new String[] {email, PASSWORD}).iterator(), 10);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        writer.join();
+
+        Assert.assertEquals(inserted[0], 1);
+        Assert.assertTrue(database.userExists(email));
+        // Committed outside the fixture, so clean it up explicitly
+        fixture.get().close();
+        Assert.assertTrue(database.removeUser(email));
+        fixture.set(TransactionalFixture.begin(database));
+    }
+
+    private static Map<String, String> users(String prefix, int count) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        Map<String, String> users = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            users.put(prefix + i + "." + suffix + "@example.com", PASSWORD);
+        }
+        return users;
+    }
+
+    private static String uniqueEmail(String prefix) {
+        return prefix + "." + UUID.randomUUID().toString().substring(0, 8) + "@example.com";
+    }
+}
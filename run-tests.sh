@@ -1,9 +1,25 @@
 #!/bin/bash
 # Run Complete Login System Testing Suite
-# Usage: ./run-tests.sh
+# Usage: ./run-tests.sh             (UI suite, needs API, frontend and MySQL)
+#        ./run-tests.sh --contract  (in-process API contract tests only, no services needed)
+#        ./run-tests.sh --perf      (allocation/latency regression gate against perf-baseline.properties)
 
 set -e
 
+if [ "$1" == "--contract" ]; then
+    echo "🧪 Running API contract tests (in-process server, in-memory store)..."
+    cd Maven_Testing_Project
+    mvn test -B -Pcontract
+    exit $?
+fi
+
+if [ "$1" == "--perf" ]; then
+    echo "⏱️  Running performance regression gate..."
+    cd Maven_Testing_Project
+    mvn test -B -Pperf-gate
+    exit $?
+fi
+
 echo "═══════════════════════════════════════════════════════════"
 echo "  🚀 SKILL PALAVER LOGIN SYSTEM - TEST EXECUTION"
 echo "═══════════════════════════════════════════════════════════"